@@ -43,6 +43,7 @@ import javax.validation.constraints.NotNull;
 import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentAvatarService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentBBCodeCacheService;
 import fr.paris.lutece.plugins.extend.modules.comment.util.annotation.Email;
 import fr.paris.lutece.plugins.extend.service.extender.facade.IExtendableResourceResult;
 import fr.paris.lutece.plugins.workflowcore.business.action.Action;
@@ -80,6 +81,7 @@ public class Comment implements IExtendableResourceResult
     private boolean _bPinned;
     private int _nCommentOrder;
     private boolean _bIsImportant;
+    private String _strAvatarUrl;
     /**
      * List of the available action of the workflow for this appointment
      */
@@ -227,21 +229,45 @@ public class Comment implements IExtendableResourceResult
     }
 
     /**
-     * Get the content of the comment interpreted as BBCode
+     * Get the content of the comment interpreted as BBCode. The rendering of a saved comment is cached until the comment is modified.
      * 
      * @return The content of the comment interpreted as BBCode
      */
     public String getBBCodeComment( )
+    {
+        if ( _strComment == null || _nIdComment == 0 || _dateLastModif == null )
+        {
+            return parseBBCode( _strComment );
+        }
+
+        CommentBBCodeCacheService cacheService = CommentBBCodeCacheService.getInstance( );
+        String strHtml = cacheService.getHtml( _nIdComment, _dateLastModif, _strComment );
+        if ( strHtml == null )
+        {
+            strHtml = parseBBCode( _strComment );
+            cacheService.putHtml( _nIdComment, _dateLastModif, _strComment, strHtml );
+        }
+        return strHtml;
+    }
+
+    /**
+     * Interpret a content as BBCode
+     * 
+     * @param strComment
+     *            The content
+     * @return The content interpreted as BBCode, or the content itself if it can not be interpreted
+     */
+    private static String parseBBCode( String strComment )
     {
         try
         {
-            return EditorBbcodeService.getInstance( ).parse( _strComment );
+            return EditorBbcodeService.getInstance( ).parse( strComment );
         }
         catch( Exception e )
         {
             AppLogService.error( e.getMessage( ), e );
         }
-        return _strComment;
+        return strComment;
     }
 
     /**
@@ -435,9 +461,24 @@ public class Comment implements IExtendableResourceResult
      */
     public String getAvatarUrl( )
     {
+        if ( _strAvatarUrl != null )
+        {
+            return _strAvatarUrl;
+        }
         return CommentAvatarService.getInstance( ).getAvatarUrl( this );
     }
 
+    /**
+     * Set the avatar URL of the comment's author, once resolved for a whole list of comments
+     * 
+     * @param strAvatarUrl
+     *            The avatar URL
+     */
+    public void setAvatarUrl( String strAvatarUrl )
+    {
+        _strAvatarUrl = strAvatarUrl;
+    }
+
     /**
      * 
      * @return the lutece user name
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * 
+ * CommentCursor : position of a comment in a list sorted on a given attribute. Used to seek the next comments of a list instead of using an offset.
+ * 
+ */
+public class CommentCursor
+{
+    private static final String SORT_BY_DATE_CREATION = "date_comment";
+    private static final String SORT_BY_COMMENT_ORDER = "comment_order";
+    private static final String TOKEN_SEPARATOR = ":";
+
+    private final long _lSortValue;
+    private final int _nIdComment;
+
+    /**
+     * Constructor
+     * 
+     * @param lSortValue
+     *            The value of the sorted attribute of the last returned comment
+     * @param nIdComment
+     *            The id of the last returned comment
+     */
+    public CommentCursor( long lSortValue, int nIdComment )
+    {
+        _lSortValue = lSortValue;
+        _nIdComment = nIdComment;
+    }
+
+    /**
+     * Get the value of the sorted attribute of the last returned comment. Dates are expressed in milliseconds.
+     * 
+     * @return The value of the sorted attribute
+     */
+    public long getSortValue( )
+    {
+        return _lSortValue;
+    }
+
+    /**
+     * Get the id of the last returned comment
+     * 
+     * @return The id of the last returned comment
+     */
+    public int getIdComment( )
+    {
+        return _nIdComment;
+    }
+
+    /**
+     * Get the cursor positioned after a given comment
+     * 
+     * @param comment
+     *            The last returned comment
+     * @param strSortedAttributeName
+     *            The name of the attribute used to sort comments
+     * @return The cursor
+     */
+    public static CommentCursor getCursor( Comment comment, String strSortedAttributeName )
+    {
+        long lSortValue;
+        if ( SORT_BY_COMMENT_ORDER.equals( strSortedAttributeName ) )
+        {
+            lSortValue = comment.getCommentOrder( );
+        }
+        else
+            if ( SORT_BY_DATE_CREATION.equals( strSortedAttributeName ) )
+            {
+                lSortValue = comment.getDateComment( ).getTime( );
+            }
+            else
+            {
+                lSortValue = comment.getDateLastModif( ).getTime( );
+            }
+        return new CommentCursor( lSortValue, comment.getIdComment( ) );
+    }
+
+    /**
+     * Get the opaque continuation token representing this cursor
+     * 
+     * @return The continuation token
+     */
+    public String toToken( )
+    {
+        String strToken = _lSortValue + TOKEN_SEPARATOR + _nIdComment;
+        return Base64.getUrlEncoder( ).withoutPadding( ).encodeToString( strToken.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Get the cursor represented by a continuation token
+     * 
+     * @param strToken
+     *            The continuation token
+     * @return The cursor, or null if the token is empty or invalid
+     */
+    public static CommentCursor fromToken( String strToken )
+    {
+        if ( StringUtils.isBlank( strToken ) )
+        {
+            return null;
+        }
+        try
+        {
+            String strDecoded = new String( Base64.getUrlDecoder( ).decode( strToken ), StandardCharsets.UTF_8 );
+            String [ ] values = strDecoded.split( TOKEN_SEPARATOR );
+            if ( values.length == 2 )
+            {
+                return new CommentCursor( Long.parseLong( values [0] ), Integer.parseInt( values [1] ) );
+            }
+        }
+        catch( IllegalArgumentException e )
+        {
+            // The token has been altered : it is ignored
+        }
+        return null;
+    }
+}
@@ -38,10 +38,14 @@ import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 import java.sql.Timestamp;
+import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -63,6 +67,13 @@ public class CommentDAO implements ICommentDAO
     private static final String SQL_QUERY_SELECT_BY_RESOURCE = SQL_QUERY_SELECT_ALL + " WHERE id_resource LIKE ? AND resource_type = ? ";
     private static final String SQL_QUERY_SELECT_BY_LUTECE_USER_NAME = SQL_QUERY_SELECT_ALL + " WHERE lutece_user_name = ? ";
     private static final String SQL_QUERY_SELECT_ID_BY_RESOURCE = "SELECT id_comment FROM extend_comment WHERE id_resource = ? AND resource_type = ? ";
+    private static final String SQL_QUERY_SELECT_FOR_EXPORT = SQL_QUERY_SELECT_ALL + " WHERE resource_type = ? AND id_comment > ? ";
+    private static final String SQL_QUERY_SELECT_AFTER = SQL_QUERY_SELECT_ALL + " WHERE id_comment > ? ORDER BY id_comment ASC LIMIT ? ";
+    private static final String SQL_QUERY_SELECT_PUBLISHED_BY_DATE = " SELECT id_comment, resource_type, id_resource, date_comment FROM extend_comment WHERE is_published = 1 AND date_comment >= ? AND date_comment < ? AND id_comment > ? ORDER BY id_comment ASC LIMIT ? ";
+    private static final String SQL_FILTER_DATE_COMMENT_FROM = " date_comment >= ? ";
+    private static final String SQL_FILTER_DATE_COMMENT_TO = " date_comment < ? ";
+    private static final String SQL_ORDER_BY_ID_COMMENT = " ORDER BY id_comment ASC ";
+    private static final String SQL_QUERY_SELECT_MAX_PINNED_ORDER = " SELECT MAX( comment_order ) FROM extend_comment WHERE id_resource = ? AND resource_type = ? AND is_pinned = 1 ";
     private static final String SQL_QUERY_SELECT_NB_COMMENT_BY_RESOURCE = " SELECT count(id_comment) FROM extend_comment WHERE  resource_type = ? ";
     private static final String SQL_QUERY_DELETE = " DELETE FROM extend_comment WHERE id_comment = ? ";
     private static final String SQL_QUERY_DELETE_BY_ID_RESOURCE = " DELETE FROM extend_comment WHERE resource_type = ? ";
@@ -70,12 +81,28 @@ public class CommentDAO implements ICommentDAO
     private static final String SQL_QUERY_UPDATE = " UPDATE extend_comment SET id_resource = ?, resource_type = ?, date_comment = ?, name = ?, email = ?, "
             + " ip_address = ?, comment = ?, is_published = ?, date_last_modif = ?, id_parent_comment = ?, is_admin_comment = ?,is_pinned = ?,comment_order = ?,is_important = ? WHERE id_comment = ?  ";
     private static final String SQL_QUERY_FIND_BY_ID_PARENT = SQL_QUERY_SELECT_ALL + " WHERE id_parent_comment = ? ";
+    private static final String SQL_QUERY_FIND_BY_ID_PARENTS = SQL_QUERY_SELECT_ALL + " WHERE id_parent_comment IN ( ";
     private static final String SQL_QUERY_COUNT_BY_ID_PARENT = " SELECT count( id_comment ) FROM extend_comment WHERE id_parent_comment = ? ";
-    private static final String SQL_QUERY_UPDATE_COMMENT_PUBLISHED = " UPDATE extend_comment SET is_published = ?, date_last_modif = ? WHERE id_comment = ?  ";
-    private static final String SQL_QUERY_SELECT_DISTINCT_ID_RESOURCES = " SELECT DISTINCT(id_resource) FROM extend_comment e WHERE resource_type = ? ";
+    private static final String SQL_QUERY_COUNT_BY_ID_PARENTS = " SELECT id_parent_comment, count( id_comment ) FROM extend_comment WHERE id_parent_comment IN ( ";
+    private static final String SQL_GROUP_BY_ID_PARENT = " GROUP BY id_parent_comment ";
+    private static final String SQL_QUERY_UPDATE_COMMENT_PUBLISHED = " UPDATE extend_comment SET is_published = ?, date_last_modif = ? WHERE id_comment = ? AND is_published <> ? ";
+    private static final String SQL_QUERY_UPDATE_COMMENT_IMPORTANT = " UPDATE extend_comment SET is_important = ? WHERE id_comment = ? AND is_important <> ? ";
+    private static final String SQL_QUERY_UPDATE_COMMENT_PINNED = " UPDATE extend_comment SET is_pinned = ?, comment_order = ? WHERE id_comment = ? AND is_pinned <> ? ";
+    private static final String SQL_QUERY_UPDATE_COMMENT_UNPINNED = " UPDATE extend_comment SET is_pinned = ? WHERE id_comment = ? AND is_pinned <> ? ";
+    private static final String SQL_QUERY_SELECT_BY_IDS = SQL_QUERY_SELECT_ALL + " WHERE id_comment IN ( ";
+    private static final String SQL_ORDER_BY_ID_FOR_UPDATE = " ORDER BY id_comment FOR UPDATE ";
+    private static final String SQL_QUERY_DELETE_BY_IDS = " DELETE FROM extend_comment WHERE id_comment IN ( ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_PUBLISHED = " UPDATE extend_comment SET is_published = ?, date_last_modif = ? WHERE is_published <> ? AND id_comment IN ( ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_IMPORTANT = " UPDATE extend_comment SET is_important = ? WHERE id_comment IN ( ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_PINNED = " UPDATE extend_comment SET is_pinned = ? WHERE id_comment IN ( ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_ORDER = " UPDATE extend_comment SET comment_order = CASE id_comment ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_ORDER_WHEN = " WHEN ? THEN ? ";
+    private static final String SQL_QUERY_UPDATE_COMMENTS_ORDER_END = " END WHERE id_comment IN ( ";
+    private static final String SQL_QUERY_UPDATE_DATE_LAST_MODIF = " UPDATE extend_comment SET date_last_modif = ? WHERE id_comment = ? AND date_last_modif < ? ";
+    private static final String SQL_QUERY_SELECT_MOST_COMMENTED_RESOURCES = " SELECT id_resource, COUNT( id_comment ) FROM extend_comment WHERE resource_type = ? ";
+    private static final String SQL_GROUP_BY_ID_RESOURCE_ORDER_BY_COUNT = " GROUP BY id_resource ORDER BY COUNT( id_comment ) DESC, id_resource ";
     private static final String SQL_ORDER_BY_DATE_MODIFICATION = " ORDER BY date_last_modif ";
     private static final String SQL_ORDER_BY_DATE_CREATION = " ORDER BY date_comment ";
-    private static final String SQL_COUNT_NUMBER_COMMENTS_FOR_SELECT_ID_RESOURCE = " SELECT COUNT( id_resource ) FROM extend_comment ec WHERE e.id_resource = ec.id_resource AND e.resource_type = ec.resource_type ";
     private static final String SQL_QUERY_SELECT_BY_LIST_RESOURCE = SQL_QUERY_SELECT_ALL + " WHERE  resource_type = ? AND id_resource IN ( ";
 
     private static final String SQL_FILTER_STATUS_PUBLISHED = " is_published = 1 ";
@@ -93,6 +120,9 @@ public class CommentDAO implements ICommentDAO
     private static final String SQL_DESC = " DESC ";
     private static final String SQL_LIMIT = " LIMIT ";
     private static final String SQL_ORDER_BY = " ORDER BY ";
+    private static final String SQL_SEEK_BEFORE = " ( {0} < ? OR ( {0} = ? AND id_comment < ? ) ) ";
+    private static final String SQL_SEEK_AFTER = " ( {0} > ? OR ( {0} = ? AND id_comment > ? ) ) ";
+    private static final String SQL_THEN_BY_ID_COMMENT = ", id_comment ";
 
     private static final String SQL_SORT_BY_DATE_CREATION = "date_comment";
     private static final String SQL_SORT_BY_DATE_MODIFICATION = "date_last_modif";
@@ -100,7 +130,6 @@ public class CommentDAO implements ICommentDAO
 
     private static final String CONSTANT_COMMA = ",";
     private static final String CONSTANT_QUESTION_MARK = "?";
-    private static final String CONSTANT_OPEN_PARENTHESIS = " ( ";
     private static final String CONSTANT_CLOSE_PARENTHESIS = " ) ";
     private static final String CONSTANT_ALL_RESSOURCE_ID = "*";
     private static final String CONSTANT_SQL_ALL_RESSOURCE_ID = "%";
@@ -109,7 +138,7 @@ public class CommentDAO implements ICommentDAO
      * {@inheritDoc}
      */
     @Override
-    public synchronized void insert( Comment comment, Plugin plugin )
+    public void insert( Comment comment, Plugin plugin )
     {
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS, plugin ) )
         {
@@ -231,16 +260,247 @@ public class CommentDAO implements ICommentDAO
      * {@inheritDoc}
      */
     @Override
-    public void updateCommentStatus( int nIdComment, boolean bPublished, Plugin plugin )
+    public boolean updateCommentStatus( int nIdComment, boolean bPublished, Plugin plugin )
     {
-        int nIndex = 1;
-        DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_COMMENT_PUBLISHED, plugin );
-        daoUtil.setBoolean( nIndex++, bPublished );
-        daoUtil.setTimestamp( nIndex++, new Timestamp( new Date( ).getTime( ) ) );
-        daoUtil.setInt( nIndex++, nIdComment );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_COMMENT_PUBLISHED, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setBoolean( nIndex++, bPublished );
+            daoUtil.setTimestamp( nIndex++, new Timestamp( new Date( ).getTime( ) ) );
+            daoUtil.setInt( nIndex++, nIdComment );
+            daoUtil.setBoolean( nIndex++, bPublished );
 
-        daoUtil.executeUpdate( );
-        daoUtil.free( );
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean updateImportant( int nIdComment, boolean bImportant, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_COMMENT_IMPORTANT, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setBoolean( nIndex++, bImportant );
+            daoUtil.setInt( nIndex++, nIdComment );
+            daoUtil.setBoolean( nIndex++, bImportant );
+
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean updatePinned( int nIdComment, boolean bPinned, int nCommentOrder, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( bPinned ? SQL_QUERY_UPDATE_COMMENT_PINNED : SQL_QUERY_UPDATE_COMMENT_UNPINNED, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setBoolean( nIndex++, bPinned );
+            if ( bPinned )
+            {
+                daoUtil.setInt( nIndex++, nCommentOrder );
+            }
+            daoUtil.setInt( nIndex++, nIdComment );
+            daoUtil.setBoolean( nIndex++, bPinned );
+
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> load( Collection<Integer> listIdComments, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( );
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return listComments;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_SELECT_BY_IDS, listIdComments ), plugin ) )
+        {
+            setIds( daoUtil, 1, listIdComments );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> loadForUpdate( Collection<Integer> listIdComments, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( );
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return listComments;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_SELECT_BY_IDS, listIdComments ) + SQL_ORDER_BY_ID_FOR_UPDATE, plugin ) )
+        {
+            setIds( daoUtil, 1, listIdComments );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( Collection<Integer> listIdComments, Plugin plugin )
+    {
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_DELETE_BY_IDS, listIdComments ), plugin ) )
+        {
+            setIds( daoUtil, 1, listIdComments );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int updateCommentStatus( Collection<Integer> listIdComments, boolean bPublished, Plugin plugin )
+    {
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return 0;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_UPDATE_COMMENTS_PUBLISHED, listIdComments ), plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setBoolean( nIndex++, bPublished );
+            daoUtil.setTimestamp( nIndex++, new Timestamp( new Date( ).getTime( ) ) );
+            daoUtil.setBoolean( nIndex++, bPublished );
+            setIds( daoUtil, nIndex, listIdComments );
+            return daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateImportant( Collection<Integer> listIdComments, boolean bImportant, Plugin plugin )
+    {
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_UPDATE_COMMENTS_IMPORTANT, listIdComments ), plugin ) )
+        {
+            daoUtil.setBoolean( 1, bImportant );
+            setIds( daoUtil, 2, listIdComments );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatePinned( Collection<Integer> listIdComments, boolean bPinned, Plugin plugin )
+    {
+        if ( CollectionUtils.isEmpty( listIdComments ) )
+        {
+            return;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( SQL_QUERY_UPDATE_COMMENTS_PINNED, listIdComments ), plugin ) )
+        {
+            daoUtil.setBoolean( 1, bPinned );
+            setIds( daoUtil, 2, listIdComments );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findMaxPinnedCommentOrder( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_MAX_PINNED_ORDER, plugin ) )
+        {
+            daoUtil.setString( 1, strIdExtendableResource );
+            daoUtil.setString( 2, strExtendableResourceType );
+            daoUtil.executeQuery( );
+
+            // MAX returns null, read as 0, when the resource has no pinned comment
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateCommentOrders( Map<Integer, Integer> mapCommentOrders, Plugin plugin )
+    {
+        if ( mapCommentOrders == null || mapCommentOrders.isEmpty( ) )
+        {
+            return;
+        }
+
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_UPDATE_COMMENTS_ORDER );
+        for ( int i = 0; i < mapCommentOrders.size( ); i++ )
+        {
+            sbSQL.append( SQL_QUERY_UPDATE_COMMENTS_ORDER_WHEN );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( getSqlInClause( sbSQL.append( SQL_QUERY_UPDATE_COMMENTS_ORDER_END ).toString( ), mapCommentOrders.keySet( ) ),
+                plugin ) )
+        {
+            int nIndex = 1;
+            for ( Map.Entry<Integer, Integer> entry : mapCommentOrders.entrySet( ) )
+            {
+                daoUtil.setInt( nIndex++, entry.getKey( ) );
+                daoUtil.setInt( nIndex++, entry.getValue( ) );
+            }
+            setIds( daoUtil, nIndex, mapCommentOrders.keySet( ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateDateLastModif( int nIdComment, Timestamp dateLastModif, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_DATE_LAST_MODIF, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, dateLastModif );
+            daoUtil.setInt( 2, nIdComment );
+            daoUtil.setTimestamp( 3, dateLastModif );
+            daoUtil.executeUpdate( );
+        }
     }
 
     /**
@@ -442,6 +702,77 @@ public class CommentDAO implements ICommentDAO
         return listComments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> findParentCommentsByResourceAfter( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter,
+            CommentCursor cursor, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( nMaxItemsNumber );
+        String strSortColumn = getSortColumn( commentFilter );
+        boolean bAscSort = isAscSort( commentFilter );
+
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_BY_RESOURCE );
+        // We only get parents
+        sbSQL.append( SQL_AND ).append( SQL_FILTER_SELECT_PARENTS );
+        addSqlFilterByCommentFilter( commentFilter, sbSQL );
+        // We seek the position of the cursor instead of skipping rows
+        if ( cursor != null )
+        {
+            sbSQL.append( SQL_AND ).append( MessageFormat.format( bAscSort ? SQL_SEEK_AFTER : SQL_SEEK_BEFORE, strSortColumn ) );
+        }
+        // The id of comments is used as a tie-breaker so that the cursor matches a unique row
+        String strSortOrder = bAscSort ? SQL_ASC : SQL_DESC;
+        sbSQL.append( SQL_ORDER_BY ).append( strSortColumn ).append( strSortOrder );
+        sbSQL.append( SQL_THEN_BY_ID_COMMENT ).append( strSortOrder );
+        sbSQL.append( SQL_LIMIT ).append( CONSTANT_QUESTION_MARK );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            if ( strIdExtendableResource.equals( CONSTANT_ALL_RESSOURCE_ID ) )
+            {
+                daoUtil.setString( nIndex++, CONSTANT_SQL_ALL_RESSOURCE_ID );
+            }
+            else
+            {
+                daoUtil.setString( nIndex++, strIdExtendableResource );
+            }
+            daoUtil.setString( nIndex++, strExtendableResourceType );
+
+            if ( StringUtils.isNotEmpty( commentFilter.getLuteceUserName( ) ) )
+            {
+                daoUtil.setString( nIndex++, commentFilter.getLuteceUserName( ) );
+            }
+
+            if ( cursor != null )
+            {
+                if ( SQL_SORT_BY_COMMENT_ORDER.equals( strSortColumn ) )
+                {
+                    daoUtil.setInt( nIndex++, (int) cursor.getSortValue( ) );
+                    daoUtil.setInt( nIndex++, (int) cursor.getSortValue( ) );
+                }
+                else
+                {
+                    daoUtil.setTimestamp( nIndex++, new Timestamp( cursor.getSortValue( ) ) );
+                    daoUtil.setTimestamp( nIndex++, new Timestamp( cursor.getSortValue( ) ) );
+                }
+                daoUtil.setInt( nIndex++, cursor.getIdComment( ) );
+            }
+            daoUtil.setInt( nIndex, nMaxItemsNumber );
+
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -473,6 +804,148 @@ public class CommentDAO implements ICommentDAO
         return listComments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> findByIdParents( Collection<Integer> listIdParents, CommentFilter commentFilter, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( );
+        if ( CollectionUtils.isEmpty( listIdParents ) )
+        {
+            return listComments;
+        }
+
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_FIND_BY_ID_PARENTS );
+        sbSQL.append( listIdParents.stream( ).map( n -> CONSTANT_QUESTION_MARK ).collect( Collectors.joining( CONSTANT_COMMA ) ) );
+        sbSQL.append( CONSTANT_CLOSE_PARENTHESIS );
+        addSqlFilterByCommentFilter( commentFilter, sbSQL );
+        // We sort results
+        addSqlOrderByCommentFilter( commentFilter, sbSQL );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            for ( Integer nIdParent : listIdParents )
+            {
+                daoUtil.setInt( nIndex++, nIdParent );
+            }
+
+            if ( StringUtils.isNotEmpty( commentFilter.getLuteceUserName( ) ) )
+            {
+                daoUtil.setString( nIndex++, commentFilter.getLuteceUserName( ) );
+            }
+
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> findForExport( String strExtendableResourceType, CommentFilter commentFilter, Timestamp dateFrom, Timestamp dateTo,
+            int nIdCommentAfter, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( nMaxItemsNumber );
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_FOR_EXPORT );
+        if ( dateFrom != null )
+        {
+            sbSQL.append( SQL_AND ).append( SQL_FILTER_DATE_COMMENT_FROM );
+        }
+        if ( dateTo != null )
+        {
+            sbSQL.append( SQL_AND ).append( SQL_FILTER_DATE_COMMENT_TO );
+        }
+        addSqlFilterByCommentFilter( commentFilter, sbSQL );
+        // The primary key is used as a cursor, so that each chunk is a range scan whatever its position in the export
+        sbSQL.append( SQL_ORDER_BY_ID_COMMENT ).append( SQL_LIMIT ).append( CONSTANT_QUESTION_MARK );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strExtendableResourceType );
+            daoUtil.setInt( nIndex++, nIdCommentAfter );
+            if ( dateFrom != null )
+            {
+                daoUtil.setTimestamp( nIndex++, dateFrom );
+            }
+            if ( dateTo != null )
+            {
+                daoUtil.setTimestamp( nIndex++, dateTo );
+            }
+            if ( StringUtils.isNotEmpty( commentFilter.getLuteceUserName( ) ) )
+            {
+                daoUtil.setString( nIndex++, commentFilter.getLuteceUserName( ) );
+            }
+            daoUtil.setInt( nIndex, nMaxItemsNumber );
+
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> findAfter( int nIdCommentAfter, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( nMaxItemsNumber );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdCommentAfter );
+            daoUtil.setInt( 2, nMaxItemsNumber );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listComments.add( getCommentInfo( daoUtil ) );
+            }
+        }
+
+        return listComments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Comment> findPublishedByDate( Timestamp dateFrom, Timestamp dateTo, int nIdCommentAfter, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<Comment> listComments = new ArrayList<>( nMaxItemsNumber );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_PUBLISHED_BY_DATE, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, dateFrom );
+            daoUtil.setTimestamp( 2, dateTo );
+            daoUtil.setInt( 3, nIdCommentAfter );
+            daoUtil.setInt( 4, nMaxItemsNumber );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                Comment comment = new Comment( );
+                comment.setIdComment( daoUtil.getInt( 1 ) );
+                comment.setExtendableResourceType( daoUtil.getString( 2 ) );
+                comment.setIdExtendableResource( daoUtil.getString( 3 ) );
+                comment.setDateComment( daoUtil.getTimestamp( 4 ) );
+                comment.setPublished( true );
+                listComments.add( comment );
+            }
+        }
+
+        return listComments;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -502,6 +975,46 @@ public class CommentDAO implements ICommentDAO
         return nResult;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, Integer> countByIdParents( Collection<Integer> listIdParents, boolean bPublishedOnly, Plugin plugin )
+    {
+        Map<Integer, Integer> mapCounts = new HashMap<>( );
+        if ( CollectionUtils.isEmpty( listIdParents ) )
+        {
+            return mapCounts;
+        }
+
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_COUNT_BY_ID_PARENTS );
+        sbSQL.append( listIdParents.stream( ).map( n -> CONSTANT_QUESTION_MARK ).collect( Collectors.joining( CONSTANT_COMMA ) ) );
+        sbSQL.append( CONSTANT_CLOSE_PARENTHESIS );
+        if ( bPublishedOnly )
+        {
+            // We remove non published comments
+            sbSQL.append( SQL_AND ).append( SQL_FILTER_STATUS_PUBLISHED );
+        }
+        sbSQL.append( SQL_GROUP_BY_ID_PARENT );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            for ( Integer nIdParent : listIdParents )
+            {
+                daoUtil.setInt( nIndex++, nIdParent );
+            }
+
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                mapCounts.put( daoUtil.getInt( 1 ), daoUtil.getInt( 2 ) );
+            }
+        }
+
+        return mapCounts;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -541,24 +1054,28 @@ public class CommentDAO implements ICommentDAO
     public List<Integer> findIdMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset, int nMaxItemsNumber,
             Plugin plugin )
     {
-        List<Integer> listIds;
-        if ( nMaxItemsNumber > 0 )
-        {
-            listIds = new ArrayList<Integer>( nMaxItemsNumber );
-        }
-        else
-        {
-            listIds = new ArrayList<Integer>( );
-        }
+        return findMostCommentedResources( strExtendableResourceType, bPublishedOnly, null, nItemsOffset, nMaxItemsNumber, plugin ).stream( )
+                .map( resource -> Integer.parseInt( resource.getIdExtendableResource( ) ) ).collect( Collectors.toList( ) );
+    }
 
-        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_DISTINCT_ID_RESOURCES );
-        sbSQL.append( SQL_ORDER_BY ).append( CONSTANT_OPEN_PARENTHESIS );
-        sbSQL.append( SQL_COUNT_NUMBER_COMMENTS_FOR_SELECT_ID_RESOURCE );
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, Timestamp dateFrom,
+            int nItemsOffset, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<CommentedResource> listResources = new ArrayList<>( );
+        StringBuilder sbSQL = new StringBuilder( SQL_QUERY_SELECT_MOST_COMMENTED_RESOURCES );
         if ( bPublishedOnly )
         {
             sbSQL.append( SQL_AND ).append( SQL_FILTER_STATUS_PUBLISHED );
         }
-        sbSQL.append( CONSTANT_CLOSE_PARENTHESIS );
+        if ( dateFrom != null )
+        {
+            sbSQL.append( SQL_AND ).append( SQL_FILTER_DATE_COMMENT_FROM );
+        }
+        sbSQL.append( SQL_GROUP_BY_ID_RESOURCE_ORDER_BY_COUNT );
         if ( nMaxItemsNumber > 0 )
         {
             sbSQL.append( SQL_LIMIT );
@@ -568,27 +1085,68 @@ public class CommentDAO implements ICommentDAO
             }
             sbSQL.append( CONSTANT_QUESTION_MARK );
         }
-        int nIndex = 1;
-        DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin );
-        daoUtil.setString( nIndex++, strExtendableResourceType );
-        if ( nMaxItemsNumber > 0 )
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSQL.toString( ), plugin ) )
         {
-            if ( nItemsOffset > 0 )
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strExtendableResourceType );
+            if ( dateFrom != null )
             {
-                daoUtil.setInt( nIndex++, nItemsOffset );
+                daoUtil.setTimestamp( nIndex++, dateFrom );
             }
-            daoUtil.setInt( nIndex++, nMaxItemsNumber );
-        }
-        daoUtil.executeQuery( );
+            if ( nMaxItemsNumber > 0 )
+            {
+                if ( nItemsOffset > 0 )
+                {
+                    daoUtil.setInt( nIndex++, nItemsOffset );
+                }
+                daoUtil.setInt( nIndex, nMaxItemsNumber );
+            }
+            daoUtil.executeQuery( );
 
-        while ( daoUtil.next( ) )
-        {
-            listIds.add( daoUtil.getInt( 1 ) );
+            while ( daoUtil.next( ) )
+            {
+                CommentedResource resource = new CommentedResource( );
+                resource.setIdExtendableResource( daoUtil.getString( 1 ) );
+                resource.setNbComments( daoUtil.getInt( 2 ) );
+                listResources.add( resource );
+            }
         }
 
-        daoUtil.free( );
+        return listResources;
+    }
 
-        return listIds;
+    /**
+     * Close a SQL query ending with an open IN clause, with one placeholder for each id
+     * 
+     * @param strSqlQuery
+     *            The SQL query, ending with an open IN clause
+     * @param listIds
+     *            The ids to put in the IN clause
+     * @return The SQL query
+     */
+    private static String getSqlInClause( String strSqlQuery, Collection<Integer> listIds )
+    {
+        return strSqlQuery + listIds.stream( ).map( n -> CONSTANT_QUESTION_MARK ).collect( Collectors.joining( CONSTANT_COMMA ) ) + CONSTANT_CLOSE_PARENTHESIS;
+    }
+
+    /**
+     * Set the ids of an IN clause in a daoUtil
+     * 
+     * @param daoUtil
+     *            The daoUtil
+     * @param nFirstIndex
+     *            The index of the first id of the IN clause
+     * @param listIds
+     *            The ids to set
+     */
+    private static void setIds( DAOUtil daoUtil, int nFirstIndex, Collection<Integer> listIds )
+    {
+        int nIndex = nFirstIndex;
+        for ( Integer nId : listIds )
+        {
+            daoUtil.setInt( nIndex++, nId );
+        }
     }
 
     /**
@@ -687,35 +1245,37 @@ public class CommentDAO implements ICommentDAO
      */
     private void addSqlOrderByCommentFilter( CommentFilter commentFilter, StringBuilder sbSQL )
     {
+        sbSQL.append( SQL_ORDER_BY ).append( getSortColumn( commentFilter ) );
+        sbSQL.append( isAscSort( commentFilter ) ? SQL_ASC : SQL_DESC );
+    }
 
-        if ( StringUtils.isNotEmpty( commentFilter.getSortedAttributeName( ) ) )
-        {
-            if ( StringUtils.equals( SQL_SORT_BY_DATE_CREATION, commentFilter.getSortedAttributeName( ) )
-                    || StringUtils.equals( SQL_SORT_BY_DATE_MODIFICATION, commentFilter.getSortedAttributeName( ) )
-                    || StringUtils.equals( SQL_SORT_BY_COMMENT_ORDER, commentFilter.getSortedAttributeName( ) ) )
-            {
-                sbSQL.append( SQL_ORDER_BY ).append( commentFilter.getSortedAttributeName( ) );
-            }
-            else
-            {
-                sbSQL.append( SQL_ORDER_BY_DATE_MODIFICATION );
-            }
-        }
-        else
-        {
-            sbSQL.append( SQL_ORDER_BY_DATE_MODIFICATION );
-        }
-        String strSortOrder;
-        if ( commentFilter.getAscSort( ) != null && commentFilter.getAscSort( ).equals( true ) )
-        {
-            strSortOrder = SQL_ASC;
-        }
-        else
+    /**
+     * Get the column used to sort comments
+     * 
+     * @param commentFilter
+     *            the commentFilter
+     * @return the name of the column
+     */
+    private String getSortColumn( CommentFilter commentFilter )
+    {
+        if ( StringUtils.equals( SQL_SORT_BY_DATE_CREATION, commentFilter.getSortedAttributeName( ) )
+                || StringUtils.equals( SQL_SORT_BY_COMMENT_ORDER, commentFilter.getSortedAttributeName( ) ) )
         {
-            strSortOrder = SQL_DESC;
+            return commentFilter.getSortedAttributeName( );
         }
-        sbSQL.append( strSortOrder );
+        return SQL_SORT_BY_DATE_MODIFICATION;
+    }
 
+    /**
+     * Check if comments must be sorted ascendantly
+     * 
+     * @param commentFilter
+     *            the commentFilter
+     * @return true if comments must be sorted ascendantly, false otherwise
+     */
+    private boolean isAscSort( CommentFilter commentFilter )
+    {
+        return commentFilter.getAscSort( ) != null && commentFilter.getAscSort( ).equals( true );
     }
     
     /**
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 
+ * Periods over which comments are counted to rank the most commented resources
+ * 
+ */
+public enum CommentRankingPeriod
+{
+    /**
+     * Every comment
+     */
+    ALL( 0 ),
+
+    /**
+     * Comments of the last 24 hours
+     */
+    DAY( TimeUnit.DAYS.toMillis( 1 ) ),
+
+    /**
+     * Comments of the last 7 days
+     */
+    WEEK( TimeUnit.DAYS.toMillis( 7 ) ),
+
+    /**
+     * Comments of the last 30 days
+     */
+    MONTH( TimeUnit.DAYS.toMillis( 30 ) );
+
+    private final long _lDuration;
+
+    /**
+     * Constructor
+     * 
+     * @param lDuration
+     *            The duration of the period in milliseconds, or 0 for every comment
+     */
+    CommentRankingPeriod( long lDuration )
+    {
+        _lDuration = lDuration;
+    }
+
+    /**
+     * Get the date of the oldest comments counted in the period
+     * 
+     * @param lNow
+     *            The current date in milliseconds
+     * @return The date of the oldest comments, or null if every comment is counted
+     */
+    public Timestamp getDateFrom( long lNow )
+    {
+        return ( _lDuration > 0 ) ? new Timestamp( lNow - _lDuration ) : null;
+    }
+}
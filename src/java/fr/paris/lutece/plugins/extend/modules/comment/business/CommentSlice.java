@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business;
+
+import java.util.List;
+
+/**
+ * 
+ * CommentSlice : a list of comments fetched with a cursor, and the token to use to fetch the following comments.
+ * 
+ */
+public class CommentSlice
+{
+    private final List<Comment> _listComments;
+    private final String _strContinuationToken;
+
+    /**
+     * Constructor
+     * 
+     * @param listComments
+     *            The comments of the slice
+     * @param strContinuationToken
+     *            The token to use to get the next slice, or null if there is no more comment
+     */
+    public CommentSlice( List<Comment> listComments, String strContinuationToken )
+    {
+        _listComments = listComments;
+        _strContinuationToken = strContinuationToken;
+    }
+
+    /**
+     * Get the comments of the slice
+     * 
+     * @return The comments of the slice
+     */
+    public List<Comment> getListComments( )
+    {
+        return _listComments;
+    }
+
+    /**
+     * Get the token to use to get the next slice
+     * 
+     * @return The continuation token, or null if there is no more comment
+     */
+    public String getContinuationToken( )
+    {
+        return _strContinuationToken;
+    }
+
+    /**
+     * Check if there are comments after this slice
+     * 
+     * @return True if there are comments after this slice, false otherwise
+     */
+    public boolean hasMore( )
+    {
+        return _strContinuationToken != null;
+    }
+}
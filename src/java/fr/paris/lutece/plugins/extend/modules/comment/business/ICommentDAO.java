@@ -35,8 +35,10 @@ package fr.paris.lutece.plugins.extend.modules.comment.business;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
+import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * ICommentDAO.
@@ -97,7 +99,7 @@ public interface ICommentDAO
     void store( Comment comment, Plugin plugin );
 
     /**
-     * Update comment status.
+     * Update comment status. The comment is only updated if its status changes.
      * 
      * @param nIdComment
      *            the n id comment
@@ -105,8 +107,143 @@ public interface ICommentDAO
      *            the b published
      * @param plugin
      *            the plugin
+     * @return true if the status of the comment changed, false if the comment does not exist or already had the given status
      */
-    void updateCommentStatus( int nIdComment, boolean bPublished, Plugin plugin );
+    boolean updateCommentStatus( int nIdComment, boolean bPublished, Plugin plugin );
+
+    /**
+     * Update the important flag of a comment, without rewriting the other columns. The comment is only updated if its flag changes.
+     * 
+     * @param nIdComment
+     *            the id of the comment
+     * @param bImportant
+     *            true if the comment is important
+     * @param plugin
+     *            the plugin
+     * @return true if the flag of the comment changed, false if the comment does not exist or already had the given flag
+     */
+    boolean updateImportant( int nIdComment, boolean bImportant, Plugin plugin );
+
+    /**
+     * Update the pinned flag of a comment, without rewriting the other columns. The comment is only updated if its flag changes.
+     * 
+     * @param nIdComment
+     *            the id of the comment
+     * @param bPinned
+     *            true if the comment is pinned
+     * @param nCommentOrder
+     *            the order of the comment once pinned. This order is ignored when the comment is unpinned.
+     * @param plugin
+     *            the plugin
+     * @return true if the flag of the comment changed, false if the comment does not exist or already had the given flag
+     */
+    boolean updatePinned( int nIdComment, boolean bPinned, int nCommentOrder, Plugin plugin );
+
+    /**
+     * Load a list of comments with a single query.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to load
+     * @param plugin
+     *            the plugin
+     * @return the list of comments, or an empty list if no id is given
+     */
+    List<Comment> load( Collection<Integer> listIdComments, Plugin plugin );
+
+    /**
+     * Load a list of comments with a single query, and lock them until the end of the current transaction. Rows are locked by ascending id, so that
+     * transactions locking overlapping lists can not deadlock.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to load
+     * @param plugin
+     *            the plugin
+     * @return the list of comments that still exist, or an empty list if no id is given
+     */
+    List<Comment> loadForUpdate( Collection<Integer> listIdComments, Plugin plugin );
+
+    /**
+     * Delete a list of comments with a single query.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to delete
+     * @param plugin
+     *            the plugin
+     */
+    void delete( Collection<Integer> listIdComments, Plugin plugin );
+
+    /**
+     * Update the status of a list of comments with a single query. Comments that already have the given status are left untouched.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bPublished
+     *            true to publish the comments, false to unpublish them
+     * @param plugin
+     *            the plugin
+     * @return the number of comments whose status changed
+     */
+    int updateCommentStatus( Collection<Integer> listIdComments, boolean bPublished, Plugin plugin );
+
+    /**
+     * Update the important flag of a list of comments with a single query.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bImportant
+     *            true if the comments are important
+     * @param plugin
+     *            the plugin
+     */
+    void updateImportant( Collection<Integer> listIdComments, boolean bImportant, Plugin plugin );
+
+    /**
+     * Update the pinned flag of a list of comments with a single query. The order of the comments is not modified.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bPinned
+     *            true if the comments are pinned
+     * @param plugin
+     *            the plugin
+     */
+    void updatePinned( Collection<Integer> listIdComments, boolean bPinned, Plugin plugin );
+
+    /**
+     * Get the highest order of the pinned comments of a resource.
+     * 
+     * @param strIdExtendableResource
+     *            the id of the extendable resource
+     * @param strExtendableResourceType
+     *            the extendable resource type
+     * @param plugin
+     *            the plugin
+     * @return the highest order of the pinned comments, or 0 if the resource has no pinned comment
+     */
+    int findMaxPinnedCommentOrder( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Update the order of a list of comments with a single query.
+     * 
+     * @param mapCommentOrders
+     *            the new orders of the comments, indexed by the id of the comments
+     * @param plugin
+     *            the plugin
+     */
+    void updateCommentOrders( Map<Integer, Integer> mapCommentOrders, Plugin plugin );
+
+    /**
+     * Update the date of last modification of a comment. The date is only updated if it is after the current one, so concurrent updates can not move it
+     * backward.
+     * 
+     * @param nIdComment
+     *            the id of the comment
+     * @param dateLastModif
+     *            the date of last modification
+     * @param plugin
+     *            the plugin
+     */
+    void updateDateLastModif( int nIdComment, Timestamp dateLastModif, Plugin plugin );
 
     /**
      * Check comment nb.
@@ -178,6 +315,27 @@ public interface ICommentDAO
     List<Comment> findParentCommentsByResource( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter, int nItemsOffset,
             int nMaxItemsNumber, Plugin plugin );
 
+    /**
+     * Get comments of a given resource located after a cursor. Only parents comments are returned. Comments are sorted on the sorted attribute of the filter
+     * and then on their id, so that the cursor identifies a unique position in the list.
+     *
+     * @param strIdExtendableResource
+     *            The id of the resource
+     * @param strExtendableResourceType
+     *            The type of the resource
+     * @param commentFilter
+     *            The commentFilter
+     * @param cursor
+     *            The cursor of the last returned comment, or null to get items from the first one
+     * @param nMaxItemsNumber
+     *            The maximum number of items to return
+     * @param plugin
+     *            The plugin
+     * @return The list of comments associated with the given resource
+     */
+    List<Comment> findParentCommentsByResourceAfter( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter,
+            CommentCursor cursor, int nMaxItemsNumber, Plugin plugin );
+
     /**
      * Get comments from their parent
      * 
@@ -191,6 +349,74 @@ public interface ICommentDAO
      */
     List<Comment> findByIdParent( int nIdParent, CommentFilter commentFilter, Plugin plugin );
 
+    /**
+     * Get comments from a list of parents with a single query. Comments of every parent are returned in the same list, sorted according to the filter.
+     * 
+     * @param listIdParents
+     *            The ids of the parents of comments to get
+     * @param commentFilter
+     *            The comment filter
+     * @param plugin
+     *            The plugin
+     * @return The list of comments associated with the given parents, or an empty list if no parent is given
+     */
+    List<Comment> findByIdParents( Collection<Integer> listIdParents, CommentFilter commentFilter, Plugin plugin );
+
+    /**
+     * Get a chunk of the comments of a resource type to export them. Comments are sorted by id, and the chunk starts after the given id, so that the whole
+     * export can be read chunk by chunk with constant memory.
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param commentFilter
+     *            The comment filter. The sort of the filter is ignored.
+     * @param dateFrom
+     *            The minimum date of creation of the comments, or null
+     * @param dateTo
+     *            The date of creation before which comments must be created, or null
+     * @param nIdCommentAfter
+     *            The id of the last comment of the previous chunk, or 0 to get the first chunk
+     * @param nMaxItemsNumber
+     *            The maximum number of comments of the chunk
+     * @param plugin
+     *            The plugin
+     * @return The chunk of comments. A chunk smaller than the maximum number of comments is the last one.
+     */
+    List<Comment> findForExport( String strExtendableResourceType, CommentFilter commentFilter, Timestamp dateFrom, Timestamp dateTo, int nIdCommentAfter,
+            int nMaxItemsNumber, Plugin plugin );
+
+    /**
+     * Get a chunk of every comment, sorted by id. The chunk starts after the given id, so that every comment can be read chunk by chunk with constant
+     * memory.
+     * 
+     * @param nIdCommentAfter
+     *            The id of the last comment of the previous chunk, or 0 to get the first chunk
+     * @param nMaxItemsNumber
+     *            The maximum number of comments of the chunk
+     * @param plugin
+     *            The plugin
+     * @return The chunk of comments. A chunk smaller than the maximum number of comments is the last one.
+     */
+    List<Comment> findAfter( int nIdCommentAfter, int nMaxItemsNumber, Plugin plugin );
+
+    /**
+     * Get a chunk of the published comments created during a period, sorted by id. Only the id, the resource and the date of creation of the comments are
+     * loaded.
+     * 
+     * @param dateFrom
+     *            The date of the oldest comments to get
+     * @param dateTo
+     *            The date before which comments are returned
+     * @param nIdCommentAfter
+     *            The id of the last comment of the previous chunk, or 0 to get the first chunk
+     * @param nMaxItemsNumber
+     *            The maximum number of comments of the chunk
+     * @param plugin
+     *            The plugin
+     * @return The chunk of comments. A chunk smaller than the maximum number of comments is the last one.
+     */
+    List<Comment> findPublishedByDate( Timestamp dateFrom, Timestamp dateTo, int nIdCommentAfter, int nMaxItemsNumber, Plugin plugin );
+
     /**
      * Get the number of comments associated with a given parent
      * 
@@ -204,6 +430,19 @@ public interface ICommentDAO
      */
     int countByIdParent( int nIdParent, boolean bPublishedOnly, Plugin plugin );
 
+    /**
+     * Get the number of comments associated with each parent of a list with a single query
+     * 
+     * @param listIdParents
+     *            The ids of the parents of comments to count
+     * @param bPublishedOnly
+     *            True to consider only published comments
+     * @param plugin
+     *            The plugin
+     * @return The map of the number of comments, indexed by the id of their parent. Parents with no comment are not in the map.
+     */
+    Map<Integer, Integer> countByIdParents( Collection<Integer> listIdParents, boolean bPublishedOnly, Plugin plugin );
+
     /**
      * Select ids of comments associated with a given resource
      * 
@@ -232,11 +471,32 @@ public interface ICommentDAO
      *            The maximum number of items to return, or 0 to get every items
      * @param plugin
      *            The plugin
-     * @return The list of ids of resources ordered by the number of associated comments
+     * @return The list of ids of resources ordered by the number of associated comments. Ids of resources must be numeric, see
+     *         {@link #findMostCommentedResources(String, boolean, Timestamp, int, int, Plugin)} otherwise.
      */
     List<Integer> findIdMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset, int nMaxItemsNumber,
             Plugin plugin );
 
+    /**
+     * Get resources with their number of comments, ordered by descending number of comments
+     * 
+     * @param strExtendableResourceType
+     *            The type of resources to consider
+     * @param bPublishedOnly
+     *            True to consider only published comments, false to consider every comments
+     * @param dateFrom
+     *            The date of the oldest comments to consider, or null to consider every comments
+     * @param nItemsOffset
+     *            The offset of the items to get, or 0 to get items from the first one
+     * @param nMaxItemsNumber
+     *            The maximum number of items to return, or 0 to get every items
+     * @param plugin
+     *            The plugin
+     * @return The list of resources ordered by the number of associated comments
+     */
+    List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, Timestamp dateFrom, int nItemsOffset,
+            int nMaxItemsNumber, Plugin plugin );
+
     /**
      * Get comments of a lutece user. Only parents comments are returned.
      * 
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.cache;
+
+import java.sql.Timestamp;
+
+/**
+ * 
+ * Notification sent by a node to the other nodes that some of their cached data must be removed
+ * 
+ */
+public class CommentCacheEvent
+{
+    /**
+     * Event sent when comments of a resource are modified
+     */
+    public static final int EVENT_TYPE_RESOURCE = 0;
+
+    /**
+     * Event sent when configurations are modified
+     */
+    public static final int EVENT_TYPE_CONFIGS = 1;
+
+    private int _nIdEvent;
+    private int _nEventType;
+    private String _strIdExtendableResource;
+    private String _strExtendableResourceType;
+    private String _strNodeId;
+    private Timestamp _dateEvent;
+
+    /**
+     * Get the id of the event
+     * 
+     * @return The id of the event
+     */
+    public int getIdEvent( )
+    {
+        return _nIdEvent;
+    }
+
+    /**
+     * Set the id of the event
+     * 
+     * @param nIdEvent
+     *            The id of the event
+     */
+    public void setIdEvent( int nIdEvent )
+    {
+        _nIdEvent = nIdEvent;
+    }
+
+    /**
+     * Get the type of the event
+     * 
+     * @return The type of the event
+     */
+    public int getEventType( )
+    {
+        return _nEventType;
+    }
+
+    /**
+     * Set the type of the event
+     * 
+     * @param nEventType
+     *            The type of the event
+     */
+    public void setEventType( int nEventType )
+    {
+        _nEventType = nEventType;
+    }
+
+    /**
+     * Get the id of the extendable resource
+     * 
+     * @return The id of the extendable resource
+     */
+    public String getIdExtendableResource( )
+    {
+        return _strIdExtendableResource;
+    }
+
+    /**
+     * Set the id of the extendable resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     */
+    public void setIdExtendableResource( String strIdExtendableResource )
+    {
+        _strIdExtendableResource = strIdExtendableResource;
+    }
+
+    /**
+     * Get the extendable resource type
+     * 
+     * @return The extendable resource type
+     */
+    public String getExtendableResourceType( )
+    {
+        return _strExtendableResourceType;
+    }
+
+    /**
+     * Set the extendable resource type
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void setExtendableResourceType( String strExtendableResourceType )
+    {
+        _strExtendableResourceType = strExtendableResourceType;
+    }
+
+    /**
+     * Get the id of the node that sent the event
+     * 
+     * @return The id of the node
+     */
+    public String getNodeId( )
+    {
+        return _strNodeId;
+    }
+
+    /**
+     * Set the id of the node that sent the event
+     * 
+     * @param strNodeId
+     *            The id of the node
+     */
+    public void setNodeId( String strNodeId )
+    {
+        _strNodeId = strNodeId;
+    }
+
+    /**
+     * Get the date of the event
+     * 
+     * @return The date of the event
+     */
+    public Timestamp getDateEvent( )
+    {
+        return _dateEvent;
+    }
+
+    /**
+     * Set the date of the event
+     * 
+     * @param dateEvent
+     *            The date of the event
+     */
+    public void setDateEvent( Timestamp dateEvent )
+    {
+        _dateEvent = dateEvent;
+    }
+}
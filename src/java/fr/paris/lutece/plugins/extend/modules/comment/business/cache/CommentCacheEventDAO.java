@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.cache;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * CommentCacheEventDAO
+ * 
+ */
+public class CommentCacheEventDAO implements ICommentCacheEventDAO
+{
+    private static final String SQL_QUERY_INSERT = " INSERT INTO extend_comment_cache_event ( event_type, id_resource, resource_type, node_id ) VALUES ( ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_SELECT_AFTER = " SELECT id_event, event_type, id_resource, resource_type, node_id, date_event FROM extend_comment_cache_event WHERE id_event > ? ORDER BY id_event ";
+    private static final String SQL_QUERY_SELECT_LAST_ID = " SELECT MAX(id_event) FROM extend_comment_cache_event ";
+    private static final String SQL_QUERY_DELETE_BEFORE = " DELETE FROM extend_comment_cache_event WHERE date_event < ? ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insert( CommentCacheEvent event, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setInt( nIndex++, event.getEventType( ) );
+            daoUtil.setString( nIndex++, event.getIdExtendableResource( ) );
+            daoUtil.setString( nIndex++, event.getExtendableResourceType( ) );
+            daoUtil.setString( nIndex, event.getNodeId( ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentCacheEvent> findEventsAfter( int nIdEventAfter, Plugin plugin )
+    {
+        List<CommentCacheEvent> listEvents = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_AFTER, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdEventAfter );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                CommentCacheEvent event = new CommentCacheEvent( );
+                event.setIdEvent( daoUtil.getInt( nIndex++ ) );
+                event.setEventType( daoUtil.getInt( nIndex++ ) );
+                event.setIdExtendableResource( daoUtil.getString( nIndex++ ) );
+                event.setExtendableResourceType( daoUtil.getString( nIndex++ ) );
+                event.setNodeId( daoUtil.getString( nIndex++ ) );
+                event.setDateEvent( daoUtil.getTimestamp( nIndex ) );
+                listEvents.add( event );
+            }
+        }
+        return listEvents;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int findLastEventId( Plugin plugin )
+    {
+        int nIdLastEvent = 0;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LAST_ID, plugin ) )
+        {
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                nIdLastEvent = daoUtil.getInt( 1 );
+            }
+        }
+        return nIdLastEvent;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteEventsBefore( Timestamp dateBefore, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BEFORE, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, dateBefore );
+            daoUtil.executeUpdate( );
+        }
+    }
+}
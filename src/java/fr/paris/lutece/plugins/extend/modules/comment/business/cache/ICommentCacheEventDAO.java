@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.cache;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * ICommentCacheEventDAO.
+ */
+public interface ICommentCacheEventDAO
+{
+    /**
+     * Insert an event. The date of the event is set by the database, so that events of every node share the same clock.
+     * 
+     * @param event
+     *            The event
+     * @param plugin
+     *            The plugin
+     */
+    void insert( CommentCacheEvent event, Plugin plugin );
+
+    /**
+     * Get the events whose id is greater than a given id, ordered by id
+     * 
+     * @param nIdEventAfter
+     *            The id
+     * @param plugin
+     *            The plugin
+     * @return The list of events
+     */
+    List<CommentCacheEvent> findEventsAfter( int nIdEventAfter, Plugin plugin );
+
+    /**
+     * Get the id of the last event
+     * 
+     * @param plugin
+     *            The plugin
+     * @return The id of the last event, or 0 if there is no event
+     */
+    int findLastEventId( Plugin plugin );
+
+    /**
+     * Delete events that occurred before a given date
+     * 
+     * @param dateBefore
+     *            The date
+     * @param plugin
+     *            The plugin
+     */
+    void deleteEventsBefore( Timestamp dateBefore, Plugin plugin );
+}
@@ -56,6 +56,37 @@ public class CommentExtenderConfig extends ExtenderConfig
     private boolean _bTriCommentsByCreation;
     private int _nIdWorkflow;
 
+    /**
+     * Instantiates a new comment extender config.
+     */
+    public CommentExtenderConfig( )
+    {
+    }
+
+    /**
+     * Instantiates a copy of a comment extender config.
+     * 
+     * @param config
+     *            the config to copy
+     */
+    public CommentExtenderConfig( CommentExtenderConfig config )
+    {
+        setIdExtender( config.getIdExtender( ) );
+        _bIsModerated = config._bIsModerated;
+        _nNbComments = config._nNbComments;
+        _nIdMailingList = config._nIdMailingList;
+        _bAuthorizeSubComments = config._bAuthorizeSubComments;
+        _bUseBBCodeEditor = config._bUseBBCodeEditor;
+        _strAdminBadge = config._strAdminBadge;
+        _strMessageCommentCreated = config._strMessageCommentCreated;
+        _nAddCommentPosition = config._nAddCommentPosition;
+        _bEnabledAuthMode = config._bEnabledAuthMode;
+        _bDisplaySubComments = config._bDisplaySubComments;
+        _bDeleteComments = config._bDeleteComments;
+        _bTriCommentsByCreation = config._bTriCommentsByCreation;
+        _nIdWorkflow = config._nIdWorkflow;
+    }
+
     /**
      * Checks if is moderated.
      * 
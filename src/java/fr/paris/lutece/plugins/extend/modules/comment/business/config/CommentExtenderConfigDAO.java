@@ -35,6 +35,8 @@ package fr.paris.lutece.plugins.extend.modules.comment.business.config;
 
 import fr.paris.lutece.plugins.extend.business.extender.config.IExtenderConfigDAO;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.service.cache.ICommentCacheProvider;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 /**
@@ -75,6 +77,8 @@ public class CommentExtenderConfigDAO implements IExtenderConfigDAO<CommentExten
 
         daoUtil.executeUpdate( );
         daoUtil.free( );
+
+        invalidateCaches( );
     }
 
     /**
@@ -104,6 +108,8 @@ public class CommentExtenderConfigDAO implements IExtenderConfigDAO<CommentExten
 
         daoUtil.executeUpdate( );
         daoUtil.free( );
+
+        invalidateCaches( );
     }
 
     /**
@@ -117,6 +123,8 @@ public class CommentExtenderConfigDAO implements IExtenderConfigDAO<CommentExten
 
         daoUtil.executeUpdate( );
         daoUtil.free( );
+
+        invalidateCaches( );
     }
 
     /**
@@ -155,4 +163,14 @@ public class CommentExtenderConfigDAO implements IExtenderConfigDAO<CommentExten
 
         return config;
     }
+
+    /**
+     * Remove cached configurations of this node and notify other nodes
+     */
+    private static void invalidateCaches( )
+    {
+        ICommentCacheProvider cacheProvider = SpringContextService.getBean( ICommentCacheProvider.BEAN_NAME );
+        cacheProvider.evictConfigs( );
+        cacheProvider.notifyConfigsModified( );
+    }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.stats;
+
+import java.sql.Timestamp;
+
+/**
+ * 
+ * Statistics of the comments of a resource. The same class is used to carry the variations of the statistics applied when comments are modified.
+ * 
+ */
+public class CommentStats
+{
+    private String _strIdExtendableResource;
+    private String _strExtendableResourceType;
+    private int _nNbComments;
+    private int _nNbPublishedComments;
+    private int _nNbParentComments;
+    private int _nNbPublishedParentComments;
+    private Timestamp _dateLastComment;
+
+    /**
+     * Get the id of the extendable resource
+     * 
+     * @return The id of the extendable resource
+     */
+    public String getIdExtendableResource( )
+    {
+        return _strIdExtendableResource;
+    }
+
+    /**
+     * Set the id of the extendable resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     */
+    public void setIdExtendableResource( String strIdExtendableResource )
+    {
+        _strIdExtendableResource = strIdExtendableResource;
+    }
+
+    /**
+     * Get the extendable resource type
+     * 
+     * @return The extendable resource type
+     */
+    public String getExtendableResourceType( )
+    {
+        return _strExtendableResourceType;
+    }
+
+    /**
+     * Set the extendable resource type
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void setExtendableResourceType( String strExtendableResourceType )
+    {
+        _strExtendableResourceType = strExtendableResourceType;
+    }
+
+    /**
+     * Get the number of comments
+     * 
+     * @return The number of comments
+     */
+    public int getNbComments( )
+    {
+        return _nNbComments;
+    }
+
+    /**
+     * Set the number of comments
+     * 
+     * @param nNbComments
+     *            The number of comments
+     */
+    public void setNbComments( int nNbComments )
+    {
+        _nNbComments = nNbComments;
+    }
+
+    /**
+     * Get the number of published comments
+     * 
+     * @return The number of published comments
+     */
+    public int getNbPublishedComments( )
+    {
+        return _nNbPublishedComments;
+    }
+
+    /**
+     * Set the number of published comments
+     * 
+     * @param nNbPublishedComments
+     *            The number of published comments
+     */
+    public void setNbPublishedComments( int nNbPublishedComments )
+    {
+        _nNbPublishedComments = nNbPublishedComments;
+    }
+
+    /**
+     * Get the number of comments that are not answers to another comment
+     * 
+     * @return The number of parent comments
+     */
+    public int getNbParentComments( )
+    {
+        return _nNbParentComments;
+    }
+
+    /**
+     * Set the number of comments that are not answers to another comment
+     * 
+     * @param nNbParentComments
+     *            The number of parent comments
+     */
+    public void setNbParentComments( int nNbParentComments )
+    {
+        _nNbParentComments = nNbParentComments;
+    }
+
+    /**
+     * Get the number of published comments that are not answers to another comment
+     * 
+     * @return The number of published parent comments
+     */
+    public int getNbPublishedParentComments( )
+    {
+        return _nNbPublishedParentComments;
+    }
+
+    /**
+     * Set the number of published comments that are not answers to another comment
+     * 
+     * @param nNbPublishedParentComments
+     *            The number of published parent comments
+     */
+    public void setNbPublishedParentComments( int nNbPublishedParentComments )
+    {
+        _nNbPublishedParentComments = nNbPublishedParentComments;
+    }
+
+    /**
+     * Get the date of the last comment
+     * 
+     * @return The date of the last comment, or null if the resource has no comment
+     */
+    public Timestamp getDateLastComment( )
+    {
+        return _dateLastComment;
+    }
+
+    /**
+     * Set the date of the last comment
+     * 
+     * @param dateLastComment
+     *            The date of the last comment
+     */
+    public void setDateLastComment( Timestamp dateLastComment )
+    {
+        _dateLastComment = dateLastComment;
+    }
+
+    /**
+     * Get the number of comments matching the given criteria
+     * 
+     * @param bParentsOnly
+     *            True to only count comments that are not answers to another comment
+     * @param bPublishedOnly
+     *            True to only count published comments
+     * @return The number of comments
+     */
+    public int getCommentNb( boolean bParentsOnly, boolean bPublishedOnly )
+    {
+        if ( bParentsOnly )
+        {
+            return bPublishedOnly ? _nNbPublishedParentComments : _nNbParentComments;
+        }
+
+        return bPublishedOnly ? _nNbPublishedComments : _nNbComments;
+    }
+}
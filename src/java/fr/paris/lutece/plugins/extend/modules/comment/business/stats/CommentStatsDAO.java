@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.stats;
+
+import fr.paris.lutece.plugins.extend.business.extender.ResourceExtenderDTOFilter;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentedResource;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * CommentStatsDAO
+ * 
+ */
+public class CommentStatsDAO implements ICommentStatsDAO
+{
+    private static final String SQL_QUERY_ADD_DELTA = " UPDATE extend_comment_stats SET nb_comments = nb_comments + ?, nb_published = nb_published + ?, nb_parents = nb_parents + ?, nb_published_parents = nb_published_parents + ? ";
+    private static final String SQL_QUERY_ADD_DELTA_DATE = ", date_last_comment = CASE WHEN date_last_comment IS NULL OR date_last_comment < ? THEN ? ELSE date_last_comment END ";
+    private static final String SQL_QUERY_REFRESH = " UPDATE extend_comment_stats SET "
+            + " nb_comments = ( SELECT COUNT( id_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource ), "
+            + " nb_published = ( SELECT COUNT( id_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource AND c.is_published = 1 ), "
+            + " nb_parents = ( SELECT COUNT( id_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource AND c.id_parent_comment = 0 ), "
+            + " nb_published_parents = ( SELECT COUNT( id_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource AND c.is_published = 1 AND c.id_parent_comment = 0 ), "
+            + " date_last_comment = ( SELECT MAX( date_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource ) "
+            + " WHERE resource_type = ? AND id_resource = ? ";
+    private static final String SQL_QUERY_INSERT_FROM_COMMENTS = " INSERT INTO extend_comment_stats ( resource_type, id_resource, nb_comments, nb_published, nb_parents, nb_published_parents, date_last_comment ) "
+            + " SELECT resource_type, id_resource, COUNT( id_comment ), SUM( CASE WHEN is_published = 1 THEN 1 ELSE 0 END ), SUM( CASE WHEN id_parent_comment = 0 THEN 1 ELSE 0 END ), "
+            + " SUM( CASE WHEN is_published = 1 AND id_parent_comment = 0 THEN 1 ELSE 0 END ), MAX( date_comment ) "
+            + " FROM extend_comment WHERE resource_type = ? AND id_resource = ? GROUP BY resource_type, id_resource ";
+    private static final String SQL_QUERY_REFRESH_DATE_LAST_COMMENT = " UPDATE extend_comment_stats SET date_last_comment = ( SELECT MAX( date_comment ) FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource ) WHERE resource_type = ? AND id_resource = ? ";
+    private static final String SQL_QUERY_LOCK = " SELECT nb_comments FROM extend_comment_stats WHERE resource_type = ? AND id_resource = ? FOR UPDATE ";
+    private static final String SQL_QUERY_SELECT = " SELECT resource_type, id_resource, nb_comments, nb_published, nb_parents, nb_published_parents, date_last_comment FROM extend_comment_stats WHERE resource_type = ? AND id_resource = ? ";
+    private static final String SQL_QUERY_SELECT_BY_RESOURCE_TYPE = " SELECT COUNT( id_resource ), SUM( nb_comments ), SUM( nb_published ), SUM( nb_parents ), SUM( nb_published_parents ), MAX( date_last_comment ) FROM extend_comment_stats WHERE resource_type = ? ";
+    private static final String SQL_QUERY_SELECT_MOST_COMMENTED = " SELECT id_resource, nb_comments FROM extend_comment_stats WHERE resource_type = ? AND nb_comments > 0 ORDER BY nb_comments DESC, id_resource ";
+    private static final String SQL_QUERY_SELECT_MOST_COMMENTED_PUBLISHED = " SELECT id_resource, nb_published FROM extend_comment_stats WHERE resource_type = ? AND nb_published > 0 ORDER BY nb_published DESC, id_resource ";
+    private static final String SQL_QUERY_SELECT_COMMENTED_RESOURCES_AFTER = " SELECT DISTINCT resource_type, id_resource FROM extend_comment WHERE resource_type > ? OR ( resource_type = ? AND id_resource > ? ) ORDER BY resource_type, id_resource LIMIT ? ";
+    private static final String SQL_QUERY_DELETE = " DELETE FROM extend_comment_stats WHERE resource_type = ? ";
+    private static final String SQL_QUERY_DELETE_ORPHANS = " DELETE FROM extend_comment_stats WHERE NOT EXISTS ( SELECT id_comment FROM extend_comment c WHERE c.resource_type = extend_comment_stats.resource_type AND c.id_resource = extend_comment_stats.id_resource ) ";
+    private static final String SQL_FILTER_ID_RESOURCE = " AND id_resource = ? ";
+    private static final String SQL_WHERE_RESOURCE = " WHERE resource_type = ? AND id_resource = ? ";
+    private static final String SQL_LIMIT = " LIMIT ? ";
+    private static final String SQL_OFFSET = " OFFSET ? ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean addDelta( CommentStats delta, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_ADD_DELTA );
+        if ( delta.getDateLastComment( ) != null )
+        {
+            sbSql.append( SQL_QUERY_ADD_DELTA_DATE );
+        }
+        sbSql.append( SQL_WHERE_RESOURCE );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setInt( nIndex++, delta.getNbComments( ) );
+            daoUtil.setInt( nIndex++, delta.getNbPublishedComments( ) );
+            daoUtil.setInt( nIndex++, delta.getNbParentComments( ) );
+            daoUtil.setInt( nIndex++, delta.getNbPublishedParentComments( ) );
+            if ( delta.getDateLastComment( ) != null )
+            {
+                daoUtil.setTimestamp( nIndex++, delta.getDateLastComment( ) );
+                daoUtil.setTimestamp( nIndex++, delta.getDateLastComment( ) );
+            }
+            daoUtil.setString( nIndex++, delta.getExtendableResourceType( ) );
+            daoUtil.setString( nIndex, delta.getIdExtendableResource( ) );
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean lock( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_LOCK, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            daoUtil.setString( 2, strIdExtendableResource );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refresh( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        boolean bUpdated;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_REFRESH, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            daoUtil.setString( 2, strIdExtendableResource );
+            bUpdated = daoUtil.executeUpdate( ) > 0;
+        }
+
+        if ( !bUpdated )
+        {
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_FROM_COMMENTS, plugin ) )
+            {
+                daoUtil.setString( 1, strExtendableResourceType );
+                daoUtil.setString( 2, strIdExtendableResource );
+                daoUtil.executeUpdate( );
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshDateLastComment( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_REFRESH_DATE_LAST_COMMENT, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            daoUtil.setString( 2, strIdExtendableResource );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommentStats load( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            daoUtil.setString( 2, strIdExtendableResource );
+            daoUtil.executeQuery( );
+
+            CommentStats stats = null;
+            if ( daoUtil.next( ) )
+            {
+                stats = new CommentStats( );
+                int nIndex = 1;
+                stats.setExtendableResourceType( daoUtil.getString( nIndex++ ) );
+                stats.setIdExtendableResource( daoUtil.getString( nIndex++ ) );
+                stats.setNbComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbPublishedComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbParentComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbPublishedParentComments( daoUtil.getInt( nIndex++ ) );
+                stats.setDateLastComment( daoUtil.getTimestamp( nIndex ) );
+            }
+
+            return stats;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommentStats loadByResourceType( String strExtendableResourceType, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_RESOURCE_TYPE, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            daoUtil.executeQuery( );
+
+            CommentStats stats = null;
+            if ( daoUtil.next( ) && daoUtil.getInt( 1 ) > 0 )
+            {
+                stats = new CommentStats( );
+                int nIndex = 2;
+                stats.setExtendableResourceType( strExtendableResourceType );
+                stats.setIdExtendableResource( ResourceExtenderDTOFilter.WILDCARD_ID_RESOURCE );
+                stats.setNbComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbPublishedComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbParentComments( daoUtil.getInt( nIndex++ ) );
+                stats.setNbPublishedParentComments( daoUtil.getInt( nIndex++ ) );
+                stats.setDateLastComment( daoUtil.getTimestamp( nIndex ) );
+            }
+
+            return stats;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset,
+            int nMaxItemsNumber, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( bPublishedOnly ? SQL_QUERY_SELECT_MOST_COMMENTED_PUBLISHED : SQL_QUERY_SELECT_MOST_COMMENTED );
+        if ( nMaxItemsNumber > 0 )
+        {
+            sbSql.append( SQL_LIMIT );
+            if ( nItemsOffset > 0 )
+            {
+                sbSql.append( SQL_OFFSET );
+            }
+        }
+
+        List<CommentedResource> listResources = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strExtendableResourceType );
+            if ( nMaxItemsNumber > 0 )
+            {
+                daoUtil.setInt( nIndex++, nMaxItemsNumber );
+                if ( nItemsOffset > 0 )
+                {
+                    daoUtil.setInt( nIndex, nItemsOffset );
+                }
+            }
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                CommentedResource resource = new CommentedResource( );
+                resource.setIdExtendableResource( daoUtil.getString( 1 ) );
+                resource.setNbComments( daoUtil.getInt( 2 ) );
+                listResources.add( resource );
+            }
+        }
+
+        return listResources;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentStats> findCommentedResourcesAfter( String strExtendableResourceTypeAfter, String strIdExtendableResourceAfter, int nMaxItemsNumber,
+            Plugin plugin )
+    {
+        List<CommentStats> listResources = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_COMMENTED_RESOURCES_AFTER, plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceTypeAfter );
+            daoUtil.setString( 2, strExtendableResourceTypeAfter );
+            daoUtil.setString( 3, strIdExtendableResourceAfter );
+            daoUtil.setInt( 4, nMaxItemsNumber );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                CommentStats stats = new CommentStats( );
+                stats.setExtendableResourceType( daoUtil.getString( 1 ) );
+                stats.setIdExtendableResource( daoUtil.getString( 2 ) );
+                listResources.add( stats );
+            }
+        }
+
+        return listResources;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_DELETE );
+        boolean bOneResource = !ResourceExtenderDTOFilter.WILDCARD_ID_RESOURCE.equals( strIdExtendableResource );
+        if ( bOneResource )
+        {
+            sbSql.append( SQL_FILTER_ID_RESOURCE );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            daoUtil.setString( 1, strExtendableResourceType );
+            if ( bOneResource )
+            {
+                daoUtil.setString( 2, strIdExtendableResource );
+            }
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteOrphans( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_ORPHANS, plugin ) )
+        {
+            return daoUtil.executeUpdate( );
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.stats;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentedResource;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.util.List;
+
+/**
+ * ICommentStatsDAO.
+ */
+public interface ICommentStatsDAO
+{
+    /**
+     * Add variations to the statistics of a resource, with a single atomic update. The date of the last comment only moves forward.
+     * 
+     * @param delta
+     *            The variations of the statistics. The date of the last comment is ignored if it is null.
+     * @param plugin
+     *            The plugin
+     * @return true if the statistics of the resource exist and have been updated, false otherwise
+     */
+    boolean addDelta( CommentStats delta, Plugin plugin );
+
+    /**
+     * Lock the statistics row of a resource until the end of the current transaction
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     * @return true if the statistics of the resource exist and have been locked, false otherwise
+     */
+    boolean lock( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Compute again the statistics of a resource from its comments. The statistics are created if they do not exist yet and the resource has comments.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     */
+    void refresh( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Compute again the date of the last comment of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     */
+    void refreshDateLastComment( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Load the statistics of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     * @return The statistics, or null if they do not exist
+     */
+    CommentStats load( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Load the sum of the statistics of every resource of a type
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     * @return The statistics, or null if no resource of the type has statistics
+     */
+    CommentStats loadByResourceType( String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Get the resources of a type with their number of comments, ordered by descending number of comments
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bPublishedOnly
+     *            True to rank resources by number of published comments
+     * @param nItemsOffset
+     *            The offset of the first resource to return
+     * @param nMaxItemsNumber
+     *            The maximum number of resources to return, or 0 to return every resource
+     * @param plugin
+     *            The plugin
+     * @return The resources
+     */
+    List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset, int nMaxItemsNumber,
+            Plugin plugin );
+
+    /**
+     * Find the resources having comments, ordered by resource type and id, after a given resource. Only the keys of the returned statistics are set.
+     * 
+     * @param strExtendableResourceTypeAfter
+     *            The type of the last resource already read, or an empty string to start from the first resource
+     * @param strIdExtendableResourceAfter
+     *            The id of the last resource already read, or an empty string to start from the first resource
+     * @param nMaxItemsNumber
+     *            The maximum number of resources to return
+     * @param plugin
+     *            The plugin
+     * @return The keys of the resources
+     */
+    List<CommentStats> findCommentedResourcesAfter( String strExtendableResourceTypeAfter, String strIdExtendableResourceAfter, int nMaxItemsNumber,
+            Plugin plugin );
+
+    /**
+     * Delete the statistics of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource, or the wildcard to delete the statistics of every resource of the type
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param plugin
+     *            The plugin
+     */
+    void delete( String strIdExtendableResource, String strExtendableResourceType, Plugin plugin );
+
+    /**
+     * Delete the statistics of resources that have no comment anymore
+     * 
+     * @param plugin
+     *            The plugin
+     * @return The number of deleted statistics
+     */
+    int deleteOrphans( Plugin plugin );
+}
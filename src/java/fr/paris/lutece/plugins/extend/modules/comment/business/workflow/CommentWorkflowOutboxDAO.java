@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.workflow;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * CommentWorkflowOutboxDAO
+ * 
+ */
+public class CommentWorkflowOutboxDAO implements ICommentWorkflowOutboxDAO
+{
+    private static final String SQL_QUERY_INSERT = " INSERT INTO extend_comment_workflow_outbox ( id_comment, nb_attempts, date_next_attempt ) VALUES ( ?, 0, ? ) ";
+    private static final String SQL_QUERY_CLAIM = " UPDATE extend_comment_workflow_outbox SET nb_attempts = nb_attempts + 1, date_next_attempt = ? WHERE id_comment = ? AND nb_attempts = ? ";
+    private static final String SQL_QUERY_DELETE = " DELETE FROM extend_comment_workflow_outbox WHERE id_comment = ? ";
+    private static final String SQL_QUERY_SELECT_TO_PROCESS = " SELECT id_comment, nb_attempts, date_next_attempt FROM extend_comment_workflow_outbox WHERE date_next_attempt <= ? AND nb_attempts < ? ORDER BY date_next_attempt LIMIT ? ";
+    private static final String SQL_QUERY_SELECT_EXHAUSTED = " SELECT id_comment, nb_attempts, date_next_attempt FROM extend_comment_workflow_outbox WHERE date_next_attempt <= ? AND nb_attempts >= ? ORDER BY id_comment LIMIT ? ";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insert( int nIdComment, Timestamp dateNextAttempt, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdComment );
+            daoUtil.setTimestamp( 2, dateNextAttempt );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean claim( int nIdComment, int nNbAttempts, Timestamp dateNextAttempt, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_CLAIM, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, dateNextAttempt );
+            daoUtil.setInt( 2, nIdComment );
+            daoUtil.setInt( 3, nNbAttempts );
+            return daoUtil.executeUpdate( ) > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete( int nIdComment, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE, plugin ) )
+        {
+            daoUtil.setInt( 1, nIdComment );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentWorkflowOutboxEntry> findEntriesToProcess( Timestamp dateNow, int nMaxAttempts, int nMaxItemsNumber, Plugin plugin )
+    {
+        return findEntries( SQL_QUERY_SELECT_TO_PROCESS, dateNow, nMaxAttempts, nMaxItemsNumber, plugin );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentWorkflowOutboxEntry> findExhaustedEntries( Timestamp dateNow, int nMaxAttempts, int nMaxItemsNumber, Plugin plugin )
+    {
+        return findEntries( SQL_QUERY_SELECT_EXHAUSTED, dateNow, nMaxAttempts, nMaxItemsNumber, plugin );
+    }
+
+    /**
+     * Get entries filtered by date of next attempt and number of attempts
+     * 
+     * @param strSql
+     *            The query
+     * @param dateNow
+     *            The current date
+     * @param nMaxAttempts
+     *            The maximum number of attempts
+     * @param nMaxItemsNumber
+     *            The maximum number of entries to return
+     * @param plugin
+     *            The plugin
+     * @return The list of entries
+     */
+    private List<CommentWorkflowOutboxEntry> findEntries( String strSql, Timestamp dateNow, int nMaxAttempts, int nMaxItemsNumber, Plugin plugin )
+    {
+        List<CommentWorkflowOutboxEntry> listEntries = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( strSql, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, dateNow );
+            daoUtil.setInt( 2, nMaxAttempts );
+            daoUtil.setInt( 3, nMaxItemsNumber );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                CommentWorkflowOutboxEntry entry = new CommentWorkflowOutboxEntry( );
+                entry.setIdComment( daoUtil.getInt( 1 ) );
+                entry.setNbAttempts( daoUtil.getInt( 2 ) );
+                entry.setDateNextAttempt( daoUtil.getTimestamp( 3 ) );
+                listEntries.add( entry );
+            }
+        }
+        return listEntries;
+    }
+}
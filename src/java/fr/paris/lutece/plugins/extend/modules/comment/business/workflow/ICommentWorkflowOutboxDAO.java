@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.business.workflow;
+
+import fr.paris.lutece.portal.service.plugin.Plugin;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * ICommentWorkflowOutboxDAO.
+ */
+public interface ICommentWorkflowOutboxDAO
+{
+    /**
+     * Insert an entry with no attempt
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param dateNextAttempt
+     *            The date after which the entry may be processed by the daemon
+     * @param plugin
+     *            The plugin
+     */
+    void insert( int nIdComment, Timestamp dateNextAttempt, Plugin plugin );
+
+    /**
+     * Claim an entry before an attempt. The number of attempts is incremented and the date of the next attempt is set, only if the number of attempts is
+     * still the given one, so that an attempt is made by a single thread even across nodes.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param nNbAttempts
+     *            The number of attempts read before claiming the entry
+     * @param dateNextAttempt
+     *            The date of the next attempt if this one fails
+     * @param plugin
+     *            The plugin
+     * @return true if the entry has been claimed, false otherwise
+     */
+    boolean claim( int nIdComment, int nNbAttempts, Timestamp dateNextAttempt, Plugin plugin );
+
+    /**
+     * Delete an entry
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param plugin
+     *            The plugin
+     */
+    void delete( int nIdComment, Plugin plugin );
+
+    /**
+     * Get entries to process, ordered by date of next attempt
+     * 
+     * @param dateNow
+     *            The current date
+     * @param nMaxAttempts
+     *            The maximum number of attempts. Entries that reached it are not returned.
+     * @param nMaxItemsNumber
+     *            The maximum number of entries to return
+     * @param plugin
+     *            The plugin
+     * @return The list of entries
+     */
+    List<CommentWorkflowOutboxEntry> findEntriesToProcess( Timestamp dateNow, int nMaxAttempts, int nMaxItemsNumber, Plugin plugin );
+
+    /**
+     * Get entries that reached the maximum number of attempts and whose last attempt is over, ordered by comment id
+     * 
+     * @param dateNow
+     *            The current date
+     * @param nMaxAttempts
+     *            The maximum number of attempts
+     * @param nMaxItemsNumber
+     *            The maximum number of entries to return
+     * @param plugin
+     *            The plugin
+     * @return The list of entries
+     */
+    List<CommentWorkflowOutboxEntry> findExhaustedEntries( Timestamp dateNow, int nMaxAttempts, int nMaxItemsNumber, Plugin plugin );
+}
@@ -33,23 +33,61 @@
  */
 package fr.paris.lutece.plugins.extend.modules.comment.service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.avatar.service.AvatarService;
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
 import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
 /**
  * 
- * CommentAvatarService
+ * CommentAvatarService. Avatars are cached by author, so the avatar service is called once per author rather than once per displayed comment. The size
+ * and the time to live of the cache are set through the configuration of the cache.
  *
  */
-public class CommentAvatarService implements ICommentAvatarService
+public class CommentAvatarService extends AbstractCacheableService implements ICommentAvatarService
 {
+    private static final String CACHE_NAME = "extend-comment.commentAvatarCacheService";
+    private static final String KEY_PREFIX_AVATAR = "[avatar:";
+    private static final String KEY_PREFIX_AVATAR_URL = "[avatarUrl:";
+    private static final String KEY_SUFFIX = "]";
+
+    private static final CommentAvatarService _singleton = new CommentAvatarService( );
+
+    private final boolean _bUseLuteceUserNameAsAvatarKey;
+
+    /**
+     * Private constructor
+     */
+    private CommentAvatarService( )
+    {
+        _bUseLuteceUserNameAsAvatarKey = AppPropertiesService.getPropertyBoolean( CommentConstants.PROPERTY_USE_LUTECE_USER_NAME_AS_AVATAR_KEY, false );
+        initCache( );
+    }
+
+    /**
+     * 
+     * @return singleton
+     */
+    public static ICommentAvatarService getInstance( )
+    {
+        return _singleton;
+    }
 
-    private static ICommentAvatarService _singleton;
-    private static boolean _bUseLuteceUserNameAsAvatarKey;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_NAME;
+    }
 
     /**
      * {@inheritDoc}
@@ -57,11 +95,15 @@ public class CommentAvatarService implements ICommentAvatarService
     @Override
     public String getAvatar( Comment comment )
     {
-        if ( _bUseLuteceUserNameAsAvatarKey && !StringUtils.isEmpty( comment.getLuteceUserName( ) ) )
+        String strAvatarKey = getAvatarKey( comment );
+        String strCacheKey = KEY_PREFIX_AVATAR + strAvatarKey + KEY_SUFFIX;
+        String strAvatar = (String) getFromCache( strCacheKey );
+        if ( strAvatar == null )
         {
-            return AvatarService.getAvatar( comment.getLuteceUserName( ) );
+            strAvatar = AvatarService.getAvatar( strAvatarKey );
+            putInCache( strCacheKey, strAvatar );
         }
-        return AvatarService.getAvatar( comment.getEmail( ) );
+        return strAvatar;
     }
 
     /**
@@ -70,29 +112,83 @@ public class CommentAvatarService implements ICommentAvatarService
     @Override
     public String getAvatarUrl( Comment comment )
     {
-        if ( _bUseLuteceUserNameAsAvatarKey && !StringUtils.isEmpty( comment.getLuteceUserName( ) ) )
+        return getAvatarUrl( getAvatarKey( comment ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getAvatars( Collection<Comment> listComments )
+    {
+        Map<String, String> mapAvatarUrls = new HashMap<>( );
+        if ( listComments != null )
         {
-            return AvatarService.getAvatarUrl( comment.getLuteceUserName( ) );
+            loadAvatarUrls( listComments, mapAvatarUrls );
         }
-        return AvatarService.getAvatarUrl( comment.getEmail( ) );
+        return mapAvatarUrls;
     }
 
     /**
+     * Resolve the avatar URL of a list of comments and of their sub comments. Each author is resolved only once.
      * 
-     * @return singleton
+     * @param listComments
+     *            The list of comments
+     * @param mapAvatarUrls
+     *            The avatar URLs already resolved, by avatar key
      */
-    public static ICommentAvatarService getInstance( )
+    private void loadAvatarUrls( Collection<Comment> listComments, Map<String, String> mapAvatarUrls )
     {
-
-        if ( _singleton == null )
+        for ( Comment comment : listComments )
         {
+            String strAvatarKey = getAvatarKey( comment );
+            String strAvatarUrl = mapAvatarUrls.get( strAvatarKey );
+            if ( strAvatarUrl == null )
+            {
+                strAvatarUrl = getAvatarUrl( strAvatarKey );
+                mapAvatarUrls.put( strAvatarKey, strAvatarUrl );
+            }
+            comment.setAvatarUrl( strAvatarUrl );
 
-            _singleton = new CommentAvatarService( );
-            _bUseLuteceUserNameAsAvatarKey = AppPropertiesService.getPropertyBoolean( CommentConstants.PROPERTY_USE_LUTECE_USER_NAME_AS_AVATAR_KEY, false );
+            if ( comment.getListSubComments( ) != null )
+            {
+                loadAvatarUrls( comment.getListSubComments( ), mapAvatarUrls );
+            }
         }
+    }
 
-        return _singleton;
-
+    /**
+     * Get the avatar URL associated with an avatar key, from the cache if possible
+     * 
+     * @param strAvatarKey
+     *            The avatar key
+     * @return The avatar URL
+     */
+    private String getAvatarUrl( String strAvatarKey )
+    {
+        String strCacheKey = KEY_PREFIX_AVATAR_URL + strAvatarKey + KEY_SUFFIX;
+        String strAvatarUrl = (String) getFromCache( strCacheKey );
+        if ( strAvatarUrl == null )
+        {
+            strAvatarUrl = AvatarService.getAvatarUrl( strAvatarKey );
+            putInCache( strCacheKey, strAvatarUrl );
+        }
+        return strAvatarUrl;
     }
 
+    /**
+     * Get the key identifying the avatar of the author of a comment
+     * 
+     * @param comment
+     *            The comment
+     * @return The lutece user name of the author if it is used as avatar key, the email of the author otherwise
+     */
+    private String getAvatarKey( Comment comment )
+    {
+        if ( _bUseLuteceUserNameAsAvatarKey && !StringUtils.isEmpty( comment.getLuteceUserName( ) ) )
+        {
+            return comment.getLuteceUserName( );
+        }
+        return comment.getEmail( );
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+import java.sql.Timestamp;
+
+/**
+ * 
+ * Cache of the HTML rendering of the BBCode content of comments. Renderings are cached by comment and by date of last modification, so that a modified
+ * comment is rendered again without any explicit invalidation.
+ * 
+ */
+public final class CommentBBCodeCacheService extends AbstractCacheableService
+{
+    private static final String CACHE_NAME = "extend-comment.commentBBCodeCacheService";
+    private static final String KEY_PREFIX_ID_COMMENT = "[idComment:";
+    private static final String KEY_DATE_LAST_MODIF = "][dateLastModif:";
+    private static final String KEY_HASH = "][hash:";
+    private static final String KEY_SUFFIX = "]";
+
+    private static CommentBBCodeCacheService _singleton = new CommentBBCodeCacheService( );
+
+    /**
+     * Private constructor
+     */
+    private CommentBBCodeCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentBBCodeCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Get the HTML rendering of a comment from the cache
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param dateLastModif
+     *            The date of last modification of the comment
+     * @param strComment
+     *            The BBCode content of the comment
+     * @return The HTML rendering, or null if it is not in the cache
+     */
+    public String getHtml( int nIdComment, Timestamp dateLastModif, String strComment )
+    {
+        return (String) getFromCache( getKey( nIdComment, dateLastModif, strComment ) );
+    }
+
+    /**
+     * Put the HTML rendering of a comment in the cache
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param dateLastModif
+     *            The date of last modification of the comment
+     * @param strComment
+     *            The BBCode content of the comment
+     * @param strHtml
+     *            The HTML rendering
+     */
+    public void putHtml( int nIdComment, Timestamp dateLastModif, String strComment, String strHtml )
+    {
+        putInCache( getKey( nIdComment, dateLastModif, strComment ), strHtml );
+    }
+
+    /**
+     * Get the key of a rendering. The hash of the content is part of the key, so that a comment modified in memory but not saved yet is not served a stale
+     * rendering.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param dateLastModif
+     *            The date of last modification of the comment
+     * @param strComment
+     *            The BBCode content of the comment
+     * @return The key
+     */
+    private static String getKey( int nIdComment, Timestamp dateLastModif, String strComment )
+    {
+        return KEY_PREFIX_ID_COMMENT + nIdComment + KEY_DATE_LAST_MODIF + dateLastModif.getTime( ) + KEY_HASH + strComment.hashCode( ) + KEY_SUFFIX;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * 
+ * Cache of the number of comments of resources. Counts are cached by resource and by kind of count (parents only or not, published only or not).
+ * 
+ */
+public final class CommentCountCacheService extends AbstractCacheableService
+{
+    private static final String CACHE_NAME = "extend-comment.commentCountCacheService";
+    private static final String KEY_PREFIX_RESOURCE_TYPE = "[resourceType:";
+    private static final String KEY_ID_RESOURCE = "][idResource:";
+    private static final String KEY_PARENTS_ONLY = "][parentsOnly:";
+    private static final String KEY_PUBLISHED_ONLY = "][publishedOnly:";
+    private static final String KEY_SUFFIX = "]";
+    private static final boolean [ ] FLAGS = {
+            true, false
+    };
+
+    private static CommentCountCacheService _singleton = new CommentCountCacheService( );
+
+    /**
+     * Private constructor
+     */
+    private CommentCountCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentCountCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Get a number of comments from the cache
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bParentsOnly
+     *            True to consider only comments with no parent, false otherwise
+     * @param bPublishedOnly
+     *            True to consider only published comments, false otherwise
+     * @return The number of comments, or null if it is not in the cache
+     */
+    public Integer getCommentNb( String strIdExtendableResource, String strExtendableResourceType, boolean bParentsOnly, boolean bPublishedOnly )
+    {
+        return (Integer) getFromCache( getKey( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly ) );
+    }
+
+    /**
+     * Put a number of comments in the cache
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bParentsOnly
+     *            True to consider only comments with no parent, false otherwise
+     * @param bPublishedOnly
+     *            True to consider only published comments, false otherwise
+     * @param nCommentNb
+     *            The number of comments
+     */
+    public void putCommentNb( String strIdExtendableResource, String strExtendableResourceType, boolean bParentsOnly, boolean bPublishedOnly,
+            int nCommentNb )
+    {
+        putInCache( getKey( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly ), nCommentNb );
+    }
+
+    /**
+     * Remove every number of comments of a resource from the cache. Numbers of comments of every resource of the same type are also removed. If the id
+     * of the resource is {@link CommentConstants#CONSTANT_ALL_RESSOURCE_ID}, the comments of every resource of the type may have been modified, and the
+     * whole cache is reset.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void invalidate( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        if ( !isCacheEnable( ) )
+        {
+            return;
+        }
+
+        if ( CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( strIdExtendableResource ) )
+        {
+            // Keys of a type can not be enumerated, and such modifications are rare
+            resetCache( );
+            return;
+        }
+
+        for ( boolean bParentsOnly : FLAGS )
+        {
+            for ( boolean bPublishedOnly : FLAGS )
+            {
+                removeKey( getKey( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly ) );
+                removeKey( getKey( CommentConstants.CONSTANT_ALL_RESSOURCE_ID, strExtendableResourceType, bParentsOnly, bPublishedOnly ) );
+            }
+        }
+    }
+
+    /**
+     * Get the key of a number of comments
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bParentsOnly
+     *            True to consider only comments with no parent, false otherwise
+     * @param bPublishedOnly
+     *            True to consider only published comments, false otherwise
+     * @return The key
+     */
+    private static String getKey( String strIdExtendableResource, String strExtendableResourceType, boolean bParentsOnly, boolean bPublishedOnly )
+    {
+        return KEY_PREFIX_RESOURCE_TYPE + strExtendableResourceType + KEY_ID_RESOURCE + strIdExtendableResource + KEY_PARENTS_ONLY + bParentsOnly
+                + KEY_PUBLISHED_ONLY + bPublishedOnly + KEY_SUFFIX;
+    }
+}
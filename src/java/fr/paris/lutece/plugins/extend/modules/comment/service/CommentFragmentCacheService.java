@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * Cache of the rendered comment block of resources displayed to anonymous users. Fragments are keyed by version stamps of the comments and of the
+ * configurations: a modification gives a new version, so that fragments rendered before it are never served again and age out of the cache. As the
+ * version is read before rendering, a fragment rendered concurrently with a modification is stored under an outdated version.
+ * 
+ */
+public final class CommentFragmentCacheService extends AbstractCacheableService
+{
+    private static final String CACHE_NAME = "extend-comment.commentFragmentCacheService";
+    private static final String KEY_PREFIX_VERSION = "[version][resourceType:";
+    private static final String KEY_PREFIX_RESOURCE_TYPE = "[resourceType:";
+    private static final String KEY_ID_RESOURCE = "][idResource:";
+    private static final String KEY_LOCALE = "][locale:";
+    private static final String KEY_VARIANT = "][variant:";
+    private static final String KEY_VERSION = "][version:";
+    private static final String KEY_TYPE_VERSION = "][typeVersion:";
+    private static final String KEY_CONFIG_VERSION = "][configVersion:";
+    private static final String KEY_SUFFIX = "]";
+
+    private static CommentFragmentCacheService _singleton = new CommentFragmentCacheService( );
+
+    // Versions are never reused, so that a version evicted from the cache can not match an outdated fragment
+    private final AtomicLong _lastVersion = new AtomicLong( System.currentTimeMillis( ) );
+    private volatile long _lConfigVersion = _lastVersion.incrementAndGet( );
+    // Versions of the comments of every resource of a type, kept out of the cache so that they can not be evicted
+    private final ConcurrentMap<String, Long> _mapTypeVersions = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private CommentFragmentCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentFragmentCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Get the key of the fragment of a resource. The key must be computed before the data of the fragment are read.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param locale
+     *            The locale of the fragment
+     * @param strVariant
+     *            The variant of the fragment, identifying the other data the fragment depends on
+     * @return The key
+     */
+    public String getFragmentKey( String strIdExtendableResource, String strExtendableResourceType, Locale locale, String strVariant )
+    {
+        long lConfigVersion = _lConfigVersion;
+        long lTypeVersion = _mapTypeVersions.getOrDefault( strExtendableResourceType, 0L );
+        return KEY_PREFIX_RESOURCE_TYPE + strExtendableResourceType + KEY_ID_RESOURCE + strIdExtendableResource + KEY_LOCALE + locale + KEY_VARIANT
+                + strVariant + KEY_VERSION + getVersion( strIdExtendableResource, strExtendableResourceType ) + KEY_TYPE_VERSION + lTypeVersion
+                + KEY_CONFIG_VERSION + lConfigVersion + KEY_SUFFIX;
+    }
+
+    /**
+     * Get a fragment from the cache
+     * 
+     * @param strKey
+     *            The key of the fragment
+     * @return The fragment, or null if it is not in the cache
+     */
+    public String getFragment( String strKey )
+    {
+        return (String) getFromCache( strKey );
+    }
+
+    /**
+     * Put a fragment in the cache
+     * 
+     * @param strKey
+     *            The key of the fragment
+     * @param strFragment
+     *            The fragment
+     */
+    public void putFragment( String strKey, String strFragment )
+    {
+        putInCache( strKey, strFragment );
+    }
+
+    /**
+     * Invalidate fragments of a resource after a modification of its comments. Fragments listing the comments of every resource of the same type are also
+     * invalidated. If the id of the resource is {@link CommentConstants#CONSTANT_ALL_RESSOURCE_ID}, the comments of every resource of the type may have
+     * been modified, and the fragments of every resource of the type are invalidated.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void invalidate( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        if ( !isCacheEnable( ) )
+        {
+            return;
+        }
+
+        putInCache( getVersionKey( strIdExtendableResource, strExtendableResourceType ), _lastVersion.incrementAndGet( ) );
+        putInCache( getVersionKey( CommentConstants.CONSTANT_ALL_RESSOURCE_ID, strExtendableResourceType ), _lastVersion.incrementAndGet( ) );
+        if ( CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( strIdExtendableResource ) )
+        {
+            _mapTypeVersions.put( strExtendableResourceType, _lastVersion.incrementAndGet( ) );
+        }
+    }
+
+    /**
+     * Invalidate every fragment after a modification of a configuration
+     */
+    public void invalidateConfigs( )
+    {
+        _lConfigVersion = _lastVersion.incrementAndGet( );
+    }
+
+    /**
+     * Get the current version of the comments of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The version
+     */
+    private long getVersion( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        String strVersionKey = getVersionKey( strIdExtendableResource, strExtendableResourceType );
+        Long lVersion = (Long) getFromCache( strVersionKey );
+        if ( lVersion == null )
+        {
+            lVersion = _lastVersion.incrementAndGet( );
+            putInCache( strVersionKey, lVersion );
+        }
+        return lVersion;
+    }
+
+    /**
+     * Get the key of the version of the comments of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The key
+     */
+    private static String getVersionKey( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        return KEY_PREFIX_VERSION + strExtendableResourceType + KEY_ID_RESOURCE + strIdExtendableResource + KEY_SUFFIX;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Dispatcher of events to asynchronous comment listeners. Each listener has its own bounded queue of events, processed in order by a shared pool of
+ * threads, so that a slow listener neither delays the writes of comments nor the other listeners. Events are dropped without waiting when the queue of a
+ * listener is full. The state of the queues is reported by the daemon {@link CommentListenerQueuesDaemon}.
+ * 
+ */
+public final class CommentListenerDispatcher
+{
+    private static final String PROPERTY_ENABLED = "module.extend.comment.listeners.asynchronous.enabled";
+    private static final String PROPERTY_THREAD_POOL_SIZE = "module.extend.comment.listeners.asynchronous.threadPoolSize";
+    private static final String PROPERTY_QUEUE_CAPACITY = "module.extend.comment.listeners.asynchronous.queueCapacity";
+    private static final String THREAD_NAME = "extend-comment-listener";
+    private static final int MAX_EVENTS_PER_RUN = 100;
+    private static final int DROPS_PER_LOG = 1000;
+    private static final String LOG_NO_LISTENER = "No asynchronous listener notified";
+
+    private static CommentListenerDispatcher _singleton = new CommentListenerDispatcher( );
+
+    private final boolean _bEnabled;
+    private final int _nQueueCapacity;
+    private final ThreadPoolExecutor _executor;
+    private final Map<ICommentListener, ListenerQueue> _mapQueues = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private CommentListenerDispatcher( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _nQueueCapacity = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_CAPACITY, 1000 ) );
+        int nThreadPoolSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREAD_POOL_SIZE, 2 ) );
+
+        // At most one task per listener is waiting in this queue, so it does not need to be bounded
+        _executor = new ThreadPoolExecutor( nThreadPoolSize, nThreadPoolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>( ), runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the dispatcher
+     * 
+     * @return The instance of the dispatcher
+     */
+    public static CommentListenerDispatcher getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Stop the background threads. Events that are not dispatched within the shutdown delay are dropped.
+     */
+    public void shutdown( )
+    {
+        CommentShutdownService.shutdown( _executor );
+    }
+
+    /**
+     * Check if a listener must be notified asynchronously
+     * 
+     * @param listener
+     *            The listener
+     * @return true if the asynchronous mode is enabled and the listener accepts it, false otherwise
+     */
+    public boolean isAsynchronous( ICommentListener listener )
+    {
+        return _bEnabled && listener.isAsynchronous( );
+    }
+
+    /**
+     * Dispatch an event to a listener. If a transaction is active, the event is dispatched once it is committed, and dropped if it is rolled back.
+     * 
+     * @param listener
+     *            The listener
+     * @param event
+     *            The notification of the listener
+     */
+    public void dispatch( ICommentListener listener, Runnable event )
+    {
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    enqueue( listener, event );
+                }
+            } );
+        }
+        else
+        {
+            enqueue( listener, event );
+        }
+    }
+
+    /**
+     * Get the queues of asynchronous listeners, to monitor them
+     * 
+     * @return The queues of listeners
+     */
+    public Collection<ListenerQueue> getListenerQueues( )
+    {
+        return Collections.unmodifiableCollection( _mapQueues.values( ) );
+    }
+
+    /**
+     * Get a report of the queues of asynchronous listeners. This method is called by the daemon.
+     * 
+     * @return The report, with a line per listener
+     */
+    public String getReport( )
+    {
+        if ( _mapQueues.isEmpty( ) )
+        {
+            return LOG_NO_LISTENER;
+        }
+
+        StringBuilder sbReport = new StringBuilder( );
+        for ( ListenerQueue queue : _mapQueues.values( ) )
+        {
+            sbReport.append( queue.getListenerName( ) ).append( " : pending " ).append( queue.getPendingCount( ) ).append( ", submitted " )
+                    .append( queue.getSubmittedCount( ) ).append( ", processed " ).append( queue.getProcessedCount( ) ).append( ", failed " )
+                    .append( queue.getFailedCount( ) ).append( ", dropped " ).append( queue.getRejectedCount( ) ).append( '\n' );
+        }
+        return sbReport.toString( );
+    }
+
+    /**
+     * Add an event to the queue of a listener. The caller never waits : if the queue is full, the event is dropped and counted.
+     * 
+     * @param listener
+     *            The listener
+     * @param event
+     *            The notification of the listener
+     */
+    private void enqueue( ICommentListener listener, Runnable event )
+    {
+        ListenerQueue queue = _mapQueues.computeIfAbsent( listener, l -> new ListenerQueue( l.getClass( ).getName( ), _nQueueCapacity ) );
+        if ( !queue._queue.offer( event ) )
+        {
+            long lRejected = queue._lRejected.incrementAndGet( );
+            // Drops are logged once in a while, so that an overloaded listener does not flood the logs
+            if ( lRejected % DROPS_PER_LOG == 1 )
+            {
+                AppLogService.error( "The queue of comment listener " + queue.getListenerName( ) + " is full : " + lRejected + " events dropped so far" );
+            }
+            return;
+        }
+        queue._lSubmitted.incrementAndGet( );
+        schedule( queue );
+    }
+
+    /**
+     * Schedule the processing of a queue if it is not already scheduled
+     * 
+     * @param queue
+     *            The queue
+     */
+    private void schedule( ListenerQueue queue )
+    {
+        if ( queue._bScheduled.compareAndSet( false, true ) )
+        {
+            try
+            {
+                _executor.execute( ( ) -> process( queue ) );
+            }
+            catch( RejectedExecutionException e )
+            {
+                AppLogService.info( "The server is stopping, the events of comment listener " + queue.getListenerName( ) + " are not processed" );
+            }
+        }
+    }
+
+    /**
+     * Process the events of a queue. A run processes a limited number of events, so that a busy listener can not monopolize the threads.
+     * 
+     * @param queue
+     *            The queue
+     */
+    private void process( ListenerQueue queue )
+    {
+        for ( int i = 0; i < MAX_EVENTS_PER_RUN; i++ )
+        {
+            Runnable event = queue._queue.poll( );
+            if ( event == null )
+            {
+                break;
+            }
+            try
+            {
+                event.run( );
+                queue._lProcessed.incrementAndGet( );
+            }
+            catch( Exception e )
+            {
+                queue._lFailed.incrementAndGet( );
+                AppLogService.error( "Error in comment listener " + queue.getListenerName( ) + " : " + e.getMessage( ), e );
+            }
+        }
+        queue._bScheduled.set( false );
+        if ( !queue._queue.isEmpty( ) )
+        {
+            schedule( queue );
+        }
+    }
+
+    /**
+     * Queue of events of a listener, with its counters
+     */
+    public static final class ListenerQueue
+    {
+        private final String _strListenerName;
+        private final BlockingQueue<Runnable> _queue;
+        private final AtomicBoolean _bScheduled = new AtomicBoolean( );
+        private final AtomicLong _lSubmitted = new AtomicLong( );
+        private final AtomicLong _lProcessed = new AtomicLong( );
+        private final AtomicLong _lFailed = new AtomicLong( );
+        private final AtomicLong _lRejected = new AtomicLong( );
+
+        /**
+         * Constructor
+         * 
+         * @param strListenerName
+         *            The name of the listener
+         * @param nCapacity
+         *            The capacity of the queue
+         */
+        private ListenerQueue( String strListenerName, int nCapacity )
+        {
+            _strListenerName = strListenerName;
+            _queue = new ArrayBlockingQueue<>( nCapacity );
+        }
+
+        /**
+         * @return the name of the listener
+         */
+        public String getListenerName( )
+        {
+            return _strListenerName;
+        }
+
+        /**
+         * @return the number of events waiting in the queue
+         */
+        public int getPendingCount( )
+        {
+            return _queue.size( );
+        }
+
+        /**
+         * @return the number of events added to the queue
+         */
+        public long getSubmittedCount( )
+        {
+            return _lSubmitted.get( );
+        }
+
+        /**
+         * @return the number of events successfully processed
+         */
+        public long getProcessedCount( )
+        {
+            return _lProcessed.get( );
+        }
+
+        /**
+         * @return the number of events that failed
+         */
+        public long getFailedCount( )
+        {
+            return _lFailed.get( );
+        }
+
+        /**
+         * @return the number of events dropped because the queue was full
+         */
+        public long getRejectedCount( )
+        {
+            return _lRejected.get( );
+        }
+    }
+}
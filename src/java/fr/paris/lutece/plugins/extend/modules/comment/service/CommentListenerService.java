@@ -41,6 +41,7 @@ import fr.paris.lutece.portal.service.util.AppLogService;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -56,8 +57,10 @@ public class CommentListenerService
      */
     public static final String CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE = "*";
 
-    private static Map<String, List<ICommentListener>> _mapListeners = new HashMap<String, List<ICommentListener>>( );
-    private static boolean _bHasListeners;
+    // Registrations are only modified under the lock of the class. Readers only use the snapshot, which is never modified once published.
+    private static final Map<String, List<ICommentListener>> _mapRegistrations = new LinkedHashMap<>( );
+    private static volatile ListenerSnapshot _snapshot = new ListenerSnapshot( _mapRegistrations );
+    private static final CommentListenerDispatcher _dispatcher = CommentListenerDispatcher.getInstance( );
 
     private static volatile ICommentDAO _commentDAO;
 
@@ -80,14 +83,8 @@ public class CommentListenerService
      */
     public static synchronized void registerListener( String strExtendableResourceType, ICommentListener listener )
     {
-        List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-        if ( listListeners == null )
-        {
-            listListeners = new ArrayList<ICommentListener>( );
-            _mapListeners.put( strExtendableResourceType, listListeners );
-        }
-        listListeners.add( listener );
-        _bHasListeners = true;
+        _mapRegistrations.computeIfAbsent( strExtendableResourceType, k -> new ArrayList<>( ) ).add( listener );
+        _snapshot = new ListenerSnapshot( _mapRegistrations );
     }
 
     /**
@@ -97,7 +94,7 @@ public class CommentListenerService
      */
     public static boolean hasListener( )
     {
-        return _bHasListeners;
+        return _snapshot.hasListener( );
     }
 
     /**
@@ -112,18 +109,13 @@ public class CommentListenerService
      */
     public static void createComment( String strExtendableResourceType, String strIdExtendableResource, boolean bPublished )
     {
-        List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-        if ( listListeners != null )
+        for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
         {
-            for ( ICommentListener listener : listListeners )
+            if ( _dispatcher.isAsynchronous( listener ) )
             {
-                listener.createComment( strIdExtendableResource, bPublished );
+                _dispatcher.dispatch( listener, ( ) -> listener.createComment( strIdExtendableResource, bPublished ) );
             }
-        }
-        listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-        if ( listListeners != null )
-        {
-            for ( ICommentListener listener : listListeners )
+            else
             {
                 listener.createComment( strIdExtendableResource, bPublished );
             }
@@ -144,18 +136,14 @@ public class CommentListenerService
      */
     public static void createComment( String strExtendableResourceType, String strIdExtendableResource, boolean bPublished, HttpServletRequest request )
     {
-        List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-        if ( listListeners != null )
+        for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
         {
-            for ( ICommentListener listener : listListeners )
+            if ( _dispatcher.isAsynchronous( listener ) )
             {
-                listener.createComment( strIdExtendableResource, bPublished, request );
+                // Asynchronous listeners are notified after the response, so they do not get the request
+                _dispatcher.dispatch( listener, ( ) -> listener.createComment( strIdExtendableResource, bPublished ) );
             }
-        }
-        listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-        if ( listListeners != null )
-        {
-            for ( ICommentListener listener : listListeners )
+            else
             {
                 listener.createComment( strIdExtendableResource, bPublished, request );
             }
@@ -172,7 +160,7 @@ public class CommentListenerService
      */
     public static void publishComment( int nIdComment, boolean bPublished )
     {
-        if ( _mapListeners.size( ) > 0 )
+        if ( hasListener( ) )
         {
             Comment comment = getCommentDAO( ).load( nIdComment, CommentPlugin.getPlugin( ) );
             publishComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), bPublished );
@@ -191,18 +179,13 @@ public class CommentListenerService
      */
     public static void publishComment( String strExtendableResourceType, String strIdExtendableResource, boolean bPublished )
     {
-        List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-        if ( listListeners != null )
+        for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
         {
-            for ( ICommentListener listener : listListeners )
+            if ( _dispatcher.isAsynchronous( listener ) )
             {
-                listener.publishComment( strIdExtendableResource, bPublished );
+                _dispatcher.dispatch( listener, ( ) -> listener.publishComment( strIdExtendableResource, bPublished ) );
             }
-        }
-        listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-        if ( listListeners != null )
-        {
-            for ( ICommentListener listener : listListeners )
+            else
             {
                 listener.publishComment( strIdExtendableResource, bPublished );
             }
@@ -216,25 +199,22 @@ public class CommentListenerService
      *            The extendable resource type of the removed comment
      * @param strIdExtendableResource
      *            The extendable resource id of the comment
-     * @param listIdRemovedComment
+     * @param listIdRemovedComments
      *            The list of ids of removed comments
      */
-    public static void deleteComment( String strExtendableResourceType, String strIdExtendableResource, List<Integer> listIdRemovedComment )
+    public static void deleteComment( String strExtendableResourceType, String strIdExtendableResource, List<Integer> listIdRemovedComments )
     {
+        // Asynchronous listeners may read the list after the caller modified it
+        List<Integer> listIdRemovedComment = new ArrayList<>( listIdRemovedComments );
         try
         {
-            List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-            if ( listListeners != null )
+            for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
             {
-                for ( ICommentListener listener : listListeners )
+                if ( _dispatcher.isAsynchronous( listener ) )
                 {
-                    listener.deleteComment( strIdExtendableResource, listIdRemovedComment );
+                    _dispatcher.dispatch( listener, ( ) -> listener.deleteComment( strIdExtendableResource, listIdRemovedComment ) );
                 }
-            }
-            listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-            if ( listListeners != null )
-            {
-                for ( ICommentListener listener : listListeners )
+                else
                 {
                     listener.deleteComment( strIdExtendableResource, listIdRemovedComment );
                 }
@@ -258,28 +238,12 @@ public class CommentListenerService
         StringBuilder sbError = new StringBuilder( );
         try
         {
-            List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-            if ( listListeners != null )
+            for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
             {
-                for ( ICommentListener listener : listListeners )
+                String strError = listener.checkComment( comment, uidUser );
+                if ( strError != null && !strError.isEmpty( ) )
                 {
-                    String strError = listener.checkComment( comment, uidUser );
-                    if ( strError != null && !strError.isEmpty( ) )
-                    {
-                        sbError.append( strError );
-                    }
-                }
-            }
-            listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-            if ( listListeners != null )
-            {
-                for ( ICommentListener listener : listListeners )
-                {
-                    String strError = listener.checkComment( comment, uidUser );
-                    if ( strError != null && !strError.isEmpty( ) )
-                    {
-                        sbError.append( strError );
-                    }
+                    sbError.append( strError );
                 }
             }
         }
@@ -301,28 +265,12 @@ public class CommentListenerService
         StringBuilder sbError = new StringBuilder( );
         try
         {
-            List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-            if ( listListeners != null )
-            {
-                for ( ICommentListener listener : listListeners )
-                {
-                    String strError = listener.checkComment( comment, uidUser, strExtendableResourceType, strResourceId );
-                    if ( strError != null && !strError.isEmpty( ) )
-                    {
-                        sbError.append( strError );
-                    }
-                }
-            }
-            listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-            if ( listListeners != null )
+            for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
             {
-                for ( ICommentListener listener : listListeners )
+                String strError = listener.checkComment( comment, uidUser, strExtendableResourceType, strResourceId );
+                if ( strError != null && !strError.isEmpty( ) )
                 {
-                    String strError = listener.checkComment( comment, uidUser, strExtendableResourceType, strResourceId );
-                    if ( strError != null && !strError.isEmpty( ) )
-                    {
-                        sbError.append( strError );
-                    }
+                    sbError.append( strError );
                 }
             }
         }
@@ -348,29 +296,13 @@ public class CommentListenerService
     {
         try
         {
-            List<ICommentListener> listListeners = _mapListeners.get( strExtendableResourceType );
-            if ( listListeners != null )
+            for ( ICommentListener listener : getListeners( strExtendableResourceType ) )
             {
-                for ( ICommentListener listener : listListeners )
+                if ( !listener.canComment( user, strIdExtendableResource, strExtendableResourceType ) )
                 {
-                    if ( !listener.canComment( user, strIdExtendableResource, strExtendableResourceType ) )
-                    {
-                        return false;
-                    }
-
+                    return false;
                 }
-            }
-            listListeners = _mapListeners.get( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE );
-            if ( listListeners != null )
-            {
-                for ( ICommentListener listener : listListeners )
-                {
-                    if ( !listener.canComment( user, strIdExtendableResource, strExtendableResourceType ) )
-                    {
-                        return false;
-                    }
 
-                }
             }
         }
         catch( Exception e )
@@ -380,6 +312,18 @@ public class CommentListenerService
         return true;
     }
 
+    /**
+     * Get the listeners associated with an extendable resource type, followed by listeners associated with every resource type
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The listeners
+     */
+    private static ICommentListener [ ] getListeners( String strExtendableResourceType )
+    {
+        return _snapshot.getListeners( strExtendableResourceType );
+    }
+
     /**
      * Get the comment DAO
      * 
@@ -403,4 +347,60 @@ public class CommentListenerService
         }
         return _commentDAO;
     }
+
+    /**
+     * Immutable view of the registered listeners. Listeners of each resource type are merged with listeners of every resource type when the snapshot is
+     * built, so that notifying listeners needs neither lookup of the wildcard nor allocation.
+     */
+    private static final class ListenerSnapshot
+    {
+        private static final ICommentListener [ ] EMPTY = new ICommentListener [ 0];
+
+        private final Map<String, ICommentListener [ ]> _mapListeners = new HashMap<>( );
+        private final ICommentListener [ ] _listenersOfEveryType;
+
+        /**
+         * Build a snapshot of registrations
+         * 
+         * @param mapRegistrations
+         *            The listeners, by extendable resource type
+         */
+        ListenerSnapshot( Map<String, List<ICommentListener>> mapRegistrations )
+        {
+            List<ICommentListener> listEveryType = mapRegistrations.getOrDefault( CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE, new ArrayList<>( ) );
+            _listenersOfEveryType = listEveryType.toArray( EMPTY );
+            for ( Map.Entry<String, List<ICommentListener>> entry : mapRegistrations.entrySet( ) )
+            {
+                if ( !CONSTANT_EVERY_EXTENDABLE_RESOURCE_TYPE.equals( entry.getKey( ) ) )
+                {
+                    List<ICommentListener> listMerged = new ArrayList<>( entry.getValue( ) );
+                    listMerged.addAll( listEveryType );
+                    _mapListeners.put( entry.getKey( ), listMerged.toArray( EMPTY ) );
+                }
+            }
+        }
+
+        /**
+         * Get the listeners of an extendable resource type, including listeners of every resource type
+         * 
+         * @param strExtendableResourceType
+         *            The extendable resource type
+         * @return The listeners
+         */
+        ICommentListener [ ] getListeners( String strExtendableResourceType )
+        {
+            ICommentListener [ ] listeners = ( strExtendableResourceType != null ) ? _mapListeners.get( strExtendableResourceType ) : null;
+            return ( listeners != null ) ? listeners : _listenersOfEveryType;
+        }
+
+        /**
+         * Check if the snapshot contains at least one listener
+         * 
+         * @return true if there is at least one listener, false otherwise
+         */
+        boolean hasListener( )
+        {
+            return _listenersOfEveryType.length > 0 || !_mapListeners.isEmpty( );
+        }
+    }
 }
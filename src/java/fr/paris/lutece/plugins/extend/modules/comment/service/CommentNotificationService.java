@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.plugins.extend.service.extender.IResourceExtenderService;
+import fr.paris.lutece.plugins.extend.service.extender.ResourceExtenderService;
+import fr.paris.lutece.portal.business.mailinglist.Recipient;
+import fr.paris.lutece.portal.service.content.XPageAppService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.mail.MailService;
+import fr.paris.lutece.portal.service.mailinglist.AdminMailingListService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.template.AppTemplateService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.html.HtmlTemplate;
+import fr.paris.lutece.util.url.UrlItem;
+
+/**
+ * 
+ * Service to notify mailing lists of new comments. Notifications are processed by a bounded pool of background threads, so that the user who posted the
+ * comment does not wait for them. The message of a comment is built once, and recipients are processed by batches that are retried with an increasing
+ * delay when an error occurs. Retries are scheduled rather than waited for, so that a failing batch does not hold a thread of the pool.
+ * 
+ */
+public final class CommentNotificationService
+{
+    private static final String PROPERTY_THREAD_POOL_SIZE = "module.extend.comment.notification.threadPoolSize";
+    private static final String PROPERTY_QUEUE_CAPACITY = "module.extend.comment.notification.queueCapacity";
+    private static final String PROPERTY_BATCH_SIZE = "module.extend.comment.notification.batchSize";
+    private static final String PROPERTY_MAX_RETRIES = "module.extend.comment.notification.maxRetries";
+    private static final String PROPERTY_RETRY_DELAY = "module.extend.comment.notification.retryDelay";
+    private static final String TEMPLATE_COMMENT_NOTIFY_MESSAGE = "skin/plugins/extend/modules/comment/comment_notify_message.html";
+    private static final String THREAD_NAME = "extend-comment-notification";
+    private static final String THREAD_NAME_RETRY = "extend-comment-notification-retry";
+
+    private static CommentNotificationService _singleton = new CommentNotificationService( );
+
+    private final ThreadPoolExecutor _executor;
+    private final ScheduledExecutorService _retryScheduler;
+    private final int _nBatchSize;
+    private final int _nMaxRetries;
+    private final long _lRetryDelay;
+
+    /**
+     * Private constructor
+     */
+    private CommentNotificationService( )
+    {
+        int nThreadPoolSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREAD_POOL_SIZE, 1 ) );
+        int nQueueCapacity = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_CAPACITY, 1000 ) );
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, 50 ) );
+        _nMaxRetries = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_MAX_RETRIES, 3 ) );
+        _lRetryDelay = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_RETRY_DELAY, 1000 ) );
+
+        _executor = new ThreadPoolExecutor( nThreadPoolSize, nThreadPoolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( nQueueCapacity ),
+                runnable -> {
+                    Thread thread = new Thread( runnable, THREAD_NAME );
+                    thread.setDaemon( true );
+                    return thread;
+                } );
+        // The scheduler only hands the retries over to the pool when their delay is over
+        _retryScheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_RETRY );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentNotificationService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Notify the mailing list of a comment extender config that a comment has been created. The notification is sent in the background.
+     * 
+     * @param comment
+     *            The created comment
+     * @param config
+     *            The config of the comment extender
+     * @param locale
+     *            The locale of the message
+     * @param strBaseUrl
+     *            The base URL of the site, used to build the link to the comments
+     */
+    public void notify( Comment comment, CommentExtenderConfig config, Locale locale, String strBaseUrl )
+    {
+        int nIdMailingList = config.getIdMailingList( );
+        if ( nIdMailingList < 0 )
+        {
+            return;
+        }
+
+        execute( ( ) -> sendNotification( comment, nIdMailingList, locale, strBaseUrl ), comment );
+    }
+
+    /**
+     * Stop the background threads. Retries that are not due yet are dropped.
+     */
+    public void shutdown( )
+    {
+        int nNbDroppedRetries = _retryScheduler.shutdownNow( ).size( );
+        if ( nNbDroppedRetries > 0 )
+        {
+            AppLogService.error( nNbDroppedRetries + " retries of comment notifications dropped on shutdown" );
+        }
+        CommentShutdownService.shutdown( _executor );
+    }
+
+    /**
+     * Run a task of notification in the pool
+     * 
+     * @param task
+     *            The task
+     * @param comment
+     *            The notified comment
+     */
+    private void execute( Runnable task, Comment comment )
+    {
+        try
+        {
+            _executor.execute( task );
+        }
+        catch( RejectedExecutionException e )
+        {
+            AppLogService.error( "The notification queue of comments is full : the notification of comment " + comment.getIdComment( ) + " is dropped", e );
+        }
+    }
+
+    /**
+     * Build the message of a comment and send it to every recipient of a mailing list
+     * 
+     * @param comment
+     *            The created comment
+     * @param nIdMailingList
+     *            The id of the mailing list
+     * @param locale
+     *            The locale of the message
+     * @param strBaseUrl
+     *            The base URL of the site
+     */
+    private void sendNotification( Comment comment, int nIdMailingList, Locale locale, String strBaseUrl )
+    {
+        try
+        {
+            List<Recipient> listRecipients = new ArrayList<>( AdminMailingListService.getRecipients( nIdMailingList ) );
+            if ( listRecipients.isEmpty( ) )
+            {
+                return;
+            }
+
+            IResourceExtenderService resourceExtenderService = SpringContextService.getBean( ResourceExtenderService.BEAN_SERVICE );
+            String strResourceName = resourceExtenderService.getExtendableResourceName( comment.getIdExtendableResource( ),
+                    comment.getExtendableResourceType( ) );
+
+            Object [ ] params = {
+                    strResourceName
+            };
+            String strSubject = I18nService.getLocalizedString( CommentConstants.MESSAGE_NOTIFY_SUBJECT, params, locale );
+
+            UrlItem url = new UrlItem( strBaseUrl + AppPathService.getPortalUrl( ) );
+            url.addParameter( XPageAppService.PARAM_XPAGE_APP, CommentPlugin.PLUGIN_NAME );
+            url.addParameter( CommentConstants.PARAMETER_ID_EXTENDABLE_RESOURCE, comment.getIdExtendableResource( ) );
+            url.addParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE, comment.getExtendableResourceType( ) );
+
+            Map<String, Object> model = new HashMap<>( );
+            model.put( CommentConstants.MARK_ID_EXTENDABLE_RESOURCE, comment.getIdExtendableResource( ) );
+            model.put( CommentConstants.MARK_EXTENDABLE_RESOURCE_TYPE, comment.getExtendableResourceType( ) );
+            model.put( CommentConstants.MARK_RESOURCE_EXTENDER_NAME, strResourceName );
+            model.put( CommentConstants.MARK_RESOURCE_EXTENDER_URL, url.getUrl( ) );
+            model.put( CommentConstants.MARK_COMMENT, comment );
+
+            HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_COMMENT_NOTIFY_MESSAGE, locale, model );
+            String strBody = template.getHtml( );
+
+            for ( int nFrom = 0; nFrom < listRecipients.size( ); nFrom += _nBatchSize )
+            {
+                List<Recipient> listBatch = listRecipients.subList( nFrom, Math.min( nFrom + _nBatchSize, listRecipients.size( ) ) );
+                sendBatch( new ArrayList<>( listBatch ), comment, strSubject, strBody, 0, _lRetryDelay );
+            }
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( "Error while notifying the creation of comment " + comment.getIdComment( ), e );
+        }
+    }
+
+    /**
+     * Send a message to a batch of recipients. If an error occurs, the remaining recipients of the batch are retried after a delay that doubles on each
+     * attempt.
+     * 
+     * @param listRemaining
+     *            The recipients of the batch that have not received the message yet
+     * @param comment
+     *            The created comment
+     * @param strSubject
+     *            The subject of the message
+     * @param strBody
+     *            The body of the message
+     * @param nAttempt
+     *            The number of previous attempts
+     * @param lDelay
+     *            The delay before the next attempt, in milliseconds
+     */
+    private void sendBatch( List<Recipient> listRemaining, Comment comment, String strSubject, String strBody, int nAttempt, long lDelay )
+    {
+        try
+        {
+            while ( !listRemaining.isEmpty( ) )
+            {
+                MailService.sendMailHtml( listRemaining.get( 0 ).getEmail( ), comment.getName( ), comment.getEmail( ), strSubject, strBody );
+                listRemaining.remove( 0 );
+            }
+        }
+        catch( Exception e )
+        {
+            if ( nAttempt >= _nMaxRetries )
+            {
+                AppLogService.error( "Unable to notify " + listRemaining.size( ) + " recipients of the creation of comment " + comment.getIdComment( ), e );
+                return;
+            }
+            AppLogService.info( "Error while notifying the creation of comment " + comment.getIdComment( ) + ", retrying in " + lDelay + " ms" );
+            try
+            {
+                _retryScheduler.schedule( ( ) -> execute( ( ) -> sendBatch( listRemaining, comment, strSubject, strBody, nAttempt + 1, lDelay * 2 ), comment ),
+                        lDelay, TimeUnit.MILLISECONDS );
+            }
+            catch( RejectedExecutionException e2 )
+            {
+                AppLogService.error( "Unable to notify " + listRemaining.size( ) + " recipients of the creation of comment " + comment.getIdComment( ), e2 );
+            }
+        }
+    }
+}
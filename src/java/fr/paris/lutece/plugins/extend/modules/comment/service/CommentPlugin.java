@@ -37,8 +37,10 @@ import java.util.Arrays;
 
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
 import fr.paris.lutece.plugins.extend.modules.comment.service.extender.CommentResourceExtender;
+import fr.paris.lutece.plugins.extend.modules.comment.service.trending.CommentTrendingService;
 import fr.paris.lutece.plugins.extend.service.extender.facade.ExtenderType;
 import fr.paris.lutece.plugins.extend.service.extender.facade.ResourceExtenderServiceFacade;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.plugin.PluginDefaultImplementation;
 import fr.paris.lutece.portal.service.plugin.PluginService;
@@ -82,5 +84,7 @@ public class CommentPlugin extends PluginDefaultImplementation
         			(strIdExtendableResource,strExtendableResourceType) -> String.valueOf( commentService.getCommentNb(  strIdExtendableResource,  strExtendableResourceType, true, true )),
         			(strIdExtendableResource,strExtendableResourceType)-> String.valueOf( commentService.getCommentNb(  strIdExtendableResource,  strExtendableResourceType, true, true )) )
         );
+        CommentTrendingService.getInstance( ).init( );
+        ShutdownServiceManager.registerShutdownService( new CommentShutdownService( ) );
     }
 }
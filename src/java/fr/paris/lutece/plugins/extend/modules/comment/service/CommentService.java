@@ -35,26 +35,42 @@ package fr.paris.lutece.plugins.extend.modules.comment.service;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import fr.paris.lutece.plugins.extend.business.extender.ResourceExtenderDTO;
-import fr.paris.lutece.plugins.extend.business.extender.ResourceExtenderDTOFilter;
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentCursor;
 import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentRankingPeriod;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentSlice;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentedResource;
 import fr.paris.lutece.plugins.extend.modules.comment.business.ICommentDAO;
 import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.plugins.extend.modules.comment.service.cache.ICommentCacheProvider;
 import fr.paris.lutece.plugins.extend.modules.comment.service.extender.CommentResourceExtender;
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.search.CommentSearchService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.stats.CommentStatsService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.trending.CommentTrendingService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.workflow.CommentWorkflowService;
 import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
-import fr.paris.lutece.plugins.extend.service.extender.IResourceExtenderService;
-import fr.paris.lutece.plugins.extend.service.extender.ResourceExtenderService;
 import fr.paris.lutece.plugins.extend.service.extender.config.IResourceExtenderConfigService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.plugin.Plugin;
@@ -74,30 +90,21 @@ public class CommentService implements ICommentService
     @Inject
     private ICommentDAO _commentDAO;
     @Inject
-    @Named( ResourceExtenderService.BEAN_SERVICE )
-    private IResourceExtenderService _resourceExtenderService;
-    @Inject
     @Named( CommentConstants.BEAN_CONFIG_SERVICE )
     private IResourceExtenderConfigService _configService;
 
+    @Inject
+    @Named( ICommentCacheProvider.BEAN_NAME )
+    private ICommentCacheProvider _cacheProvider;
+
     /**
      * {@inheritDoc}
      */
     @Override
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
-    public synchronized void create( Comment comment, HttpServletRequest request )
+    public void create( Comment comment, HttpServletRequest request )
     {
-        Timestamp currentTimestamp = new Timestamp( new Date( ).getTime( ) );
-        comment.setDateComment( currentTimestamp );
-        comment.setDateLastModif( currentTimestamp );
-        _commentDAO.insert( comment, CommentPlugin.getPlugin( ) );
-        if ( comment.getIdParentComment( ) > 0 )
-        {
-            Comment parentComment = findByPrimaryKey( comment.getIdParentComment( ) );
-            parentComment.setDateLastModif( currentTimestamp );
-            update( parentComment );
-        }
-        processWorkflow( comment );
+        doCreate( comment );
         CommentListenerService.createComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), comment.isPublished( ), request );
     }
 
@@ -106,7 +113,19 @@ public class CommentService implements ICommentService
      */
     @Override
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
-    public synchronized void create( Comment comment )
+    public void create( Comment comment )
+    {
+        doCreate( comment );
+        CommentListenerService.createComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), comment.isPublished( ) );
+    }
+
+    /**
+     * Create a comment and notify the services depending on comments. Listeners are notified by the caller.
+     * 
+     * @param comment
+     *            The comment to create
+     */
+    private void doCreate( Comment comment )
     {
         Timestamp currentTimestamp = new Timestamp( new Date( ).getTime( ) );
         comment.setDateComment( currentTimestamp );
@@ -114,12 +133,15 @@ public class CommentService implements ICommentService
         _commentDAO.insert( comment, CommentPlugin.getPlugin( ) );
         if ( comment.getIdParentComment( ) > 0 )
         {
-            Comment parentComment = findByPrimaryKey( comment.getIdParentComment( ) );
-            parentComment.setDateLastModif( currentTimestamp );
-            update( parentComment );
+            // The date of the parent only moves forward, so concurrent answers do not need to be serialized
+            _commentDAO.updateDateLastModif( comment.getIdParentComment( ), currentTimestamp, CommentPlugin.getPlugin( ) );
         }
-        processWorkflow( comment );
-        CommentListenerService.createComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), comment.isPublished( ) );
+        CommentStatsService.getInstance( ).commentCreated( comment );
+        CommentLiveService.getInstance( ).commentCreated( comment );
+        CommentTrendingService.getInstance( ).commentCreated( comment );
+        invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        CommentSearchService.getInstance( ).indexComments( Collections.singletonList( comment.getIdComment( ) ) );
+        initWorkflow( comment );
     }
 
     /**
@@ -129,14 +151,23 @@ public class CommentService implements ICommentService
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
     public void update( Comment comment )
     {
-        Comment oldComment = findByPrimaryKey( comment.getIdComment( ) );
+        Plugin plugin = CommentPlugin.getPlugin( );
         comment.setDateLastModif( new Timestamp( new Date( ).getTime( ) ) );
-        _commentDAO.store( comment, CommentPlugin.getPlugin( ) );
-        if ( oldComment.isPublished( ) ^ comment.isPublished( ) )
+        // The status is updated first with a conditional query, so that its change is known without loading the previous comment
+        boolean bStatusChanged = _commentDAO.updateCommentStatus( comment.getIdComment( ), comment.isPublished( ), plugin );
+        _commentDAO.store( comment, plugin );
+        if ( bStatusChanged )
+        {
+            CommentStatsService.getInstance( ).publicationChanged( Collections.singletonList( comment ), comment.isPublished( ) );
+            CommentLiveService.getInstance( ).publicationChanged( Collections.singletonList( comment ), comment.isPublished( ) );
+            CommentTrendingService.getInstance( ).publicationChanged( Collections.singletonList( comment ), comment.isPublished( ) );
+        }
+        invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        CommentSearchService.getInstance( ).indexComments( Collections.singletonList( comment.getIdComment( ) ) );
+        if ( bStatusChanged )
         {
             CommentListenerService.publishComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), comment.isPublished( ) );
         }
-        // if ( ( oldComment.isPublished( ) && !comment.isPublished( ) ) || !oldComment.isPublished( ) && comment.isPublished( ) ) )
     }
 
     /**
@@ -146,8 +177,17 @@ public class CommentService implements ICommentService
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
     public void updateCommentStatus( int nIdComment, boolean bPublished )
     {
-        _commentDAO.updateCommentStatus( nIdComment, bPublished, CommentPlugin.getPlugin( ) );
-        CommentListenerService.publishComment( nIdComment, bPublished );
+        // Listeners are only notified if the status actually changed
+        if ( _commentDAO.updateCommentStatus( nIdComment, bPublished, CommentPlugin.getPlugin( ) ) )
+        {
+            Comment comment = findByPrimaryKey( nIdComment );
+            CommentStatsService.getInstance( ).publicationChanged( Collections.singletonList( comment ), bPublished );
+            CommentLiveService.getInstance( ).publicationChanged( Collections.singletonList( comment ), bPublished );
+            CommentTrendingService.getInstance( ).publicationChanged( Collections.singletonList( comment ), bPublished );
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+            CommentSearchService.getInstance( ).indexComments( Collections.singletonList( nIdComment ) );
+            CommentListenerService.publishComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), bPublished );
+        }
     }
 
     /**
@@ -172,6 +212,11 @@ public class CommentService implements ICommentService
 
         }
         _commentDAO.delete( nIdComment, CommentPlugin.getPlugin( ) );
+        CommentStatsService.getInstance( ).commentsRemoved( Collections.singletonList( comment ) );
+        CommentLiveService.getInstance( ).commentsRemoved( Collections.singletonList( comment ) );
+        CommentTrendingService.getInstance( ).commentsRemoved( Collections.singletonList( comment ) );
+        invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        CommentSearchService.getInstance( ).removeComments( Collections.singletonList( nIdComment ) );
     }
 
     /**
@@ -187,19 +232,39 @@ public class CommentService implements ICommentService
 
             CommentListenerService.deleteComment( strExtendableResourceType, strIdExtendableResource, listRemovedComments );
         }
-        if ( WorkflowService.getInstance( ).isAvailable( ) )
+        // Workflow resources of large resources are removed in the background, once the comments are removed
+        CommentWorkflowService.getInstance( ).removeWorkflowResources( listRemovedComments, getResourceType( strExtendableResourceType ) );
+        _commentDAO.deleteByResource( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+        CommentStatsService.getInstance( ).resourceRemoved( strIdExtendableResource, strExtendableResourceType );
+        CommentTrendingService.getInstance( ).resourceRemoved( strIdExtendableResource, strExtendableResourceType );
+        invalidateResource( strIdExtendableResource, strExtendableResourceType );
+        CommentSearchService.getInstance( ).removeResource( strIdExtendableResource, strExtendableResourceType );
+    }
+
+    /**
+     * Invalidate cached data of a resource after a modification of its comments. Data are removed immediately, and once again when the current transaction
+     * completes, so that a concurrent request can not keep in cache a value read before the commit. Other nodes are notified within the transaction.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    private void invalidateResource( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        _cacheProvider.evictResource( strIdExtendableResource, strExtendableResourceType );
+        _cacheProvider.notifyResourceModified( strIdExtendableResource, strExtendableResourceType );
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
         {
-            String resourceType = getResourceType( strExtendableResourceType );
-            for ( int nIdComment : listRemovedComments )
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
             {
-
-                WorkflowService.getInstance( ).doRemoveWorkFlowResource( nIdComment, resourceType );
-
-            }
-            // WorkflowService.getInstance( ).doRemoveWorkFlowResourceByListId(listRemovedComments, resourceType , id_wf);
-
+                @Override
+                public void afterCompletion( int nStatus )
+                {
+                    _cacheProvider.evictResource( strIdExtendableResource, strExtendableResourceType );
+                }
+            } );
         }
-        _commentDAO.deleteByResource( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
     }
 
     // GET
@@ -246,7 +311,21 @@ public class CommentService implements ICommentService
     @Override
     public int getCommentNb( String strIdExtendableResource, String strExtendableResourceType, boolean bParentsOnly, boolean bPublishedOnly )
     {
-        return _commentDAO.getCommentNb( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly, CommentPlugin.getPlugin( ) );
+        CommentCountCacheService cacheService = CommentCountCacheService.getInstance( );
+        Integer nCommentNb = cacheService.getCommentNb( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly );
+        if ( nCommentNb == null )
+        {
+            nCommentNb = CommentStatsService.getInstance( ).getCommentNb( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly );
+            if ( nCommentNb == null )
+            {
+                // The statistics of a resource commented for the first time are computed once the comment is committed
+                nCommentNb = _commentDAO.getCommentNb( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly,
+                        CommentPlugin.getPlugin( ) );
+            }
+            cacheService.putCommentNb( strIdExtendableResource, strExtendableResourceType, bParentsOnly, bPublishedOnly, nCommentNb );
+        }
+
+        return nCommentNb;
     }
 
     /**
@@ -258,7 +337,6 @@ public class CommentService implements ICommentService
     {
         Plugin plugin = CommentPlugin.getPlugin( );
         List<Comment> listComments = new ArrayList<>( );
-        List<Comment> listSubComments = new ArrayList<>( );
 
         List<Comment> listCommentsPinned = findCommentsPinned( strIdExtendableResource, strExtendableResourceType, nNbComments,
                 bPublishedOnly ? Comment.COMMENT_STATE_PUBLISHED : null, true, bGetNumberSubComments, null );
@@ -273,19 +351,29 @@ public class CommentService implements ICommentService
             }
             List<Comment> listLastComments = _commentDAO.selectLastComments( strIdExtendableResource, strExtendableResourceType, nNbComments, bPublishedOnly,
                     bParentsOnly, plugin, bSortedByDateCreation );
-            if ( bGetNumberSubComments )
+            if ( bGetNumberSubComments && bDisplaySubComments )
             {
-                for ( Comment comment : listLastComments )
+                CommentFilter subCommentFilter = new CommentFilter( );
+                if ( bPublishedOnly )
                 {
-                    listSubComments = findByIdParent( comment.getIdComment( ), bPublishedOnly );
+                    subCommentFilter.setCommentState( Comment.COMMENT_STATE_PUBLISHED );
+                }
+                subCommentFilter.setAscSort( true );
+                Map<Integer, List<Comment>> mapSubComments = findSubCommentsByIdParent( listLastComments, subCommentFilter );
 
+                for ( Comment comment : listLastComments )
+                {
+                    List<Comment> listSubComments = mapSubComments.getOrDefault( comment.getIdComment( ), new ArrayList<>( ) );
                     comment.setNumberSubComments( listSubComments.size( ) );
-                    if ( bDisplaySubComments )
-                    {
-                        comment.setListSubComments( listSubComments );
-                    }
+                    comment.setListSubComments( listSubComments );
                 }
             }
+            else
+                if ( bGetNumberSubComments )
+                {
+                    // Only the number of sub comments is needed, so we do not load them
+                    setNumberSubComments( listLastComments, bPublishedOnly );
+                }
             listComments.addAll( listLastComments );
         }
 
@@ -325,17 +413,114 @@ public class CommentService implements ICommentService
 
         if ( bLoadSubComments )
         {
-            for ( Comment comment : listComments )
-            {
-                comment.setListSubComments( this.findByIdParent( comment.getIdComment( ),
-                        commentFilter.getCommentState( ) != null && commentFilter.getCommentState( ).equals( Comment.COMMENT_STATE_PUBLISHED ),
-                        commentFilter.getSortedAttributeName( ), commentFilter.getAscSort( ) ) );
-            }
+            loadSubComments( listComments, commentFilter );
         }
 
         return listComments;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CommentSlice findByResource( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter,
+            String strContinuationToken, int nMaxItemsNumber, boolean bLoadSubComments )
+    {
+        // We fetch one more comment to know if there is a next slice
+        List<Comment> listComments = _commentDAO.findParentCommentsByResourceAfter( strIdExtendableResource, strExtendableResourceType, commentFilter,
+                CommentCursor.fromToken( strContinuationToken ), nMaxItemsNumber + 1, CommentPlugin.getPlugin( ) );
+
+        String strNextToken = null;
+        if ( listComments.size( ) > nMaxItemsNumber )
+        {
+            listComments = new ArrayList<>( listComments.subList( 0, nMaxItemsNumber ) );
+            Comment lastComment = listComments.get( nMaxItemsNumber - 1 );
+            strNextToken = CommentCursor.getCursor( lastComment, commentFilter.getSortedAttributeName( ) ).toToken( );
+        }
+
+        if ( bLoadSubComments )
+        {
+            loadSubComments( listComments, commentFilter );
+        }
+
+        return new CommentSlice( listComments, strNextToken );
+    }
+
+    /**
+     * Load the sub comments of a list of parent comments
+     * 
+     * @param listComments
+     *            The parent comments
+     * @param commentFilter
+     *            The filter used to get parent comments
+     */
+    private void loadSubComments( List<Comment> listComments, CommentFilter commentFilter )
+    {
+        CommentFilter subCommentFilter = new CommentFilter( );
+        if ( commentFilter.getCommentState( ) != null && commentFilter.getCommentState( ).equals( Comment.COMMENT_STATE_PUBLISHED ) )
+        {
+            subCommentFilter.setCommentState( Comment.COMMENT_STATE_PUBLISHED );
+        }
+        subCommentFilter.setSortedAttributeName( commentFilter.getSortedAttributeName( ) );
+        subCommentFilter.setAscSort( commentFilter.getAscSort( ) );
+
+        Map<Integer, List<Comment>> mapSubComments = findSubCommentsByIdParent( listComments, subCommentFilter );
+        for ( Comment comment : listComments )
+        {
+            comment.setListSubComments( mapSubComments.getOrDefault( comment.getIdComment( ), new ArrayList<>( ) ) );
+        }
+    }
+
+    /**
+     * Get the sub comments of a list of parent comments with a single query, grouped by the id of their parent. Sub comments of each parent keep the order
+     * defined by the filter.
+     * 
+     * @param listParentComments
+     *            The parent comments
+     * @param commentFilter
+     *            The filter to apply on sub comments
+     * @return The map of sub comments, indexed by the id of their parent
+     */
+    private Map<Integer, List<Comment>> findSubCommentsByIdParent( List<Comment> listParentComments, CommentFilter commentFilter )
+    {
+        Map<Integer, List<Comment>> mapSubComments = new HashMap<>( );
+        if ( listParentComments.isEmpty( ) )
+        {
+            return mapSubComments;
+        }
+
+        List<Integer> listIdParents = listParentComments.stream( ).map( Comment::getIdComment ).collect( Collectors.toList( ) );
+        for ( Comment subComment : _commentDAO.findByIdParents( listIdParents, commentFilter, CommentPlugin.getPlugin( ) ) )
+        {
+            mapSubComments.computeIfAbsent( subComment.getIdParentComment( ), k -> new ArrayList<>( ) ).add( subComment );
+        }
+
+        return mapSubComments;
+    }
+
+    /**
+     * Set the number of sub comments of a list of parent comments with a single query
+     * 
+     * @param listParentComments
+     *            The parent comments
+     * @param bPublishedOnly
+     *            True to consider only published sub comments
+     */
+    private void setNumberSubComments( List<Comment> listParentComments, boolean bPublishedOnly )
+    {
+        if ( listParentComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        List<Integer> listIdParents = listParentComments.stream( ).map( Comment::getIdComment ).collect( Collectors.toList( ) );
+        Map<Integer, Integer> mapCounts = _commentDAO.countByIdParents( listIdParents, bPublishedOnly, CommentPlugin.getPlugin( ) );
+        for ( Comment comment : listParentComments )
+        {
+            comment.setNumberSubComments( mapCounts.getOrDefault( comment.getIdComment( ), 0 ) );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -378,7 +563,36 @@ public class CommentService implements ICommentService
     @Override
     public List<Integer> findIdMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset, int nMaxItemsNumber )
     {
-        return _commentDAO.findIdMostCommentedResources( strExtendableResourceType, bPublishedOnly, nItemsOffset, nMaxItemsNumber, CommentPlugin.getPlugin( ) );
+        return findMostCommentedResources( strExtendableResourceType, bPublishedOnly, CommentRankingPeriod.ALL, nItemsOffset, nMaxItemsNumber ).stream( )
+                .map( resource -> Integer.parseInt( resource.getIdExtendableResource( ) ) ).collect( Collectors.toList( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, CommentRankingPeriod period,
+            int nItemsOffset, int nMaxItemsNumber )
+    {
+        Timestamp dateFrom = period.getDateFrom( System.currentTimeMillis( ) );
+        if ( dateFrom == null )
+        {
+            // Rankings over every comment are read from the statistics of the resources
+            return CommentStatsService.getInstance( ).findMostCommentedResources( strExtendableResourceType, bPublishedOnly, nItemsOffset,
+                    nMaxItemsNumber );
+        }
+
+        return _commentDAO.findMostCommentedResources( strExtendableResourceType, bPublishedOnly, dateFrom, nItemsOffset, nMaxItemsNumber,
+                CommentPlugin.getPlugin( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> findTrendingResources( String strExtendableResourceType, int nMaxItemsNumber )
+    {
+        return CommentTrendingService.getInstance( ).findTrendingResources( strExtendableResourceType, nMaxItemsNumber );
     }
 
     /**
@@ -443,11 +657,7 @@ public class CommentService implements ICommentService
 
         if ( bGetNumberSubComments )
         {
-            for ( Comment comment : listComments )
-            {
-                comment.setNumberSubComments( _commentDAO.countByIdParent( comment.getIdComment( ),
-                        ( nCommentState != null && nCommentState.equals( Comment.COMMENT_STATE_PUBLISHED ) ), plugin ) );
-            }
+            setNumberSubComments( listComments, nCommentState != null && nCommentState.equals( Comment.COMMENT_STATE_PUBLISHED ) );
         }
         return listComments;
 
@@ -457,13 +667,11 @@ public class CommentService implements ICommentService
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
     public void updateFlagImportant( int nIdComment, boolean bImportant )
     {
-        Plugin plugin = CommentPlugin.getPlugin( );
-        Comment comment = findByPrimaryKey( nIdComment );
-        if ( comment != null )
+        if ( _commentDAO.updateImportant( nIdComment, bImportant, CommentPlugin.getPlugin( ) ) )
         {
-            comment.setIsImportant( bImportant );
+            Comment comment = findByPrimaryKey( nIdComment );
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
         }
-        _commentDAO.store( comment, plugin );
     }
 
     @Override
@@ -471,45 +679,300 @@ public class CommentService implements ICommentService
     public void updateCommentPinned( int nIdComment, boolean bPinned )
     {
         Plugin plugin = CommentPlugin.getPlugin( );
-        Comment comment = findByPrimaryKey( nIdComment );
-        if ( comment != null )
+        Comment comment;
+        if ( bPinned )
+        {
+            // The resource of the comment is needed to put it after the comments already pinned
+            comment = findByPrimaryKey( nIdComment );
+            if ( comment == null )
+            {
+                return;
+            }
+            lockPinnedCommentsOrder( Collections.singletonList( comment ) );
+            if ( !_commentDAO.updatePinned( nIdComment, true,
+                    getNextPinnedCommentOrder( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) ), plugin ) )
+            {
+                return;
+            }
+        }
+        else
+        {
+            if ( !_commentDAO.updatePinned( nIdComment, false, 0, plugin ) )
+            {
+                return;
+            }
+            comment = findByPrimaryKey( nIdComment );
+        }
+        invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    public void updateCommentStatus( Collection<Integer> listIdComments, boolean bPublished )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        // Comments are locked before their status is read, so that concurrent moderations of the same comments apply each change only once. Comments
+        // already in the requested status are left untouched, so that statistics and listeners are only notified of actual changes.
+        List<Comment> listComments = _commentDAO.loadForUpdate( listIdComments, plugin ).stream( ).filter( comment -> comment.isPublished( ) != bPublished )
+                .collect( Collectors.toList( ) );
+        if ( listComments.isEmpty( ) )
         {
-            comment.setPinned( bPinned );
+            return;
+        }
+
+        _commentDAO.updateCommentStatus( getIdComments( listComments ), bPublished, plugin );
+        CommentStatsService.getInstance( ).publicationChanged( listComments, bPublished );
+        CommentLiveService.getInstance( ).publicationChanged( listComments, bPublished );
+        CommentTrendingService.getInstance( ).publicationChanged( listComments, bPublished );
+        CommentSearchService.getInstance( ).indexComments( getIdComments( listComments ) );
+        for ( List<Comment> listResourceComments : groupByResource( listComments ) )
+        {
+            Comment comment = listResourceComments.get( 0 );
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+            CommentListenerService.publishComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), bPublished );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    public void updateFlagImportant( Collection<Integer> listIdComments, boolean bImportant )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        List<Comment> listComments = _commentDAO.load( listIdComments, plugin ).stream( ).filter( comment -> comment.getIsImportant( ) != bImportant )
+                .collect( Collectors.toList( ) );
+        if ( listComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        _commentDAO.updateImportant( getIdComments( listComments ), bImportant, plugin );
+        for ( List<Comment> listResourceComments : groupByResource( listComments ) )
+        {
+            Comment comment = listResourceComments.get( 0 );
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    public void updateCommentPinned( Collection<Integer> listIdComments, boolean bPinned )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        List<Comment> listComments = _commentDAO.load( listIdComments, plugin ).stream( ).filter( comment -> comment.isPinned( ) != bPinned )
+                .collect( Collectors.toList( ) );
+        if ( listComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        if ( bPinned )
+        {
+            lockPinnedCommentsOrder( listComments );
+        }
+        Map<Integer, Comment> mapComments = listComments.stream( ).collect( Collectors.toMap( Comment::getIdComment, comment -> comment ) );
+        Map<Integer, Integer> mapCommentOrders = new LinkedHashMap<>( );
+        for ( List<Comment> listResourceComments : groupByResource( listComments ) )
+        {
+            Comment comment = listResourceComments.get( 0 );
             if ( bPinned )
             {
-                // update comment Order
-                CommentFilter filter = new CommentFilter( );
-                filter.setPinned( true );
-                List<Comment> listComment = findByResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ), filter, 0, 10000, false );
-                int nOrder = 1;
-                for ( Comment commentPinned : listComment )
+                int nOrder = getNextPinnedCommentOrder( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+                // Comments are pinned in the order chosen by the user rather than in the order returned by the database
+                for ( Integer nIdComment : listIdComments )
                 {
-                    if ( commentPinned.getCommentOrder( ) >= nOrder )
+                    Comment commentToPin = mapComments.get( nIdComment );
+                    if ( commentToPin != null && listResourceComments.contains( commentToPin ) && !mapCommentOrders.containsKey( nIdComment ) )
                     {
-                        nOrder = commentPinned.getCommentOrder( ) + 1;
+                        mapCommentOrders.put( nIdComment, nOrder++ );
                     }
                 }
-                comment.setCommentOrder( nOrder );
             }
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        }
+
+        _commentDAO.updatePinned( mapComments.keySet( ), bPinned, plugin );
+        _commentDAO.updateCommentOrders( mapCommentOrders, plugin );
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    public void remove( Collection<Integer> listIdComments )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        // Comments are locked first, so that a concurrent removal of the same comments waits and then only finds the comments it still has to remove
+        List<Comment> listComments = _commentDAO.loadForUpdate( listIdComments, plugin );
+        if ( listComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        List<List<Comment>> listCommentsByResource = groupByResource( listComments );
+        for ( List<Comment> listResourceComments : listCommentsByResource )
+        {
+            Comment comment = listResourceComments.get( 0 );
+            List<Integer> listIdRemovedComments = getIdComments( listResourceComments );
+            if ( CommentListenerService.hasListener( ) )
+            {
+                CommentListenerService.deleteComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), listIdRemovedComments );
+            }
+            CommentWorkflowService.getInstance( ).removeWorkflowResources( listIdRemovedComments, getResourceType( comment.getExtendableResourceType( ) ) );
+        }
+        _commentDAO.delete( getIdComments( listComments ), plugin );
+        CommentStatsService.getInstance( ).commentsRemoved( listComments );
+        CommentLiveService.getInstance( ).commentsRemoved( listComments );
+        CommentTrendingService.getInstance( ).commentsRemoved( listComments );
+        CommentSearchService.getInstance( ).removeComments( getIdComments( listComments ) );
+        for ( List<Comment> listResourceComments : listCommentsByResource )
+        {
+            Comment comment = listResourceComments.get( 0 );
+            invalidateResource( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    public void updatePinnedCommentsOrder( String strIdExtendableResource, String strExtendableResourceType, List<Integer> listIdComments )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        Set<Integer> setIdPinnedComments = _commentDAO.load( listIdComments, plugin ).stream( )
+                .filter( comment -> comment.isPinned( ) && strIdExtendableResource.equals( comment.getIdExtendableResource( ) )
+                        && strExtendableResourceType.equals( comment.getExtendableResourceType( ) ) )
+                .map( Comment::getIdComment ).collect( Collectors.toSet( ) );
+        List<Integer> listIdPinnedComments = listIdComments.stream( ).filter( setIdPinnedComments::contains ).distinct( ).collect( Collectors.toList( ) );
+        if ( listIdPinnedComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        Comment comment = new Comment( );
+        comment.setIdExtendableResource( strIdExtendableResource );
+        comment.setExtendableResourceType( strExtendableResourceType );
+        lockPinnedCommentsOrder( Collections.singletonList( comment ) );
+
+        // Pinned comments are displayed by descending order, so the first comment of the list gets the highest order
+        Map<Integer, Integer> mapCommentOrders = new LinkedHashMap<>( );
+        int nOrder = listIdPinnedComments.size( );
+        for ( Integer nIdComment : listIdPinnedComments )
+        {
+            mapCommentOrders.put( nIdComment, nOrder-- );
+        }
+        _commentDAO.updateCommentOrders( mapCommentOrders, plugin );
+        invalidateResource( strIdExtendableResource, strExtendableResourceType );
+    }
+
+    /**
+     * Get the order to give to the next pinned comment of a resource. The caller must hold the lock of the order of the pinned comments of the resource.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The order following the order of every comment already pinned on the resource
+     */
+    private int getNextPinnedCommentOrder( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        return _commentDAO.findMaxPinnedCommentOrder( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) ) + 1;
+    }
+
+    /**
+     * Lock the order of the pinned comments of the resources of a list of comments until the end of the current transaction, so that concurrent pinnings
+     * of a resource can not read the same highest order. The statistics rows of the resources are locked in the database, which serializes every node.
+     * 
+     * @param listComments
+     *            The comments whose resources must be locked
+     */
+    private void lockPinnedCommentsOrder( List<Comment> listComments )
+    {
+        CommentStatsService.getInstance( ).lockResources( listComments );
+    }
+
+    /**
+     * Group comments by resource, keeping the order in which resources first appear
+     * 
+     * @param listComments
+     *            The comments to group
+     * @return The list of groups of comments, each group containing the comments of a single resource
+     */
+    private static List<List<Comment>> groupByResource( List<Comment> listComments )
+    {
+        Map<List<String>, List<Comment>> mapComments = listComments.stream( )
+                .collect( Collectors.groupingBy( comment -> Arrays.asList( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ) ),
+                        LinkedHashMap::new, Collectors.toList( ) ) );
+        return new ArrayList<>( mapComments.values( ) );
+    }
+
+    /**
+     * Get the ids of a list of comments
+     * 
+     * @param listComments
+     *            The comments
+     * @return The ids of the comments
+     */
+    private static List<Integer> getIdComments( List<Comment> listComments )
+    {
+        return listComments.stream( ).map( Comment::getIdComment ).collect( Collectors.toList( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void processWorkflow( int nIdComment )
+    {
+        Comment comment = findByPrimaryKey( nIdComment );
+        if ( comment != null )
+        {
+            processWorkflow( comment );
+        }
+    }
+
+    /**
+     * Initialize the workflow of a created comment, in the background if the asynchronous mode is enabled
+     * 
+     * @param comment
+     *            The created comment
+     */
+    private void initWorkflow( Comment comment )
+    {
+        CommentWorkflowService workflowService = CommentWorkflowService.getInstance( );
+        if ( workflowService.isAsynchronous( ) )
+        {
+            workflowService.schedule( comment.getIdComment( ) );
+        }
+        else
+        {
+            processWorkflow( comment );
         }
-        _commentDAO.store( comment, plugin );
     }
 
     private void processWorkflow( Comment comment )
     {
 
         String resourceType = getResourceType( comment.getExtendableResourceType( ) );
-        ResourceExtenderDTOFilter filter = new ResourceExtenderDTOFilter( );
-        filter.setFilterExtendableResourceType( comment.getExtendableResourceType( ) );
-        filter.setFilterIdExtendableResource( comment.getIdExtendableResource( ) );
-        filter.setFilterExtenderType( CommentResourceExtender.EXTENDER_TYPE_COMMENT );
-        filter.setIncludeWildcardResource( true );
 
-        List<ResourceExtenderDTO> listResourceExtender = _resourceExtenderService.findByFilter( filter );
-        int nIdExtendable = listResourceExtender.get( 0 ).getIdExtender( );
-
-        CommentExtenderConfig config = (CommentExtenderConfig) _configService.find( nIdExtendable );
+        // The config is resolved from the cache, including the config of every resource of the type if the resource has no specific extender
+        CommentExtenderConfig config = _configService.find( CommentResourceExtender.EXTENDER_TYPE_COMMENT, comment.getIdExtendableResource( ),
+                comment.getExtendableResourceType( ) );
+        if ( config == null )
+        {
+            return;
+        }
+        int nIdExtendable = config.getIdExtender( );
         int idWorkflow = config.getIdWorkflow( );
         if ( idWorkflow > 0 )
         {
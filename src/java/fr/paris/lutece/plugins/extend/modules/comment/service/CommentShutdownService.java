@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.extend.modules.comment.service.export.CommentExportService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.search.CommentSearchService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.stats.CommentStatsService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.workflow.CommentWorkflowService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceInterface;
+
+/**
+ * 
+ * Shutdown service of the module, releasing the resources held by its background services when the webapp stops, so that a redeployed webapp can use
+ * them again
+ * 
+ */
+public class CommentShutdownService implements ShutdownServiceInterface
+{
+    private static final String NAME = "Extend comment shutdown service";
+    // Delay given to the running and queued tasks of an executor before they are interrupted, in seconds
+    private static final int SHUTDOWN_TIMEOUT = 10;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process( )
+    {
+        CommentLiveService.getInstance( ).shutdown( );
+        CommentNotificationService.getInstance( ).shutdown( );
+        CommentListenerDispatcher.getInstance( ).shutdown( );
+        CommentWorkflowService.getInstance( ).shutdown( );
+        CommentExportService.getInstance( ).shutdown( );
+        CommentStatsService.getInstance( ).shutdown( );
+        CommentSearchService.getInstance( ).shutdown( );
+    }
+
+    /**
+     * Stop an executor. Running and queued tasks are given a few seconds to end before they are interrupted, so that no thread of the webapp is left
+     * running.
+     * 
+     * @param executor
+     *            The executor
+     */
+    public static void shutdown( ExecutorService executor )
+    {
+        executor.shutdown( );
+        try
+        {
+            if ( !executor.awaitTermination( SHUTDOWN_TIMEOUT, TimeUnit.SECONDS ) )
+            {
+                executor.shutdownNow( );
+            }
+        }
+        catch( InterruptedException e )
+        {
+            executor.shutdownNow( );
+            Thread.currentThread( ).interrupt( );
+        }
+    }
+}
@@ -35,6 +35,10 @@ package fr.paris.lutece.plugins.extend.modules.comment.service;
 
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 
  * ICommentAvatarService
@@ -57,4 +61,29 @@ public interface ICommentAvatarService
      */
     String getAvatarUrl( Comment comment );
 
+    /**
+     * Resolve the avatar URL of the authors of a list of comments and of their sub comments. The avatar URL is set on every comment so that displaying the
+     * comments does not resolve it again. By default, {@link #getAvatarUrl(Comment)} is called for every comment and the URLs are returned by email of
+     * authors; implementations may resolve each author only once.
+     * 
+     * @param listComments
+     *            The list of comments
+     * @return The avatar URLs, by avatar key of authors
+     */
+    default Map<String, String> getAvatars( Collection<Comment> listComments )
+    {
+        Map<String, String> mapAvatarUrls = new HashMap<>( );
+        if ( listComments != null )
+        {
+            for ( Comment comment : listComments )
+            {
+                String strAvatarUrl = getAvatarUrl( comment );
+                comment.setAvatarUrl( strAvatarUrl );
+                mapAvatarUrls.put( comment.getEmail( ), strAvatarUrl );
+                mapAvatarUrls.putAll( getAvatars( comment.getListSubComments( ) ) );
+            }
+        }
+        return mapAvatarUrls;
+    }
+
 }
@@ -120,4 +120,16 @@ public interface ICommentListener
      * @return true when the user has the rights, otherwise false
      */
     public boolean canComment( LuteceUser user, String strIdExtendableResource, String strExtendableResourceType );
+
+    /**
+     * Check if the listener can be notified of the creation, publication and removal of comments asynchronously. Asynchronous listeners are notified in a
+     * background thread once the transaction is committed, in the order of events. They are notified of creations without the HTTP request. Checks
+     * ({@link #checkComment(String, String)}, {@link #canComment(LuteceUser, String, String)}) are always synchronous.
+     * 
+     * @return true if the listener can be notified asynchronously, false otherwise
+     */
+    default boolean isAsynchronous( )
+    {
+        return false;
+    }
 }
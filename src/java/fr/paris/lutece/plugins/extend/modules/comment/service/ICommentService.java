@@ -43,6 +43,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
 import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentRankingPeriod;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentSlice;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentedResource;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.util.ReferenceList;
 
@@ -133,6 +136,63 @@ public interface ICommentService
     @Transactional( CommentPlugin.TRANSACTION_MANAGER )
     void updateCommentPinned( int nIdComment, boolean bPinned );
 
+    /**
+     * Update the status of a list of comments. Comments are updated with a single query, and listeners are notified once for each resource with at least
+     * one comment whose status changed.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bPublished
+     *            true to publish the comments, false to unpublish them
+     */
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    void updateCommentStatus( Collection<Integer> listIdComments, boolean bPublished );
+
+    /**
+     * Update the important flag of a list of comments with a single query.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bImportant
+     *            true if the comments are important
+     */
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    void updateFlagImportant( Collection<Integer> listIdComments, boolean bImportant );
+
+    /**
+     * Pin or unpin a list of comments. Pinned comments are put after the comments already pinned on their resource, in the order of the given list.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to update
+     * @param bPinned
+     *            true if the comments must be pinned
+     */
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    void updateCommentPinned( Collection<Integer> listIdComments, boolean bPinned );
+
+    /**
+     * Remove a list of comments. Comments are removed with a single query, and listeners are notified once for each resource.
+     * 
+     * @param listIdComments
+     *            the ids of the comments to remove
+     */
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    void remove( Collection<Integer> listIdComments );
+
+    /**
+     * Reorder the pinned comments of a resource. Comments are displayed in the order of the given list, and their orders are rewritten with a single query.
+     * Comments of the list that are not pinned on the resource are ignored.
+     * 
+     * @param strIdExtendableResource
+     *            the id of the extendable resource
+     * @param strExtendableResourceType
+     *            the extendable resource type
+     * @param listIdComments
+     *            the ids of the pinned comments of the resource, in the order in which they must be displayed
+     */
+    @Transactional( CommentPlugin.TRANSACTION_MANAGER )
+    void updatePinnedCommentsOrder( String strIdExtendableResource, String strExtendableResourceType, List<Integer> listIdComments );
+
     /**
      * Load.
      * 
@@ -253,6 +313,27 @@ public interface ICommentService
     List<Comment> findByResource( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter, int nItemsOffset,
             int nMaxItemsNumber, boolean bLoadSubComments );
 
+    /**
+     * Get comments of a given resource located after a continuation token. Unlike offset pagination, getting the following comments costs the same whatever
+     * the position in the list.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the resource
+     * @param strExtendableResourceType
+     *            The type of the resource
+     * @param commentFilter
+     *            The commentFilter Object
+     * @param strContinuationToken
+     *            The token returned with the previous slice, or null to get items from the first one
+     * @param nMaxItemsNumber
+     *            The maximum number of items to return
+     * @param bLoadSubComments
+     *            True if sub comments should be loaded, false if they should be ignored
+     * @return The slice of comments associated with the given resource, and the token to get the next slice
+     */
+    CommentSlice findByResource( String strIdExtendableResource, String strExtendableResourceType, CommentFilter commentFilter, String strContinuationToken,
+            int nMaxItemsNumber, boolean bLoadSubComments );
+
     /**
      * Get comments from their parent
      * 
@@ -323,10 +404,42 @@ public interface ICommentService
      *            The offset of the items to get, or 0 to get items from the first one
      * @param nMaxItemsNumber
      *            The maximum number of items to return, or 0 to get every items
-     * @return The list of ids of resources ordered by the number of associated comments
+     * @return The list of ids of resources ordered by the number of associated comments. Ids of resources must be numeric, see
+     *         {@link #findMostCommentedResources(String, boolean, CommentRankingPeriod, int, int)} otherwise.
      */
     List<Integer> findIdMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset, int nMaxItemsNumber );
 
+    /**
+     * Get resources with their number of comments, ordered by descending number of comments. Rankings over a limited period count the comments created
+     * during the period, and are meant for "trending" lists.
+     * 
+     * @param strExtendableResourceType
+     *            The type of resources to consider
+     * @param bPublishedOnly
+     *            True to consider only published comments, false to consider every comments
+     * @param period
+     *            The period over which comments are counted
+     * @param nItemsOffset
+     *            The offset of the items to get, or 0 to get items from the first one
+     * @param nMaxItemsNumber
+     *            The maximum number of items to return, or 0 to get every items
+     * @return The list of resources ordered by the number of associated comments
+     */
+    List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, CommentRankingPeriod period,
+            int nItemsOffset, int nMaxItemsNumber );
+
+    /**
+     * Get the ids of the trending resources of a type, ranked by their number of published comments weighted by the age of the comments. The ranking is
+     * kept in memory and does not query the database.
+     * 
+     * @param strExtendableResourceType
+     *            The type of resources to consider
+     * @param nMaxItemsNumber
+     *            The maximum number of ids to return
+     * @return The ids of the resources, most trending first
+     */
+    List<String> findTrendingResources( String strExtendableResourceType, int nMaxItemsNumber );
+
     /**
      * Find comment list by resource
      * @param strIdExtendableResource
@@ -372,6 +485,15 @@ public interface ICommentService
      * @return
      */
     String getResourceType( String extendableResourceType );
+
+    /**
+     * Initialize the workflow of a comment: its initial state is set and automatic actions are executed. Nothing is done if the comment does not exist
+     * or if its extender has no workflow.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     */
+    void processWorkflow( int nIdComment );
     
     /**
      * Load comments by lutece user name.
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.cache;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.cache.CommentCacheEvent;
+import fr.paris.lutece.plugins.extend.modules.comment.business.cache.ICommentCacheEventDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import javax.inject.Inject;
+
+/**
+ * 
+ * Provider of the caches of comments for a cluster of nodes sharing the same database. Data are cached in memory by each node, and modifications are
+ * notified to other nodes through the table extend_comment_cache_event, which is polled by the daemon {@link CommentCacheEventDaemon}.
+ * <p>
+ * Events are polled by increasing id. An event is inserted in the transaction modifying the comments, so an id may be committed after greater ids, or
+ * never if the transaction is rolled back. The ids skipped by a poll are therefore read again by the next polls, until they appear or until the gap
+ * timeout expires.
+ * </p>
+ * 
+ */
+public class DatabaseCommentCacheProvider extends LocalCommentCacheProvider
+{
+    private static final String PROPERTY_GAP_TIMEOUT = "module.extend.comment.cache.events.gapTimeout";
+    private static final String PROPERTY_RETENTION = "module.extend.comment.cache.events.retention";
+    private static final long DEFAULT_GAP_TIMEOUT = 60000L;
+    private static final long DEFAULT_RETENTION = 3600000L;
+    private static final int MAX_GAPS = 1000;
+    private static final String LOG_PROCESSED_EVENTS = "Processed events : ";
+
+    @Inject
+    private ICommentCacheEventDAO _cacheEventDAO;
+
+    private final String _strNodeId = UUID.randomUUID( ).toString( );
+    private final long _lGapTimeout = AppPropertiesService.getPropertyLong( PROPERTY_GAP_TIMEOUT, DEFAULT_GAP_TIMEOUT );
+    private final long _lRetention = AppPropertiesService.getPropertyLong( PROPERTY_RETENTION, DEFAULT_RETENTION );
+
+    // Id of the last processed event, ids skipped with the time they were detected, and date of the last event. Only used by the daemon, under the lock
+    // of this object.
+    private int _nIdLastEvent = -1;
+    private final TreeMap<Integer, Long> _mapGaps = new TreeMap<>( );
+    private Timestamp _dateLastEvent;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyResourceModified( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        CommentCacheEvent event = new CommentCacheEvent( );
+        event.setEventType( CommentCacheEvent.EVENT_TYPE_RESOURCE );
+        event.setIdExtendableResource( strIdExtendableResource );
+        event.setExtendableResourceType( strExtendableResourceType );
+        event.setNodeId( _strNodeId );
+        _cacheEventDAO.insert( event, CommentPlugin.getPlugin( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyConfigsModified( )
+    {
+        CommentCacheEvent event = new CommentCacheEvent( );
+        event.setEventType( CommentCacheEvent.EVENT_TYPE_CONFIGS );
+        event.setIdExtendableResource( "" );
+        event.setExtendableResourceType( "" );
+        event.setNodeId( _strNodeId );
+        _cacheEventDAO.insert( event, CommentPlugin.getPlugin( ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String processNotifications( )
+    {
+        Plugin plugin = CommentPlugin.getPlugin( );
+        if ( _nIdLastEvent < 0 )
+        {
+            // Events sent before this node started are useless, as its caches are empty
+            _nIdLastEvent = _cacheEventDAO.findLastEventId( plugin );
+        }
+
+        int nIdEventAfter = _mapGaps.isEmpty( ) ? _nIdLastEvent : ( _mapGaps.firstKey( ) - 1 );
+        List<CommentCacheEvent> listEvents = _cacheEventDAO.findEventsAfter( nIdEventAfter, plugin );
+        long lNow = System.currentTimeMillis( );
+        int nProcessedEvents = 0;
+        for ( CommentCacheEvent event : listEvents )
+        {
+            int nIdEvent = event.getIdEvent( );
+            boolean bNewEvent;
+            if ( nIdEvent > _nIdLastEvent )
+            {
+                // Ids skipped since the last event may belong to transactions that are not committed yet
+                for ( int nIdGap = Math.max( _nIdLastEvent + 1, nIdEvent - MAX_GAPS ); nIdGap < nIdEvent; nIdGap++ )
+                {
+                    _mapGaps.put( nIdGap, lNow );
+                }
+                _nIdLastEvent = nIdEvent;
+                bNewEvent = true;
+            }
+            else
+            {
+                bNewEvent = _mapGaps.remove( nIdEvent ) != null;
+            }
+
+            if ( bNewEvent && !_strNodeId.equals( event.getNodeId( ) ) )
+            {
+                if ( event.getEventType( ) == CommentCacheEvent.EVENT_TYPE_CONFIGS )
+                {
+                    evictConfigs( );
+                }
+                else
+                {
+                    evictResource( event.getIdExtendableResource( ), event.getExtendableResourceType( ) );
+                }
+                nProcessedEvents++;
+            }
+            if ( _dateLastEvent == null || event.getDateEvent( ).after( _dateLastEvent ) )
+            {
+                _dateLastEvent = event.getDateEvent( );
+            }
+        }
+
+        _mapGaps.values( ).removeIf( lDateGap -> lDateGap < lNow - _lGapTimeout );
+        if ( _dateLastEvent != null )
+        {
+            _cacheEventDAO.deleteEventsBefore( new Timestamp( _dateLastEvent.getTime( ) - _lRetention ), plugin );
+        }
+
+        return LOG_PROCESSED_EVENTS + nProcessedEvents;
+    }
+}
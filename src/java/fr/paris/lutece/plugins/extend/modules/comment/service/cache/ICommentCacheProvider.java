@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.cache;
+
+/**
+ * 
+ * Provider of the caches of comments. The provider removes cached data of this node, and notifies the other nodes of a cluster so that they remove them
+ * too. The provider in use is the bean {@link #BEAN_NAME}.
+ * 
+ */
+public interface ICommentCacheProvider
+{
+    /**
+     * Name of the bean of the provider
+     */
+    String BEAN_NAME = "extend-comment.commentCacheProvider";
+
+    /**
+     * Remove cached data of a resource from the caches of this node
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    void evictResource( String strIdExtendableResource, String strExtendableResourceType );
+
+    /**
+     * Remove cached configurations from the caches of this node
+     */
+    void evictConfigs( );
+
+    /**
+     * Notify other nodes that cached data of a resource must be removed. This method should be called in the transaction that modifies comments, so that
+     * the notification is only sent if the modification is committed.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    void notifyResourceModified( String strIdExtendableResource, String strExtendableResourceType );
+
+    /**
+     * Notify other nodes that cached configurations must be removed
+     */
+    void notifyConfigsModified( );
+
+    /**
+     * Apply notifications sent by other nodes. This method is called periodically by a daemon.
+     * 
+     * @return A log of the processing
+     */
+    String processNotifications( );
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.cache;
+
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentCountCacheService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentFragmentCacheService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.config.CommentExtenderConfigCacheService;
+
+/**
+ * 
+ * Provider of the caches of comments for a single node. Data are cached in memory, and no notification is sent to other nodes.
+ * 
+ */
+public class LocalCommentCacheProvider implements ICommentCacheProvider
+{
+    private static final String LOG_NOTHING_TO_PROCESS = "No notification: caches are local to this node";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void evictResource( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        CommentCountCacheService.getInstance( ).invalidate( strIdExtendableResource, strExtendableResourceType );
+        CommentFragmentCacheService.getInstance( ).invalidate( strIdExtendableResource, strExtendableResourceType );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void evictConfigs( )
+    {
+        CommentExtenderConfigCacheService.getInstance( ).invalidate( );
+        CommentFragmentCacheService.getInstance( ).invalidateConfigs( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyResourceModified( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        // Nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void notifyConfigsModified( )
+    {
+        // Nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String processNotifications( )
+    {
+        return LOG_NOTHING_TO_PROCESS;
+    }
+}
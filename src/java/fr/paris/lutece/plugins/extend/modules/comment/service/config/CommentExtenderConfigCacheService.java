@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.config;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+
+/**
+ * 
+ * Cache of comment extender configs. Configs are cached by id of extender and by extendable resource, so that pages displaying comments do not need to
+ * load them from the database. Cached configs are copies, so that callers can not alter them.
+ * 
+ */
+public final class CommentExtenderConfigCacheService extends AbstractCacheableService
+{
+    private static final String CACHE_NAME = "extend-comment.commentExtenderConfigCacheService";
+    private static final String KEY_PREFIX_ID_EXTENDER = "[idExtender:";
+    private static final String KEY_PREFIX_EXTENDER_TYPE = "[extenderType:";
+    private static final String KEY_ID_RESOURCE = "][idResource:";
+    private static final String KEY_RESOURCE_TYPE = "][resourceType:";
+    private static final String KEY_SUFFIX = "]";
+
+    private static CommentExtenderConfigCacheService _singleton = new CommentExtenderConfigCacheService( );
+
+    /**
+     * Private constructor
+     */
+    private CommentExtenderConfigCacheService( )
+    {
+        initCache( );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentExtenderConfigCacheService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName( )
+    {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Get a config from the cache by the id of its extender
+     * 
+     * @param nIdExtender
+     *            The id of the extender
+     * @return A copy of the cached config, or null if the config is not in the cache
+     */
+    public CommentExtenderConfig getConfig( int nIdExtender )
+    {
+        return copy( (CommentExtenderConfig) getFromCache( getKey( nIdExtender ) ) );
+    }
+
+    /**
+     * Put a config in the cache by the id of its extender
+     * 
+     * @param nIdExtender
+     *            The id of the extender
+     * @param config
+     *            The config
+     */
+    public void putConfig( int nIdExtender, CommentExtenderConfig config )
+    {
+        if ( config != null )
+        {
+            putInCache( getKey( nIdExtender ), copy( config ) );
+        }
+    }
+
+    /**
+     * Get a config from the cache by the resource it is associated with
+     * 
+     * @param strExtenderType
+     *            The extender type
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return A copy of the cached config, or null if the config is not in the cache
+     */
+    public CommentExtenderConfig getConfig( String strExtenderType, String strIdExtendableResource, String strExtendableResourceType )
+    {
+        return copy( (CommentExtenderConfig) getFromCache( getKey( strExtenderType, strIdExtendableResource, strExtendableResourceType ) ) );
+    }
+
+    /**
+     * Put a config in the cache by the resource it is associated with
+     * 
+     * @param strExtenderType
+     *            The extender type
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param config
+     *            The config
+     */
+    public void putConfig( String strExtenderType, String strIdExtendableResource, String strExtendableResourceType, CommentExtenderConfig config )
+    {
+        if ( config != null )
+        {
+            putInCache( getKey( strExtenderType, strIdExtendableResource, strExtendableResourceType ), copy( config ) );
+        }
+    }
+
+    /**
+     * Remove every cached config. Resolving the config of a resource may fall back on the config of every resource or on the default config, so a single
+     * modification can change the config of many resources.
+     */
+    public void invalidate( )
+    {
+        if ( isCacheEnable( ) )
+        {
+            resetCache( );
+        }
+    }
+
+    /**
+     * Get the key of a config by the id of its extender
+     * 
+     * @param nIdExtender
+     *            The id of the extender
+     * @return The key
+     */
+    private static String getKey( int nIdExtender )
+    {
+        return KEY_PREFIX_ID_EXTENDER + nIdExtender + KEY_SUFFIX;
+    }
+
+    /**
+     * Get the key of a config by the resource it is associated with
+     * 
+     * @param strExtenderType
+     *            The extender type
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The key
+     */
+    private static String getKey( String strExtenderType, String strIdExtendableResource, String strExtendableResourceType )
+    {
+        return KEY_PREFIX_EXTENDER_TYPE + strExtenderType + KEY_ID_RESOURCE + strIdExtendableResource + KEY_RESOURCE_TYPE + strExtendableResourceType
+                + KEY_SUFFIX;
+    }
+
+    /**
+     * Copy a config
+     * 
+     * @param config
+     *            The config to copy
+     * @return The copy, or null if the config is null
+     */
+    private static CommentExtenderConfig copy( CommentExtenderConfig config )
+    {
+        return ( config != null ) ? new CommentExtenderConfig( config ) : null;
+    }
+}
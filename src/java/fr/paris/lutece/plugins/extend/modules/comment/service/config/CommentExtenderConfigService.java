@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.config;
+
+import fr.paris.lutece.plugins.extend.business.extender.config.IExtenderConfig;
+import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.plugins.extend.service.extender.config.ResourceExtenderConfigService;
+
+/**
+ * 
+ * Config service of the comment extender. Configs are read from the cache of comment extender configs, and the cache is invalidated each time a config is
+ * modified.
+ * 
+ */
+public class CommentExtenderConfigService extends ResourceExtenderConfigService
+{
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void create( IExtenderConfig config )
+    {
+        super.create( config );
+        CommentExtenderConfigCacheService.getInstance( ).invalidate( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update( IExtenderConfig config )
+    {
+        super.update( config );
+        CommentExtenderConfigCacheService.getInstance( ).invalidate( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove( int nIdExtender )
+    {
+        super.remove( nIdExtender );
+        CommentExtenderConfigCacheService.getInstance( ).invalidate( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T find( int nIdExtender )
+    {
+        CommentExtenderConfigCacheService cacheService = CommentExtenderConfigCacheService.getInstance( );
+        CommentExtenderConfig config = cacheService.getConfig( nIdExtender );
+        if ( config == null )
+        {
+            config = super.find( nIdExtender );
+            cacheService.putConfig( nIdExtender, config );
+        }
+
+        return (T) config;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T find( String strExtenderType, String strIdExtendableResource, String strExtendableResourceType )
+    {
+        CommentExtenderConfigCacheService cacheService = CommentExtenderConfigCacheService.getInstance( );
+        CommentExtenderConfig config = cacheService.getConfig( strExtenderType, strIdExtendableResource, strExtendableResourceType );
+        if ( config == null )
+        {
+            config = super.find( strExtenderType, strIdExtendableResource, strExtendableResourceType );
+            cacheService.putConfig( strExtenderType, strIdExtendableResource, strExtendableResourceType, config );
+        }
+
+        return (T) config;
+    }
+}
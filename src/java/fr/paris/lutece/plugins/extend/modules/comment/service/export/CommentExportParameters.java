@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.export;
+
+import java.sql.Timestamp;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
+
+/**
+ * 
+ * Parameters of an export of comments
+ * 
+ */
+public class CommentExportParameters
+{
+    private String _strExtendableResourceType;
+    private CommentFilter _commentFilter = new CommentFilter( );
+    private Timestamp _dateFrom;
+    private Timestamp _dateTo;
+    private String _strFormat = CommentExportService.FORMAT_CSV;
+
+    /**
+     * @return the extendable resource type of the exported comments
+     */
+    public String getExtendableResourceType( )
+    {
+        return _strExtendableResourceType;
+    }
+
+    /**
+     * @param strExtendableResourceType
+     *            the extendable resource type of the exported comments
+     */
+    public void setExtendableResourceType( String strExtendableResourceType )
+    {
+        _strExtendableResourceType = strExtendableResourceType;
+    }
+
+    /**
+     * @return the filter of the exported comments
+     */
+    public CommentFilter getCommentFilter( )
+    {
+        return _commentFilter;
+    }
+
+    /**
+     * @param commentFilter
+     *            the filter of the exported comments
+     */
+    public void setCommentFilter( CommentFilter commentFilter )
+    {
+        _commentFilter = commentFilter;
+    }
+
+    /**
+     * @return the minimum date of creation of the exported comments, or null
+     */
+    public Timestamp getDateFrom( )
+    {
+        return _dateFrom;
+    }
+
+    /**
+     * @param dateFrom
+     *            the minimum date of creation of the exported comments, or null
+     */
+    public void setDateFrom( Timestamp dateFrom )
+    {
+        _dateFrom = dateFrom;
+    }
+
+    /**
+     * @return the date before which exported comments were created, or null
+     */
+    public Timestamp getDateTo( )
+    {
+        return _dateTo;
+    }
+
+    /**
+     * @param dateTo
+     *            the date before which exported comments were created, or null
+     */
+    public void setDateTo( Timestamp dateTo )
+    {
+        _dateTo = dateTo;
+    }
+
+    /**
+     * @return the format of the export
+     */
+    public String getFormat( )
+    {
+        return _strFormat;
+    }
+
+    /**
+     * @param strFormat
+     *            the format of the export
+     */
+    public void setFormat( String strFormat )
+    {
+        _strFormat = strFormat;
+    }
+}
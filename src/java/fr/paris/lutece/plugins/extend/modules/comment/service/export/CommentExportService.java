@@ -0,0 +1,502 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.export;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.ICommentDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentShutdownService;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.business.user.AdminUser;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Service exporting the comments of a resource type in CSV or NDJSON. Comments are read by chunks sorted by id and written to the output as soon as they
+ * are read, so the memory used does not depend on the number of exported comments. Large exports are written to a temporary file by a background thread,
+ * and downloaded once they are over by the administrator who started them. Expired files are deleted by the daemon {@link CommentExportPurgeDaemon}.
+ * 
+ */
+public final class CommentExportService
+{
+    /** The CSV format */
+    public static final String FORMAT_CSV = "csv";
+
+    /** The NDJSON format */
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    /** The exported columns */
+    static final String [ ] COLUMNS = {
+            "id_comment", "id_resource", "resource_type", "id_parent_comment", "date_comment", "date_last_modif", "name", "email", "lutece_user_name",
+            "ip_address", "is_published", "is_important", "is_pinned", "is_admin_comment", "comment"
+    };
+
+    private static final String PROPERTY_CHUNK_SIZE = "module.extend.comment.export.chunkSize";
+    private static final String PROPERTY_ASYNCHRONOUS_THRESHOLD = "module.extend.comment.export.asynchronousThreshold";
+    private static final String PROPERTY_CSV_SEPARATOR = "module.extend.comment.export.csv.separator";
+    private static final String PROPERTY_JOB_RETENTION = "module.extend.comment.export.jobRetention";
+    private static final String THREAD_NAME = "extend-comment-export";
+    private static final String TEMP_FILE_PREFIX = "extend-comment-export-";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String LOG_REMOVED_EXPORTS = "Removed exports : ";
+
+    private static CommentExportService _singleton = new CommentExportService( );
+
+    private final int _nChunkSize;
+    private final int _nAsynchronousThreshold;
+    private final char _cCsvSeparator;
+    private final long _lJobRetention;
+    private final ExecutorService _executor;
+    private final Map<String, ExportJob> _mapJobs = new ConcurrentHashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private CommentExportService( )
+    {
+        _nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, 500 ) );
+        _nAsynchronousThreshold = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_ASYNCHRONOUS_THRESHOLD, 50000 ) );
+        _cCsvSeparator = StringUtils.defaultIfEmpty( AppPropertiesService.getProperty( PROPERTY_CSV_SEPARATOR ), ";" ).charAt( 0 );
+        _lJobRetention = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_JOB_RETENTION, 3600000 ) );
+        // Exports are run one at a time, so that several large exports do not hold several connections for a long time
+        _executor = Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentExportService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Stop the background thread and delete the files of every export. Exports that are not over within the shutdown delay are interrupted.
+     */
+    public void shutdown( )
+    {
+        CommentShutdownService.shutdown( _executor );
+        removeJobs( job -> true );
+    }
+
+    /**
+     * Check if a format is supported
+     * 
+     * @param strFormat
+     *            The format
+     * @return true if the format is supported, false otherwise
+     */
+    public static boolean isFormatSupported( String strFormat )
+    {
+        return FORMAT_CSV.equals( strFormat ) || FORMAT_NDJSON.equals( strFormat );
+    }
+
+    /**
+     * Get the content type of a format
+     * 
+     * @param strFormat
+     *            The format
+     * @return The content type
+     */
+    public static String getContentType( String strFormat )
+    {
+        return FORMAT_NDJSON.equals( strFormat ) ? "application/x-ndjson" : "text/csv";
+    }
+
+    /**
+     * Check if an export must be run in the background. The estimation relies on the number of comments of the resource type, whatever the filters.
+     * 
+     * @param parameters
+     *            The parameters of the export
+     * @return true if the export must be run in the background
+     */
+    public boolean isAsynchronous( CommentExportParameters parameters )
+    {
+        return getCommentDAO( ).getCommentNb( CommentConstants.CONSTANT_ALL_RESSOURCE_ID, parameters.getExtendableResourceType( ), false, false,
+                CommentPlugin.getPlugin( ) ) > _nAsynchronousThreshold;
+    }
+
+    /**
+     * Export comments to an output stream. The stream is flushed after each chunk but not closed.
+     * 
+     * @param parameters
+     *            The parameters of the export
+     * @param outputStream
+     *            The output stream
+     * @return The number of exported comments
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    public long export( CommentExportParameters parameters, OutputStream outputStream ) throws IOException
+    {
+        return export( parameters, outputStream, new AtomicLong( ) );
+    }
+
+    /**
+     * Start an export in the background. The export is written to a temporary file, available through {@link #getExportJob( String, AdminUser )} once it
+     * is over.
+     * 
+     * @param parameters
+     *            The parameters of the export
+     * @param user
+     *            The administrator starting the export
+     * @return The job of the export
+     * @throws IOException
+     *             if the temporary file can not be created
+     */
+    public ExportJob startExport( CommentExportParameters parameters, AdminUser user ) throws IOException
+    {
+        removeExpiredJobs( );
+
+        File file = File.createTempFile( TEMP_FILE_PREFIX, "." + parameters.getFormat( ) );
+        ExportJob job = new ExportJob( UUID.randomUUID( ).toString( ), parameters, file, user.getUserId( ) );
+        _mapJobs.put( job.getId( ), job );
+        _executor.execute( ( ) -> run( job ) );
+
+        return job;
+    }
+
+    /**
+     * Get an export run in the background by an administrator
+     * 
+     * @param strIdJob
+     *            The id of the job
+     * @param user
+     *            The administrator
+     * @return The job, or null if no job has this id, if it expired or if it was started by another administrator
+     */
+    public ExportJob getExportJob( String strIdJob, AdminUser user )
+    {
+        removeExpiredJobs( );
+
+        ExportJob job = ( strIdJob != null ) ? _mapJobs.get( strIdJob ) : null;
+        return ( job != null && user != null && job.getIdAdminUser( ) == user.getUserId( ) ) ? job : null;
+    }
+
+    /**
+     * Get the exports run in the background by an administrator that did not expire
+     * 
+     * @param user
+     *            The administrator
+     * @return The jobs
+     */
+    public List<ExportJob> getExportJobs( AdminUser user )
+    {
+        removeExpiredJobs( );
+
+        return Collections.unmodifiableList(
+                _mapJobs.values( ).stream( ).filter( job -> job.getIdAdminUser( ) == user.getUserId( ) ).collect( Collectors.toList( ) ) );
+    }
+
+    /**
+     * Remove the exports over for longer than the retention, with their file. This method is called by the daemon.
+     * 
+     * @return A log of the removal
+     */
+    public String purge( )
+    {
+        return LOG_REMOVED_EXPORTS + removeExpiredJobs( );
+    }
+
+    /**
+     * Get the exported values of a comment, in the order of the columns
+     * 
+     * @param comment
+     *            The comment
+     * @return The values
+     */
+    static Object [ ] getValues( Comment comment )
+    {
+        return new Object [ ] {
+                comment.getIdComment( ), comment.getIdExtendableResource( ), comment.getExtendableResourceType( ), comment.getIdParentComment( ),
+                comment.getDateComment( ), comment.getDateLastModif( ), comment.getName( ), comment.getEmail( ), comment.getLuteceUserName( ),
+                comment.getIpAddress( ), comment.isPublished( ), comment.getIsImportant( ), comment.isPinned( ), comment.getIsAdminComment( ),
+                comment.getComment( )
+        };
+    }
+
+    /**
+     * Format an exported date
+     * 
+     * @param date
+     *            The date
+     * @return The formatted date
+     */
+    static String formatDate( Timestamp date )
+    {
+        return DATE_FORMATTER.format( date.toLocalDateTime( ) );
+    }
+
+    /**
+     * Export comments to an output stream, chunk by chunk
+     * 
+     * @param parameters
+     *            The parameters of the export
+     * @param outputStream
+     *            The output stream
+     * @param lNbExported
+     *            The counter of exported comments
+     * @return The number of exported comments
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    private long export( CommentExportParameters parameters, OutputStream outputStream, AtomicLong lNbExported ) throws IOException
+    {
+        Writer writer = new BufferedWriter( new OutputStreamWriter( outputStream, StandardCharsets.UTF_8 ) );
+        ICommentExportWriter exportWriter = FORMAT_NDJSON.equals( parameters.getFormat( ) ) ? new NdjsonCommentExportWriter( writer )
+                : new CsvCommentExportWriter( writer, _cCsvSeparator );
+        ICommentDAO commentDAO = getCommentDAO( );
+
+        exportWriter.writeHeader( );
+        int nIdLastComment = 0;
+        List<Comment> listComments;
+        do
+        {
+            listComments = commentDAO.findForExport( parameters.getExtendableResourceType( ), parameters.getCommentFilter( ), parameters.getDateFrom( ),
+                    parameters.getDateTo( ), nIdLastComment, _nChunkSize, CommentPlugin.getPlugin( ) );
+            for ( Comment comment : listComments )
+            {
+                exportWriter.write( comment );
+                nIdLastComment = comment.getIdComment( );
+            }
+            exportWriter.flush( );
+            lNbExported.addAndGet( listComments.size( ) );
+        }
+        while ( listComments.size( ) == _nChunkSize );
+
+        return lNbExported.get( );
+    }
+
+    /**
+     * Run an export in the background
+     * 
+     * @param job
+     *            The job of the export
+     */
+    private void run( ExportJob job )
+    {
+        try ( OutputStream outputStream = Files.newOutputStream( job.getFile( ).toPath( ) ) )
+        {
+            export( job.getParameters( ), outputStream, job._lNbExported );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( "Unable to export the comments of the resource type " + job.getParameters( ).getExtendableResourceType( ), e );
+            job._bFailed = true;
+        }
+        finally
+        {
+            job._bDone = true;
+        }
+    }
+
+    /**
+     * Remove the jobs over for longer than the retention, with their file
+     * 
+     * @return The number of removed jobs
+     */
+    private int removeExpiredJobs( )
+    {
+        long lDateExpiration = System.currentTimeMillis( ) - _lJobRetention;
+        return removeJobs( job -> job.isDone( ) && job.getDateCreation( ) < lDateExpiration );
+    }
+
+    /**
+     * Remove jobs, with their file
+     * 
+     * @param filter
+     *            The filter of the jobs to remove
+     * @return The number of removed jobs
+     */
+    private int removeJobs( Predicate<ExportJob> filter )
+    {
+        int nRemoved = 0;
+        for ( ExportJob job : _mapJobs.values( ) )
+        {
+            if ( filter.test( job ) && _mapJobs.remove( job.getId( ), job ) )
+            {
+                try
+                {
+                    Files.deleteIfExists( job.getFile( ).toPath( ) );
+                }
+                catch( IOException e )
+                {
+                    AppLogService.error( "Unable to delete the export file " + job.getFile( ), e );
+                }
+                nRemoved++;
+            }
+        }
+        return nRemoved;
+    }
+
+    /**
+     * Get the comment DAO
+     * 
+     * @return The comment DAO
+     */
+    private static ICommentDAO getCommentDAO( )
+    {
+        return SpringContextService.getBean( CommentConstants.BEAN_COMMENT_DAO );
+    }
+
+    /**
+     * Export run in the background, with its progress
+     */
+    public static final class ExportJob
+    {
+        private final String _strId;
+        private final CommentExportParameters _parameters;
+        private final File _file;
+        private final int _nIdAdminUser;
+        private final long _lDateCreation = System.currentTimeMillis( );
+        private final AtomicLong _lNbExported = new AtomicLong( );
+        private volatile boolean _bDone;
+        private volatile boolean _bFailed;
+
+        /**
+         * Constructor
+         * 
+         * @param strId
+         *            The id of the job
+         * @param parameters
+         *            The parameters of the export
+         * @param file
+         *            The file of the export
+         * @param nIdAdminUser
+         *            The id of the administrator who started the export
+         */
+        private ExportJob( String strId, CommentExportParameters parameters, File file, int nIdAdminUser )
+        {
+            _strId = strId;
+            _parameters = parameters;
+            _file = file;
+            _nIdAdminUser = nIdAdminUser;
+        }
+
+        /**
+         * @return the id of the job
+         */
+        public String getId( )
+        {
+            return _strId;
+        }
+
+        /**
+         * @return the parameters of the export
+         */
+        public CommentExportParameters getParameters( )
+        {
+            return _parameters;
+        }
+
+        /**
+         * @return the file of the export
+         */
+        public File getFile( )
+        {
+            return _file;
+        }
+
+        /**
+         * @return the id of the administrator who started the export
+         */
+        public int getIdAdminUser( )
+        {
+            return _nIdAdminUser;
+        }
+
+        /**
+         * @return the date of creation of the job, in milliseconds
+         */
+        public long getDateCreation( )
+        {
+            return _lDateCreation;
+        }
+
+        /**
+         * @return the number of comments exported so far
+         */
+        public long getExportedCount( )
+        {
+            return _lNbExported.get( );
+        }
+
+        /**
+         * @return true if the export is over
+         */
+        public boolean isDone( )
+        {
+            return _bDone;
+        }
+
+        /**
+         * @return true if the export failed
+         */
+        public boolean isFailed( )
+        {
+            return _bFailed;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+
+/**
+ * 
+ * Writer of exported comments in CSV. Values are quoted when they contain the separator, a quote or a line break. Text values that a spreadsheet would
+ * evaluate as a formula are prefixed with a quote.
+ * 
+ */
+public class CsvCommentExportWriter implements ICommentExportWriter
+{
+    private static final String CONSTANT_QUOTE = "\"";
+    private static final String CONSTANT_DOUBLE_QUOTE = "\"\"";
+    private static final String CONSTANT_LINE_BREAK = "\r\n";
+    private static final String CONSTANT_FORMULA_PREFIX = "'";
+    private static final String FORMULA_FIRST_CHARACTERS = "=+-@\t\r";
+
+    private final Writer _writer;
+    private final char _cSeparator;
+
+    /**
+     * Constructor
+     * 
+     * @param writer
+     *            The writer of the export
+     * @param cSeparator
+     *            The separator of values
+     */
+    public CsvCommentExportWriter( Writer writer, char cSeparator )
+    {
+        _writer = writer;
+        _cSeparator = cSeparator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeHeader( ) throws IOException
+    {
+        writeLine( (Object [ ]) CommentExportService.COLUMNS );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( Comment comment ) throws IOException
+    {
+        writeLine( CommentExportService.getValues( comment ) );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush( ) throws IOException
+    {
+        _writer.flush( );
+    }
+
+    /**
+     * Write a line of values
+     * 
+     * @param values
+     *            The values of the line
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    private void writeLine( Object... values ) throws IOException
+    {
+        for ( int i = 0; i < values.length; i++ )
+        {
+            if ( i > 0 )
+            {
+                _writer.write( _cSeparator );
+            }
+            _writer.write( escape( values [i] ) );
+        }
+        _writer.write( CONSTANT_LINE_BREAK );
+    }
+
+    /**
+     * Escape a value
+     * 
+     * @param value
+     *            The value
+     * @return The escaped value
+     */
+    private String escape( Object value )
+    {
+        if ( value == null )
+        {
+            return StringUtils.EMPTY;
+        }
+
+        String strValue = ( value instanceof Timestamp ) ? CommentExportService.formatDate( (Timestamp) value ) : value.toString( );
+        if ( value instanceof String && !strValue.isEmpty( ) && FORMULA_FIRST_CHARACTERS.indexOf( strValue.charAt( 0 ) ) >= 0 )
+        {
+            strValue = CONSTANT_FORMULA_PREFIX + strValue;
+        }
+        if ( strValue.indexOf( _cSeparator ) >= 0 || StringUtils.containsAny( strValue, '"', '\r', '\n' ) )
+        {
+            return CONSTANT_QUOTE + StringUtils.replace( strValue, CONSTANT_QUOTE, CONSTANT_DOUBLE_QUOTE ) + CONSTANT_QUOTE;
+        }
+        return strValue;
+    }
+}
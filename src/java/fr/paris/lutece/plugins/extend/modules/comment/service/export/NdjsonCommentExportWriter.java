@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.export;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+
+/**
+ * 
+ * Writer of exported comments in NDJSON : each comment is written as a JSON object on its own line.
+ * 
+ */
+public class NdjsonCommentExportWriter implements ICommentExportWriter
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory( ).disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+    private static final char CONSTANT_LINE_BREAK = '\n';
+
+    private final JsonGenerator _generator;
+
+    /**
+     * Constructor
+     * 
+     * @param writer
+     *            The writer of the export
+     * @throws IOException
+     *             if the generator can not be created
+     */
+    public NdjsonCommentExportWriter( Writer writer ) throws IOException
+    {
+        _generator = JSON_FACTORY.createGenerator( writer );
+        // Lines are separated explicitly, so that the last line also ends with a line break
+        _generator.setRootValueSeparator( null );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeHeader( ) throws IOException
+    {
+        // NDJSON has no header, every line is self-describing
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write( Comment comment ) throws IOException
+    {
+        Object [ ] values = CommentExportService.getValues( comment );
+        _generator.writeStartObject( );
+        for ( int i = 0; i < values.length; i++ )
+        {
+            _generator.writeFieldName( CommentExportService.COLUMNS [i] );
+            writeValue( values [i] );
+        }
+        _generator.writeEndObject( );
+        _generator.writeRaw( CONSTANT_LINE_BREAK );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush( ) throws IOException
+    {
+        _generator.flush( );
+    }
+
+    /**
+     * Write a value with its JSON type
+     * 
+     * @param value
+     *            The value
+     * @throws IOException
+     *             if an error occurs while writing
+     */
+    private void writeValue( Object value ) throws IOException
+    {
+        if ( value == null )
+        {
+            _generator.writeNull( );
+        }
+        else
+            if ( value instanceof Integer )
+            {
+                _generator.writeNumber( (Integer) value );
+            }
+            else
+                if ( value instanceof Boolean )
+                {
+                    _generator.writeBoolean( (Boolean) value );
+                }
+                else
+                    if ( value instanceof Timestamp )
+                    {
+                        _generator.writeString( CommentExportService.formatDate( (Timestamp) value ) );
+                    }
+                    else
+                    {
+                        _generator.writeString( value.toString( ) );
+                    }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.live;
+
+/**
+ * 
+ * Event sent to the subscribers of a resource when a comment is published, unpublished or removed
+ * 
+ */
+public final class CommentLiveEvent
+{
+    /** Name of the event sent when a comment is published */
+    public static final String EVENT_PUBLISHED = "published";
+
+    /** Name of the event sent when a comment is unpublished */
+    public static final String EVENT_UNPUBLISHED = "unpublished";
+
+    /** Name of the event sent when a comment is removed */
+    public static final String EVENT_REMOVED = "removed";
+
+    private final long _lIdEvent;
+    private final String _strName;
+    private final int _nIdComment;
+    private final int _nIdParentComment;
+
+    /**
+     * Constructor
+     * 
+     * @param lIdEvent
+     *            The id of the event
+     * @param strName
+     *            The name of the event
+     * @param nIdComment
+     *            The id of the comment
+     * @param nIdParentComment
+     *            The id of the parent of the comment, or 0
+     */
+    public CommentLiveEvent( long lIdEvent, String strName, int nIdComment, int nIdParentComment )
+    {
+        _lIdEvent = lIdEvent;
+        _strName = strName;
+        _nIdComment = nIdComment;
+        _nIdParentComment = nIdParentComment;
+    }
+
+    /**
+     * Get the id of the event. Ids increase with time.
+     * 
+     * @return The id of the event
+     */
+    public long getIdEvent( )
+    {
+        return _lIdEvent;
+    }
+
+    /**
+     * Get the name of the event
+     * 
+     * @return The name of the event
+     */
+    public String getName( )
+    {
+        return _strName;
+    }
+
+    /**
+     * Get the id of the comment
+     * 
+     * @return The id of the comment
+     */
+    public int getIdComment( )
+    {
+        return _nIdComment;
+    }
+
+    /**
+     * Get the id of the parent of the comment
+     * 
+     * @return The id of the parent of the comment, or 0
+     */
+    public int getIdParentComment( )
+    {
+        return _nIdParentComment;
+    }
+
+    /**
+     * Get the event in the Server-Sent Events format
+     * 
+     * @return The message to send
+     */
+    public String toMessage( )
+    {
+        return "id: " + _lIdEvent + "\nevent: " + _strName + "\ndata: {\"idComment\":" + _nIdComment + ",\"idParentComment\":" + _nIdParentComment
+                + "}\n\n";
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.live;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentShutdownService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Service pushing the publication, the unpublication and the removal of comments to the clients displaying the comments of a resource, with Server-Sent
+ * Events. Subscribers hold asynchronous requests, so that idle connections do not use any thread. Events are sent once the transactions modifying
+ * comments are committed, by a small pool of background threads, and a heartbeat keeps connections open through proxies. Each node only sends the events
+ * of the modifications made on this node.
+ * 
+ */
+public final class CommentLiveService
+{
+    private static final String PROPERTY_ENABLED = "module.extend.comment.live.enabled";
+    private static final String PROPERTY_MAX_SUBSCRIBERS = "module.extend.comment.live.maxSubscribers";
+    private static final String PROPERTY_THREAD_POOL_SIZE = "module.extend.comment.live.threadPoolSize";
+    private static final String PROPERTY_HEARTBEAT_INTERVAL = "module.extend.comment.live.heartbeatInterval";
+    private static final String PROPERTY_CONNECTION_TIMEOUT = "module.extend.comment.live.connectionTimeout";
+    private static final String PROPERTY_RECONNECTION_DELAY = "module.extend.comment.live.reconnectionDelay";
+    private static final String PROPERTY_HISTORY_SIZE = "module.extend.comment.live.historySize";
+    private static final String THREAD_NAME = "extend-comment-live";
+    private static final String MESSAGE_HEARTBEAT = ": heartbeat\n\n";
+    private static final String MESSAGE_RETRY = "retry: ";
+    private static final String MESSAGE_ID = "\nid: ";
+    private static final String MESSAGE_END = "\n\n";
+    private static final String KEY_SEPARATOR = ":";
+
+    private static CommentLiveService _singleton = new CommentLiveService( );
+
+    private final boolean _bEnabled;
+    private final int _nMaxSubscribers;
+    private final long _lHeartbeatInterval;
+    private final long _lConnectionTimeout;
+    private final int _nReconnectionDelay;
+    private final int _nHistorySize;
+    private final ScheduledExecutorService _executor;
+    private final ConcurrentMap<String, LiveChannel> _mapChannels = new ConcurrentHashMap<>( );
+    private final AtomicInteger _nNbSubscribers = new AtomicInteger( );
+    private final AtomicBoolean _bHeartbeatStarted = new AtomicBoolean( );
+    // Ids of events start from the current date, so that they keep increasing when the webapp restarts
+    private final AtomicLong _lLastIdEvent = new AtomicLong( System.currentTimeMillis( ) );
+
+    /**
+     * Private constructor
+     */
+    private CommentLiveService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _nMaxSubscribers = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_MAX_SUBSCRIBERS, 10000 ) );
+        _lHeartbeatInterval = TimeUnit.SECONDS.toMillis( Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_HEARTBEAT_INTERVAL, 20 ) ) );
+        _lConnectionTimeout = TimeUnit.SECONDS.toMillis( Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_CONNECTION_TIMEOUT, 1800 ) ) );
+        _nReconnectionDelay = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_RECONNECTION_DELAY, 5000 ) );
+        _nHistorySize = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_HISTORY_SIZE, 50 ) );
+        int nThreadPoolSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREAD_POOL_SIZE, 2 ) );
+        _executor = Executors.newScheduledThreadPool( nThreadPoolSize, runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentLiveService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Close the connections of every subscriber and stop the background threads
+     */
+    public void shutdown( )
+    {
+        for ( LiveChannel channel : _mapChannels.values( ) )
+        {
+            _nNbSubscribers.addAndGet( -channel.closeSubscribers( ) );
+        }
+        CommentShutdownService.shutdown( _executor );
+    }
+
+    /**
+     * Check if live updates are enabled
+     * 
+     * @return true if live updates are enabled
+     */
+    public boolean isEnabled( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Get the duration after which a connection is closed, so that the client reconnects
+     * 
+     * @return The duration in milliseconds, or 0 for no limit
+     */
+    public long getConnectionTimeout( )
+    {
+        return _lConnectionTimeout;
+    }
+
+    /**
+     * Get the id of the last event sent
+     * 
+     * @return The id of the last event
+     */
+    public long getLastIdEvent( )
+    {
+        return _lLastIdEvent.get( );
+    }
+
+    /**
+     * Get the first message sent to clients, giving the delay before reconnecting and the id of the last event, so that clients receive the events they
+     * missed when they reconnect
+     * 
+     * @param lLastIdEvent
+     *            The id of the last event received by the client
+     * @return The message, in the Server-Sent Events format
+     */
+    public String getReconnectionMessage( long lLastIdEvent )
+    {
+        return MESSAGE_RETRY + _nReconnectionDelay + MESSAGE_ID + lLastIdEvent + MESSAGE_END;
+    }
+
+    /**
+     * Subscribe to the events of a resource. The recent events following the last event received by the client are sent first.
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param asyncContext
+     *            The context of the asynchronous request of the client
+     * @param lLastIdEvent
+     *            The id of the last event received by the client
+     * @return The subscriber, or null if the maximum number of subscribers is reached
+     */
+    public CommentLiveSubscriber subscribe( String strIdExtendableResource, String strExtendableResourceType, AsyncContext asyncContext, long lLastIdEvent )
+    {
+        if ( _nNbSubscribers.incrementAndGet( ) > _nMaxSubscribers )
+        {
+            _nNbSubscribers.decrementAndGet( );
+            return null;
+        }
+        startHeartbeat( );
+
+        CommentLiveSubscriber subscriber = new CommentLiveSubscriber( asyncContext );
+        subscriber.send( getReconnectionMessage( lLastIdEvent ) );
+        String strKey = getKey( strIdExtendableResource, strExtendableResourceType );
+        LiveChannel channel = getChannel( strKey );
+        while ( !channel.subscribe( subscriber, lLastIdEvent ) )
+        {
+            // The channel has been closed in the meantime
+            _mapChannels.remove( strKey, channel );
+            channel = getChannel( strKey );
+        }
+
+        return subscriber;
+    }
+
+    /**
+     * Unsubscribe from the events of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param subscriber
+     *            The subscriber
+     */
+    public void unsubscribe( String strIdExtendableResource, String strExtendableResourceType, CommentLiveSubscriber subscriber )
+    {
+        LiveChannel channel = _mapChannels.get( getKey( strIdExtendableResource, strExtendableResourceType ) );
+        if ( channel != null && channel.unsubscribe( subscriber ) )
+        {
+            _nNbSubscribers.decrementAndGet( );
+        }
+        subscriber.close( );
+    }
+
+    /**
+     * Get the recent events of a resource following the last event received by a client, for clients that can not hold a connection open and poll the
+     * events instead
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param lLastIdEvent
+     *            The id of the last event received by the client
+     * @return The events following the last event received by the client
+     */
+    public List<CommentLiveEvent> poll( String strIdExtendableResource, String strExtendableResourceType, long lLastIdEvent )
+    {
+        startHeartbeat( );
+
+        String strKey = getKey( strIdExtendableResource, strExtendableResourceType );
+        LiveChannel channel = getChannel( strKey );
+        List<CommentLiveEvent> listEvents;
+        while ( ( listEvents = channel.poll( lLastIdEvent ) ) == null )
+        {
+            // The channel has been closed in the meantime
+            _mapChannels.remove( strKey, channel );
+            channel = getChannel( strKey );
+        }
+
+        return listEvents;
+    }
+
+    /**
+     * Send the creation of a comment once the current transaction is committed, if the comment is published
+     * 
+     * @param comment
+     *            The created comment
+     */
+    public void commentCreated( Comment comment )
+    {
+        if ( comment.isPublished( ) )
+        {
+            publishAfterCommit( CommentLiveEvent.EVENT_PUBLISHED, Collections.singletonList( comment ) );
+        }
+    }
+
+    /**
+     * Send the publication or the unpublication of comments once the current transaction is committed
+     * 
+     * @param listComments
+     *            The comments whose status changed
+     * @param bPublished
+     *            The new status of the comments
+     */
+    public void publicationChanged( Collection<Comment> listComments, boolean bPublished )
+    {
+        publishAfterCommit( bPublished ? CommentLiveEvent.EVENT_PUBLISHED : CommentLiveEvent.EVENT_UNPUBLISHED, listComments );
+    }
+
+    /**
+     * Send the removal of comments once the current transaction is committed. Only published comments are sent, since the others are not displayed.
+     * 
+     * @param listComments
+     *            The removed comments
+     */
+    public void commentsRemoved( Collection<Comment> listComments )
+    {
+        List<Comment> listPublishedComments = new ArrayList<>( );
+        for ( Comment comment : listComments )
+        {
+            if ( comment.isPublished( ) )
+            {
+                listPublishedComments.add( comment );
+            }
+        }
+        publishAfterCommit( CommentLiveEvent.EVENT_REMOVED, listPublishedComments );
+    }
+
+    /**
+     * Send events once the current transaction is committed, or immediately if there is no transaction. Events of resources without any subscriber are
+     * dropped.
+     * 
+     * @param strName
+     *            The name of the events
+     * @param listComments
+     *            The comments
+     */
+    private void publishAfterCommit( String strName, Collection<Comment> listComments )
+    {
+        if ( !_bEnabled || listComments.isEmpty( ) || _mapChannels.isEmpty( ) )
+        {
+            return;
+        }
+
+        Map<String, List<Comment>> mapComments = new HashMap<>( );
+        for ( Comment comment : listComments )
+        {
+            String strKey = getKey( comment.getIdExtendableResource( ), comment.getExtendableResourceType( ) );
+            if ( _mapChannels.containsKey( strKey ) )
+            {
+                mapComments.computeIfAbsent( strKey, key -> new ArrayList<>( ) ).add( comment );
+            }
+        }
+        if ( mapComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        Runnable publication = ( ) -> _executor.execute( ( ) -> publish( strName, mapComments ) );
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    publication.run( );
+                }
+            } );
+        }
+        else
+        {
+            publication.run( );
+        }
+    }
+
+    /**
+     * Send events to the subscribers of their resources
+     * 
+     * @param strName
+     *            The name of the events
+     * @param mapComments
+     *            The comments, by resource
+     */
+    private void publish( String strName, Map<String, List<Comment>> mapComments )
+    {
+        for ( Map.Entry<String, List<Comment>> entry : mapComments.entrySet( ) )
+        {
+            LiveChannel channel = _mapChannels.get( entry.getKey( ) );
+            if ( channel != null )
+            {
+                for ( Comment comment : entry.getValue( ) )
+                {
+                    int nNbRemovedSubscribers = channel.publish( strName, comment.getIdComment( ), comment.getIdParentComment( ),
+                            _lLastIdEvent::incrementAndGet );
+                    _nNbSubscribers.addAndGet( -nNbRemovedSubscribers );
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the channel of a resource, creating it if needed
+     * 
+     * @param strKey
+     *            The key of the channel
+     * @return The channel
+     */
+    private LiveChannel getChannel( String strKey )
+    {
+        return _mapChannels.computeIfAbsent( strKey, key -> new LiveChannel( _nHistorySize ) );
+    }
+
+    /**
+     * Start the heartbeat when the service is used for the first time
+     */
+    private void startHeartbeat( )
+    {
+        if ( _bHeartbeatStarted.compareAndSet( false, true ) )
+        {
+            _executor.scheduleWithFixedDelay( this::heartbeat, _lHeartbeatInterval, _lHeartbeatInterval, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Send a heartbeat to every subscriber, so that connections are not closed by proxies and closed connections are detected, and remove channels that
+     * have not been used for a while
+     */
+    private void heartbeat( )
+    {
+        try
+        {
+            // Channels are kept for a few reconnection delays, so that reconnecting clients receive the events they missed
+            long lDateLimit = System.currentTimeMillis( ) - Math.max( _lHeartbeatInterval, 3L * _nReconnectionDelay );
+            for ( Map.Entry<String, LiveChannel> entry : _mapChannels.entrySet( ) )
+            {
+                LiveChannel channel = entry.getValue( );
+                _nNbSubscribers.addAndGet( -channel.send( MESSAGE_HEARTBEAT ) );
+                if ( channel.closeIfIdle( lDateLimit ) )
+                {
+                    _mapChannels.remove( entry.getKey( ), channel );
+                }
+            }
+        }
+        catch( Exception e )
+        {
+            // An exception would cancel the next heartbeats
+            AppLogService.error( "Unable to send the heartbeat of live comments", e );
+        }
+    }
+
+    /**
+     * Get the key of the channel of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return The key of the channel
+     */
+    private static String getKey( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        return strExtendableResourceType + KEY_SEPARATOR + strIdExtendableResource;
+    }
+}
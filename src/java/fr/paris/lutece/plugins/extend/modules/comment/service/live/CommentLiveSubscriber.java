@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.live;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+
+/**
+ * 
+ * Subscriber of the events of a resource, holding an asynchronous request. No thread is used while the subscriber waits for events.
+ * 
+ */
+public final class CommentLiveSubscriber
+{
+    private final AsyncContext _asyncContext;
+    private boolean _bClosed;
+
+    /**
+     * Constructor
+     * 
+     * @param asyncContext
+     *            The context of the asynchronous request
+     */
+    public CommentLiveSubscriber( AsyncContext asyncContext )
+    {
+        _asyncContext = asyncContext;
+    }
+
+    /**
+     * Send a message to the subscriber. Messages of different threads are not interleaved.
+     * 
+     * @param strMessage
+     *            The message, in the Server-Sent Events format
+     * @return false if the connection is closed
+     */
+    public synchronized boolean send( String strMessage )
+    {
+        if ( _bClosed )
+        {
+            return false;
+        }
+
+        try
+        {
+            OutputStream out = _asyncContext.getResponse( ).getOutputStream( );
+            out.write( strMessage.getBytes( StandardCharsets.UTF_8 ) );
+            out.flush( );
+
+            return true;
+        }
+        catch( IOException | IllegalStateException e )
+        {
+            // The client is gone or the request has already completed
+            _bClosed = true;
+
+            return false;
+        }
+    }
+
+    /**
+     * Complete the request of the subscriber
+     */
+    public synchronized void close( )
+    {
+        if ( !_bClosed )
+        {
+            _bClosed = true;
+            try
+            {
+                _asyncContext.complete( );
+            }
+            catch( IllegalStateException e )
+            {
+                // The request has already completed
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.live;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 
+ * Subscribers and recent events of a resource. The recent events are sent again to clients reconnecting with the id of the last event they received.
+ * 
+ */
+final class LiveChannel
+{
+    private final Set<CommentLiveSubscriber> _setSubscribers = ConcurrentHashMap.newKeySet( );
+    private final Deque<CommentLiveEvent> _queueEvents = new ArrayDeque<>( );
+    private final int _nHistorySize;
+    private long _lLastActivity = System.currentTimeMillis( );
+    private boolean _bClosed;
+
+    /**
+     * Constructor
+     * 
+     * @param nHistorySize
+     *            The number of recent events to keep
+     */
+    LiveChannel( int nHistorySize )
+    {
+        _nHistorySize = nHistorySize;
+    }
+
+    /**
+     * Add a subscriber, and send it the events following the last one it received
+     * 
+     * @param subscriber
+     *            The subscriber
+     * @param lLastIdEvent
+     *            The id of the last event received by the subscriber
+     * @return false if the channel is closed and a new one must be used
+     */
+    synchronized boolean subscribe( CommentLiveSubscriber subscriber, long lLastIdEvent )
+    {
+        if ( _bClosed )
+        {
+            return false;
+        }
+
+        _lLastActivity = System.currentTimeMillis( );
+        for ( CommentLiveEvent event : getEventsAfter( lLastIdEvent ) )
+        {
+            subscriber.send( event.toMessage( ) );
+        }
+        _setSubscribers.add( subscriber );
+
+        return true;
+    }
+
+    /**
+     * Remove a subscriber
+     * 
+     * @param subscriber
+     *            The subscriber
+     * @return true if the subscriber was subscribed to the channel
+     */
+    boolean unsubscribe( CommentLiveSubscriber subscriber )
+    {
+        return _setSubscribers.remove( subscriber );
+    }
+
+    /**
+     * Get the recent events following a given event, and keep the channel open
+     * 
+     * @param lLastIdEvent
+     *            The id of the last event received
+     * @return The events following the given event, or null if the channel is closed and a new one must be used
+     */
+    synchronized List<CommentLiveEvent> poll( long lLastIdEvent )
+    {
+        if ( _bClosed )
+        {
+            return null;
+        }
+
+        _lLastActivity = System.currentTimeMillis( );
+
+        return getEventsAfter( lLastIdEvent );
+    }
+
+    /**
+     * Create an event, keep it and send it to every subscriber. Ids are given under the lock of the channel, so that the events of a channel are sent in
+     * the order of their ids. Subscribers whose connection is closed are removed.
+     * 
+     * @param strName
+     *            The name of the event
+     * @param nIdComment
+     *            The id of the comment
+     * @param nIdParentComment
+     *            The id of the parent of the comment, or 0
+     * @param idEventSupplier
+     *            The supplier of the id of the event
+     * @return The number of removed subscribers
+     */
+    synchronized int publish( String strName, int nIdComment, int nIdParentComment, LongSupplier idEventSupplier )
+    {
+        CommentLiveEvent event = new CommentLiveEvent( idEventSupplier.getAsLong( ), strName, nIdComment, nIdParentComment );
+        _queueEvents.addLast( event );
+        if ( _queueEvents.size( ) > _nHistorySize )
+        {
+            _queueEvents.removeFirst( );
+        }
+
+        return send( event.toMessage( ) );
+    }
+
+    /**
+     * Send a message to every subscriber. Subscribers whose connection is closed are removed.
+     * 
+     * @param strMessage
+     *            The message
+     * @return The number of removed subscribers
+     */
+    int send( String strMessage )
+    {
+        int nNbRemovedSubscribers = 0;
+        for ( CommentLiveSubscriber subscriber : _setSubscribers )
+        {
+            if ( !subscriber.send( strMessage ) && _setSubscribers.remove( subscriber ) )
+            {
+                subscriber.close( );
+                nNbRemovedSubscribers++;
+            }
+        }
+
+        return nNbRemovedSubscribers;
+    }
+
+    /**
+     * Close the connections of every subscriber
+     * 
+     * @return The number of removed subscribers
+     */
+    int closeSubscribers( )
+    {
+        int nNbRemovedSubscribers = 0;
+        for ( CommentLiveSubscriber subscriber : _setSubscribers )
+        {
+            if ( _setSubscribers.remove( subscriber ) )
+            {
+                subscriber.close( );
+                nNbRemovedSubscribers++;
+            }
+        }
+
+        return nNbRemovedSubscribers;
+    }
+
+    /**
+     * Close the channel if it has no subscriber and has not been used for a while
+     * 
+     * @param lDateLimit
+     *            The date before which the last use of the channel must be, in milliseconds
+     * @return true if the channel is closed
+     */
+    synchronized boolean closeIfIdle( long lDateLimit )
+    {
+        if ( _setSubscribers.isEmpty( ) && _lLastActivity < lDateLimit )
+        {
+            _bClosed = true;
+        }
+
+        return _bClosed;
+    }
+
+    /**
+     * Get the recent events following a given event
+     * 
+     * @param lLastIdEvent
+     *            The id of the last event received
+     * @return The events following the given event
+     */
+    private List<CommentLiveEvent> getEventsAfter( long lLastIdEvent )
+    {
+        List<CommentLiveEvent> listEvents = new ArrayList<>( );
+        for ( CommentLiveEvent event : _queueEvents )
+        {
+            if ( event.getIdEvent( ) > lLastIdEvent )
+            {
+                listEvents.add( event );
+            }
+        }
+
+        return listEvents;
+    }
+}
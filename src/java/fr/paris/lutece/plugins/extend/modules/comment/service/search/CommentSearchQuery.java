@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.search;
+
+import java.sql.Timestamp;
+
+/**
+ * 
+ * Criteria of a full-text search of comments. Every criterion is optional.
+ * 
+ */
+public class CommentSearchQuery
+{
+    private String _strText;
+    private String _strAuthor;
+    private String _strExtendableResourceType;
+    private String _strIdExtendableResource;
+    private Timestamp _dateFrom;
+    private Timestamp _dateTo;
+    private boolean _bPublishedOnly;
+
+    /**
+     * @return the text searched in the body of comments
+     */
+    public String getText( )
+    {
+        return _strText;
+    }
+
+    /**
+     * @param strText
+     *            the text searched in the body of comments
+     */
+    public void setText( String strText )
+    {
+        _strText = strText;
+    }
+
+    /**
+     * @return the author searched in the name and the lutece user name of comments
+     */
+    public String getAuthor( )
+    {
+        return _strAuthor;
+    }
+
+    /**
+     * @param strAuthor
+     *            the author searched in the name and the lutece user name of comments
+     */
+    public void setAuthor( String strAuthor )
+    {
+        _strAuthor = strAuthor;
+    }
+
+    /**
+     * @return the extendable resource type of comments
+     */
+    public String getExtendableResourceType( )
+    {
+        return _strExtendableResourceType;
+    }
+
+    /**
+     * @param strExtendableResourceType
+     *            the extendable resource type of comments
+     */
+    public void setExtendableResourceType( String strExtendableResourceType )
+    {
+        _strExtendableResourceType = strExtendableResourceType;
+    }
+
+    /**
+     * @return the id of the extendable resource of comments
+     */
+    public String getIdExtendableResource( )
+    {
+        return _strIdExtendableResource;
+    }
+
+    /**
+     * @param strIdExtendableResource
+     *            the id of the extendable resource of comments
+     */
+    public void setIdExtendableResource( String strIdExtendableResource )
+    {
+        _strIdExtendableResource = strIdExtendableResource;
+    }
+
+    /**
+     * @return the minimum date of creation of comments
+     */
+    public Timestamp getDateFrom( )
+    {
+        return _dateFrom;
+    }
+
+    /**
+     * @param dateFrom
+     *            the minimum date of creation of comments
+     */
+    public void setDateFrom( Timestamp dateFrom )
+    {
+        _dateFrom = dateFrom;
+    }
+
+    /**
+     * @return the date before which comments were created
+     */
+    public Timestamp getDateTo( )
+    {
+        return _dateTo;
+    }
+
+    /**
+     * @param dateTo
+     *            the date before which comments were created
+     */
+    public void setDateTo( Timestamp dateTo )
+    {
+        _dateTo = dateTo;
+    }
+
+    /**
+     * @return true if only published comments are searched
+     */
+    public boolean isPublishedOnly( )
+    {
+        return _bPublishedOnly;
+    }
+
+    /**
+     * @param bPublishedOnly
+     *            true if only published comments are searched
+     */
+    public void setPublishedOnly( boolean bPublishedOnly )
+    {
+        _bPublishedOnly = bPublishedOnly;
+    }
+}
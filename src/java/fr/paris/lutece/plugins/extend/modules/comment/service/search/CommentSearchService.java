@@ -0,0 +1,692 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.search;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.ICommentDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentShutdownService;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Service maintaining an embedded Lucene index of the body and the author of comments. The index is updated incrementally once the transactions
+ * modifying comments are committed, and rebuilt periodically by the daemon {@link CommentSearchIndexerDaemon}. Every modification of the index is run by a
+ * single background thread, so incremental updates can not interleave with a rebuild.
+ * 
+ */
+public final class CommentSearchService
+{
+    private static final String PROPERTY_ENABLED = "module.extend.comment.search.enabled";
+    private static final String PROPERTY_INDEX_PATH = "module.extend.comment.search.indexPath";
+    private static final String PROPERTY_REBUILD_CHUNK_SIZE = "module.extend.comment.search.rebuild.chunkSize";
+    private static final String DEFAULT_INDEX_PATH = "/WEB-INF/plugins/extend-comment/indexes";
+    private static final String FIELD_ID_COMMENT = "id_comment";
+    private static final String FIELD_RESOURCE_TYPE = "resource_type";
+    private static final String FIELD_ID_RESOURCE = "id_resource";
+    private static final String FIELD_CONTENT = "content";
+    private static final String FIELD_AUTHOR = "author";
+    private static final String FIELD_DATE_COMMENT = "date_comment";
+    private static final String FIELD_PUBLISHED = "published";
+    private static final String THREAD_NAME = "extend-comment-search";
+    private static final String LOG_INDEXED_COMMENTS = "Indexed comments : ";
+    private static final String LOG_DISABLED = "Search index disabled";
+    private static final String CONSTANT_SPACE = " ";
+    // HTML tags and BBCode tags are not indexed
+    private static final Pattern PATTERN_MARKUP = Pattern.compile( "<[^>]*>|\\[/?[a-zA-Z*]+(=[^\\]]*)?\\]" );
+
+    private static CommentSearchService _singleton = new CommentSearchService( );
+
+    private final boolean _bEnabled;
+    private final String _strIndexPath;
+    private final int _nRebuildChunkSize;
+    private final ExecutorService _executor;
+    private final Analyzer _analyzer = new StandardAnalyzer( );
+    private IndexWriter _writer;
+    private SearcherManager _searcherManager;
+    private volatile boolean _bRebuilding;
+    private volatile boolean _bBuildPending;
+
+    /**
+     * Private constructor
+     */
+    private CommentSearchService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _strIndexPath = AppPropertiesService.getProperty( PROPERTY_INDEX_PATH, DEFAULT_INDEX_PATH );
+        _nRebuildChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_REBUILD_CHUNK_SIZE, 500 ) );
+        _executor = Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentSearchService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Check if the search index is enabled
+     * 
+     * @return true if the search index is enabled
+     */
+    public boolean isEnabled( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Index created or modified comments, once the current transaction is committed
+     * 
+     * @param listIdComments
+     *            The ids of the comments
+     */
+    public void indexComments( Collection<Integer> listIdComments )
+    {
+        List<Integer> listIds = new ArrayList<>( listIdComments );
+        submitAfterCommit( ( ) -> {
+            IndexWriter writer = getWriter( );
+            List<Comment> listComments = getCommentDAO( ).load( listIds, CommentPlugin.getPlugin( ) );
+            for ( Comment comment : listComments )
+            {
+                writer.updateDocument( getTerm( comment.getIdComment( ) ), getDocument( comment ) );
+                listIds.remove( Integer.valueOf( comment.getIdComment( ) ) );
+            }
+            // Comments removed in the meantime are removed from the index
+            for ( Integer nIdComment : listIds )
+            {
+                writer.deleteDocuments( getTerm( nIdComment ) );
+            }
+            writer.commit( );
+        } );
+    }
+
+    /**
+     * Remove comments from the index, once the current transaction is committed
+     * 
+     * @param listIdComments
+     *            The ids of the comments
+     */
+    public void removeComments( Collection<Integer> listIdComments )
+    {
+        List<Integer> listIds = new ArrayList<>( listIdComments );
+        submitAfterCommit( ( ) -> {
+            IndexWriter writer = getWriter( );
+            for ( Integer nIdComment : listIds )
+            {
+                writer.deleteDocuments( getTerm( nIdComment ) );
+            }
+            writer.commit( );
+        } );
+    }
+
+    /**
+     * Remove the comments of a resource from the index, once the current transaction is committed
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource, or the wildcard to remove every comment of the resource type
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void removeResource( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        submitAfterCommit( ( ) -> {
+            IndexWriter writer = getWriter( );
+            BooleanQuery.Builder builder = new BooleanQuery.Builder( );
+            builder.add( new TermQuery( new Term( FIELD_RESOURCE_TYPE, strExtendableResourceType ) ), Occur.FILTER );
+            if ( !CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( strIdExtendableResource ) )
+            {
+                builder.add( new TermQuery( new Term( FIELD_ID_RESOURCE, strIdExtendableResource ) ), Occur.FILTER );
+            }
+            writer.deleteDocuments( builder.build( ) );
+            writer.commit( );
+        } );
+    }
+
+    /**
+     * Rebuild the whole index. Comments are read by chunks, and searches keep using the previous index until the rebuild is over.
+     * 
+     * @return The logs of the rebuild
+     */
+    public String rebuildIndex( )
+    {
+        if ( !_bEnabled )
+        {
+            return LOG_DISABLED;
+        }
+
+        Future<String> future = _executor.submit( this::doRebuildIndex );
+        try
+        {
+            return future.get( );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            return e.getMessage( );
+        }
+        catch( ExecutionException e )
+        {
+            AppLogService.error( "Unable to rebuild the search index of comments", e );
+            return e.getMessage( );
+        }
+    }
+
+    /**
+     * Close the index and stop the background thread. Pending modifications of the index are applied first, so that the index and its lock are released
+     * when the webapp stops.
+     */
+    public void shutdown( )
+    {
+        CommentShutdownService.shutdown( _executor );
+        closeWriter( false );
+    }
+
+    /**
+     * Search comments
+     * 
+     * @param query
+     *            The criteria of the search
+     * @param nItemsOffset
+     *            The offset of the first comment to return
+     * @param nMaxItemsNumber
+     *            The maximum number of comments to return
+     * @return The page of results. Comments are sorted by relevance when a text or an author is searched, and by descending date of creation otherwise.
+     */
+    public CommentSearchResult search( CommentSearchQuery query, int nItemsOffset, int nMaxItemsNumber )
+    {
+        if ( !_bEnabled )
+        {
+            return new CommentSearchResult( Collections.emptyList( ), 0 );
+        }
+
+        try
+        {
+            SearcherManager searcherManager;
+            IndexSearcher searcher;
+            // The manager is read under the lock of the writer, which may close it after a failed rebuild
+            synchronized( this )
+            {
+                getWriter( );
+                searcherManager = _searcherManager;
+                // The searcher is not refreshed during a rebuild, so that searches do not see a partial index
+                if ( !_bRebuilding )
+                {
+                    searcherManager.maybeRefresh( );
+                }
+                searcher = searcherManager.acquire( );
+            }
+            try
+            {
+                Query luceneQuery = getQuery( query );
+                int nTotalCount = searcher.count( luceneQuery );
+                if ( nTotalCount <= nItemsOffset || nMaxItemsNumber <= 0 )
+                {
+                    return new CommentSearchResult( Collections.emptyList( ), nTotalCount );
+                }
+
+                int nNbHits = nItemsOffset + nMaxItemsNumber;
+                TopDocs topDocs = StringUtils.isAllBlank( query.getText( ), query.getAuthor( ) )
+                        ? searcher.search( luceneQuery, nNbHits, new Sort( new SortField( FIELD_DATE_COMMENT, SortField.Type.LONG, true ) ) )
+                        : searcher.search( luceneQuery, nNbHits );
+                List<Integer> listIdComments = new ArrayList<>( );
+                ScoreDoc [ ] scoreDocs = topDocs.scoreDocs;
+                for ( int i = nItemsOffset; i < scoreDocs.length; i++ )
+                {
+                    listIdComments.add( Integer.parseInt( searcher.doc( scoreDocs [i].doc ).get( FIELD_ID_COMMENT ) ) );
+                }
+
+                return new CommentSearchResult( loadComments( listIdComments ), nTotalCount );
+            }
+            finally
+            {
+                searcherManager.release( searcher );
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to search comments", e );
+            return new CommentSearchResult( Collections.emptyList( ), 0 );
+        }
+    }
+
+    /**
+     * Rebuild the whole index
+     * 
+     * @return The logs of the rebuild
+     * @throws IOException
+     *             if the index can not be written
+     */
+    private String doRebuildIndex( ) throws IOException
+    {
+        IndexWriter writer = getWriter( );
+        _bBuildPending = false;
+        ICommentDAO commentDAO = getCommentDAO( );
+        int nNbIndexed = 0;
+        _bRebuilding = true;
+        try
+        {
+            writer.deleteAll( );
+            int nIdLastComment = 0;
+            List<Comment> listComments;
+            do
+            {
+                listComments = commentDAO.findAfter( nIdLastComment, _nRebuildChunkSize, CommentPlugin.getPlugin( ) );
+                for ( Comment comment : listComments )
+                {
+                    writer.addDocument( getDocument( comment ) );
+                    nIdLastComment = comment.getIdComment( );
+                }
+                nNbIndexed += listComments.size( );
+            }
+            while ( listComments.size( ) == _nRebuildChunkSize );
+            writer.commit( );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            // The index is reopened from its last commit, so that a failed rebuild does not leave it empty
+            closeWriter( true );
+            throw e;
+        }
+        finally
+        {
+            _bRebuilding = false;
+        }
+
+        return LOG_INDEXED_COMMENTS + nNbIndexed;
+    }
+
+    /**
+     * Build the index from the background thread
+     */
+    private void rebuildInBackground( )
+    {
+        if ( !_bBuildPending )
+        {
+            // The index has been rebuilt in the meantime
+            return;
+        }
+
+        try
+        {
+            AppLogService.info( doRebuildIndex( ) );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            AppLogService.error( "Unable to build the search index of comments", e );
+        }
+    }
+
+    /**
+     * Run a modification of the index in the background once the current transaction is committed, or immediately if there is no transaction
+     * 
+     * @param task
+     *            The modification of the index
+     */
+    private void submitAfterCommit( IndexTask task )
+    {
+        if ( !_bEnabled )
+        {
+            return;
+        }
+
+        Runnable runnable = ( ) -> {
+            try
+            {
+                task.run( );
+            }
+            catch( IOException | RuntimeException e )
+            {
+                AppLogService.error( "Unable to update the search index of comments", e );
+            }
+        };
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    execute( runnable );
+                }
+            } );
+        }
+        else
+        {
+            execute( runnable );
+        }
+    }
+
+    /**
+     * Run a task in the background thread
+     * 
+     * @param runnable
+     *            The task
+     */
+    private void execute( Runnable runnable )
+    {
+        try
+        {
+            _executor.execute( runnable );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // The webapp is stopping, the index will be rebuilt by the daemon
+            AppLogService.error( "Unable to update the search index of comments", e );
+        }
+    }
+
+    /**
+     * Get the writer of the index, opening it if needed
+     * 
+     * @return The writer of the index
+     * @throws IOException
+     *             if the index can not be opened
+     */
+    private synchronized IndexWriter getWriter( ) throws IOException
+    {
+        if ( _writer == null )
+        {
+            IndexWriterConfig config = new IndexWriterConfig( _analyzer );
+            config.setOpenMode( OpenMode.CREATE_OR_APPEND );
+            Directory directory = FSDirectory.open( Paths.get( AppPathService.getAbsolutePathFromRelativePath( _strIndexPath ) ) );
+            boolean bIndexExists = DirectoryReader.indexExists( directory );
+            _writer = new IndexWriter( directory, config );
+            _searcherManager = new SearcherManager( _writer, null );
+            if ( !bIndexExists )
+            {
+                // The index is built once when it does not exist yet, instead of being rebuilt on every startup
+                _bBuildPending = true;
+                execute( this::rebuildInBackground );
+            }
+        }
+        return _writer;
+    }
+
+    /**
+     * Close the writer of the index. It is opened again on the next use.
+     * 
+     * @param bRollback
+     *            true to discard the uncommitted modifications of the index
+     */
+    private synchronized void closeWriter( boolean bRollback )
+    {
+        try
+        {
+            if ( _searcherManager != null )
+            {
+                _searcherManager.close( );
+            }
+            if ( _writer != null )
+            {
+                if ( bRollback )
+                {
+                    _writer.rollback( );
+                }
+                else
+                {
+                    _writer.close( );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to close the search index of comments", e );
+        }
+        finally
+        {
+            _searcherManager = null;
+            _writer = null;
+        }
+    }
+
+    /**
+     * Build the Lucene query of a search
+     * 
+     * @param query
+     *            The criteria of the search
+     * @return The Lucene query
+     */
+    private Query getQuery( CommentSearchQuery query )
+    {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder( );
+        boolean bHasClause = false;
+        if ( StringUtils.isNotBlank( query.getText( ) ) )
+        {
+            builder.add( parse( FIELD_CONTENT, query.getText( ) ), Occur.MUST );
+            bHasClause = true;
+        }
+        if ( StringUtils.isNotBlank( query.getAuthor( ) ) )
+        {
+            builder.add( parse( FIELD_AUTHOR, query.getAuthor( ) ), Occur.MUST );
+            bHasClause = true;
+        }
+        if ( StringUtils.isNotBlank( query.getExtendableResourceType( ) ) )
+        {
+            builder.add( new TermQuery( new Term( FIELD_RESOURCE_TYPE, query.getExtendableResourceType( ) ) ), Occur.FILTER );
+            bHasClause = true;
+        }
+        if ( StringUtils.isNotBlank( query.getIdExtendableResource( ) )
+                && !CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( query.getIdExtendableResource( ) ) )
+        {
+            builder.add( new TermQuery( new Term( FIELD_ID_RESOURCE, query.getIdExtendableResource( ) ) ), Occur.FILTER );
+            bHasClause = true;
+        }
+        if ( query.getDateFrom( ) != null || query.getDateTo( ) != null )
+        {
+            long lDateFrom = query.getDateFrom( ) != null ? query.getDateFrom( ).getTime( ) : Long.MIN_VALUE;
+            long lDateTo = query.getDateTo( ) != null ? query.getDateTo( ).getTime( ) - 1 : Long.MAX_VALUE;
+            builder.add( LongPoint.newRangeQuery( FIELD_DATE_COMMENT, lDateFrom, lDateTo ), Occur.FILTER );
+            bHasClause = true;
+        }
+        if ( query.isPublishedOnly( ) )
+        {
+            builder.add( new TermQuery( new Term( FIELD_PUBLISHED, Boolean.TRUE.toString( ) ) ), Occur.FILTER );
+            bHasClause = true;
+        }
+        if ( !bHasClause )
+        {
+            builder.add( new MatchAllDocsQuery( ), Occur.MUST );
+        }
+
+        return builder.build( );
+    }
+
+    /**
+     * Parse the text of a search. Every term is required, and a text that is not a valid query is searched literally.
+     * 
+     * @param strField
+     *            The searched field
+     * @param strText
+     *            The text
+     * @return The query
+     */
+    private Query parse( String strField, String strText )
+    {
+        QueryParser parser = new QueryParser( strField, _analyzer );
+        parser.setDefaultOperator( QueryParser.Operator.AND );
+        try
+        {
+            return parser.parse( strText );
+        }
+        catch( ParseException e )
+        {
+            try
+            {
+                return parser.parse( QueryParser.escape( strText ) );
+            }
+            catch( ParseException e2 )
+            {
+                return new MatchAllDocsQuery( );
+            }
+        }
+    }
+
+    /**
+     * Build the document indexing a comment
+     * 
+     * @param comment
+     *            The comment
+     * @return The document
+     */
+    private static Document getDocument( Comment comment )
+    {
+        Document document = new Document( );
+        document.add( new StringField( FIELD_ID_COMMENT, Integer.toString( comment.getIdComment( ) ), Field.Store.YES ) );
+        document.add( new StringField( FIELD_RESOURCE_TYPE, StringUtils.defaultString( comment.getExtendableResourceType( ) ), Field.Store.NO ) );
+        document.add( new StringField( FIELD_ID_RESOURCE, StringUtils.defaultString( comment.getIdExtendableResource( ) ), Field.Store.NO ) );
+        document.add( new TextField( FIELD_CONTENT, PATTERN_MARKUP.matcher( StringUtils.defaultString( comment.getComment( ) ) ).replaceAll( CONSTANT_SPACE ),
+                Field.Store.NO ) );
+        document.add( new TextField( FIELD_AUTHOR,
+                StringUtils.defaultString( comment.getName( ) ) + CONSTANT_SPACE + StringUtils.defaultString( comment.getLuteceUserName( ) ), Field.Store.NO ) );
+        long lDateComment = comment.getDateComment( ) != null ? comment.getDateComment( ).getTime( ) : 0;
+        document.add( new LongPoint( FIELD_DATE_COMMENT, lDateComment ) );
+        document.add( new NumericDocValuesField( FIELD_DATE_COMMENT, lDateComment ) );
+        document.add( new StringField( FIELD_PUBLISHED, Boolean.toString( comment.isPublished( ) ), Field.Store.NO ) );
+
+        return document;
+    }
+
+    /**
+     * Get the term identifying the document of a comment
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @return The term
+     */
+    private static Term getTerm( int nIdComment )
+    {
+        return new Term( FIELD_ID_COMMENT, Integer.toString( nIdComment ) );
+    }
+
+    /**
+     * Load comments, keeping the order of their ids. Comments removed since their indexation are ignored.
+     * 
+     * @param listIdComments
+     *            The ids of the comments
+     * @return The comments
+     */
+    private static List<Comment> loadComments( List<Integer> listIdComments )
+    {
+        Map<Integer, Comment> mapComments = getCommentDAO( ).load( listIdComments, CommentPlugin.getPlugin( ) ).stream( )
+                .collect( Collectors.toMap( Comment::getIdComment, Function.identity( ) ) );
+
+        return listIdComments.stream( ).map( mapComments::get ).filter( comment -> comment != null ).collect( Collectors.toList( ) );
+    }
+
+    /**
+     * Get the comment DAO
+     * 
+     * @return The comment DAO
+     */
+    private static ICommentDAO getCommentDAO( )
+    {
+        return SpringContextService.getBean( CommentConstants.BEAN_COMMENT_DAO );
+    }
+
+    /**
+     * Modification of the index
+     */
+    @FunctionalInterface
+    private interface IndexTask
+    {
+        /**
+         * Run the modification
+         * 
+         * @throws IOException
+         *             if the index can not be written
+         */
+        void run( ) throws IOException;
+    }
+}
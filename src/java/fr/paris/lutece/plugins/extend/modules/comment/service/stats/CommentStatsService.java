@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentedResource;
+import fr.paris.lutece.plugins.extend.modules.comment.business.stats.CommentStats;
+import fr.paris.lutece.plugins.extend.modules.comment.business.stats.ICommentStatsDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentShutdownService;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Service maintaining the statistics of the comments of each resource in the table extend_comment_stats. Statistics are updated with atomic increments in
+ * the transaction modifying the comments. The statistics of a resource that does not have any yet are computed from its comments in the background, once
+ * the transaction is committed. The daemon {@link CommentStatsDaemon} computes again every statistics by chunks of resources, to correct any drift.
+ * 
+ */
+public final class CommentStatsService
+{
+    private static final String PROPERTY_RECONCILIATION_CHUNK_SIZE = "module.extend.comment.stats.reconciliation.chunkSize";
+    private static final String BEAN_STATS_DAO = "extend-comment.commentStatsDAO";
+    private static final String THREAD_NAME = "extend-comment-stats";
+    private static final String LOG_RECONCILED_RESOURCES = "Reconciled resources : ";
+    private static final String LOG_REMOVED_STATS = ", removed statistics : ";
+    private static final String LOG_FAILED_RESOURCES = ", failures : ";
+    // Rows are always updated in this order, so that two transactions modifying several resources can not deadlock
+    private static final Comparator<CommentStats> COMPARATOR_RESOURCES = Comparator.comparing( CommentStats::getExtendableResourceType )
+            .thenComparing( CommentStats::getIdExtendableResource );
+
+    private static CommentStatsService _singleton = new CommentStatsService( );
+
+    private final int _nReconciliationChunkSize;
+    private final ExecutorService _executor;
+
+    /**
+     * Private constructor
+     */
+    private CommentStatsService( )
+    {
+        _nReconciliationChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_RECONCILIATION_CHUNK_SIZE, 500 ) );
+        _executor = Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentStatsService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Stop the background thread. Statistics that are not refreshed yet are fixed by the reconciliation daemon.
+     */
+    public void shutdown( )
+    {
+        CommentShutdownService.shutdown( _executor );
+    }
+
+    /**
+     * Update the statistics of the resource of a created comment
+     * 
+     * @param comment
+     *            The created comment
+     */
+    public void commentCreated( Comment comment )
+    {
+        CommentStats delta = newDelta( comment );
+        addComment( delta, comment, 1 );
+        delta.setDateLastComment( comment.getDateComment( ) );
+        apply( Collections.singletonList( delta ) );
+    }
+
+    /**
+     * Update the statistics of the resources of comments whose publication status changed
+     * 
+     * @param listComments
+     *            The comments whose status changed
+     * @param bPublished
+     *            The new publication status of the comments
+     */
+    public void publicationChanged( Collection<Comment> listComments, boolean bPublished )
+    {
+        int nSign = bPublished ? 1 : -1;
+        Map<List<String>, CommentStats> mapDeltas = new LinkedHashMap<>( );
+        for ( Comment comment : listComments )
+        {
+            CommentStats delta = mapDeltas.computeIfAbsent( getKey( comment ), key -> newDelta( comment ) );
+            delta.setNbPublishedComments( delta.getNbPublishedComments( ) + nSign );
+            if ( comment.getIdParentComment( ) == 0 )
+            {
+                delta.setNbPublishedParentComments( delta.getNbPublishedParentComments( ) + nSign );
+            }
+        }
+        apply( new ArrayList<>( mapDeltas.values( ) ) );
+    }
+
+    /**
+     * Update the statistics of the resources of removed comments
+     * 
+     * @param listComments
+     *            The removed comments
+     */
+    public void commentsRemoved( Collection<Comment> listComments )
+    {
+        Map<List<String>, CommentStats> mapDeltas = new LinkedHashMap<>( );
+        for ( Comment comment : listComments )
+        {
+            addComment( mapDeltas.computeIfAbsent( getKey( comment ), key -> newDelta( comment ) ), comment, -1 );
+        }
+
+        List<CommentStats> listDeltas = new ArrayList<>( mapDeltas.values( ) );
+        apply( listDeltas );
+        // The last comment of a resource may have been removed
+        for ( CommentStats delta : listDeltas )
+        {
+            getStatsDAO( ).refreshDateLastComment( delta.getIdExtendableResource( ), delta.getExtendableResourceType( ), CommentPlugin.getPlugin( ) );
+        }
+    }
+
+    /**
+     * Remove the statistics of a resource whose comments are removed
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource, or the wildcard for every resource of the type
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void resourceRemoved( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        getStatsDAO( ).delete( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+    }
+
+    /**
+     * Lock the statistics rows of the resources of comments until the end of the current transaction, so that modifications of the resources are
+     * serialized across every node. Missing statistics are computed first, so that every commented resource has a row to lock. Rows are locked in the same
+     * order as they are updated to prevent deadlocks.
+     * 
+     * @param listComments
+     *            The comments whose resources must be locked
+     */
+    public void lockResources( Collection<Comment> listComments )
+    {
+        Map<List<String>, CommentStats> mapResources = new LinkedHashMap<>( );
+        for ( Comment comment : listComments )
+        {
+            mapResources.computeIfAbsent( getKey( comment ), key -> newDelta( comment ) );
+        }
+
+        List<CommentStats> listResources = new ArrayList<>( mapResources.values( ) );
+        listResources.sort( COMPARATOR_RESOURCES );
+        ICommentStatsDAO statsDAO = getStatsDAO( );
+        for ( CommentStats resource : listResources )
+        {
+            String strIdExtendableResource = resource.getIdExtendableResource( );
+            String strExtendableResourceType = resource.getExtendableResourceType( );
+            if ( !statsDAO.lock( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) ) )
+            {
+                try
+                {
+                    statsDAO.refresh( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+                }
+                catch( AppException e )
+                {
+                    // Another node created the statistics of the resource at the same time, its row is locked below
+                    AppLogService.debug( "Comment statistics created concurrently for the resource " + strExtendableResourceType + " "
+                            + strIdExtendableResource, e );
+                }
+                statsDAO.lock( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+            }
+        }
+    }
+
+    /**
+     * Get the number of comments of a resource from its statistics
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource, or the wildcard for every resource of the type
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bParentsOnly
+     *            True to only count comments that are not answers to another comment
+     * @param bPublishedOnly
+     *            True to only count published comments
+     * @return The number of comments, or null if the resource does not have statistics yet
+     */
+    public Integer getCommentNb( String strIdExtendableResource, String strExtendableResourceType, boolean bParentsOnly, boolean bPublishedOnly )
+    {
+        CommentStats stats = CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( strIdExtendableResource )
+                ? getStatsDAO( ).loadByResourceType( strExtendableResourceType, CommentPlugin.getPlugin( ) )
+                : getStatsDAO( ).load( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+
+        return ( stats != null ) ? stats.getCommentNb( bParentsOnly, bPublishedOnly ) : null;
+    }
+
+    /**
+     * Get the resources of a type with their number of comments, ordered by descending number of comments
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param bPublishedOnly
+     *            True to rank resources by number of published comments
+     * @param nItemsOffset
+     *            The offset of the first resource to return
+     * @param nMaxItemsNumber
+     *            The maximum number of resources to return, or 0 to return every resource
+     * @return The resources
+     */
+    public List<CommentedResource> findMostCommentedResources( String strExtendableResourceType, boolean bPublishedOnly, int nItemsOffset,
+            int nMaxItemsNumber )
+    {
+        return getStatsDAO( ).findMostCommentedResources( strExtendableResourceType, bPublishedOnly, nItemsOffset, nMaxItemsNumber,
+                CommentPlugin.getPlugin( ) );
+    }
+
+    /**
+     * Compute again the statistics of every resource from its comments, by chunks of resources. This method is called by the daemon.
+     * 
+     * @return A log of the reconciliation
+     */
+    public String reconcile( )
+    {
+        ICommentStatsDAO statsDAO = getStatsDAO( );
+        String strTypeAfter = "";
+        String strIdAfter = "";
+        int nReconciled = 0;
+        int nFailed = 0;
+        List<CommentStats> listResources;
+        do
+        {
+            listResources = statsDAO.findCommentedResourcesAfter( strTypeAfter, strIdAfter, _nReconciliationChunkSize, CommentPlugin.getPlugin( ) );
+            for ( CommentStats resource : listResources )
+            {
+                if ( refresh( resource.getIdExtendableResource( ), resource.getExtendableResourceType( ) ) )
+                {
+                    nReconciled++;
+                }
+                else
+                {
+                    nFailed++;
+                }
+                strTypeAfter = resource.getExtendableResourceType( );
+                strIdAfter = resource.getIdExtendableResource( );
+            }
+        }
+        while ( listResources.size( ) == _nReconciliationChunkSize );
+
+        int nRemoved = statsDAO.deleteOrphans( CommentPlugin.getPlugin( ) );
+
+        return LOG_RECONCILED_RESOURCES + nReconciled + LOG_REMOVED_STATS + nRemoved + LOG_FAILED_RESOURCES + nFailed;
+    }
+
+    /**
+     * Apply variations of statistics. Resources without statistics are computed in the background once the current transaction is committed.
+     * 
+     * @param listDeltas
+     *            The variations of the statistics of each resource
+     */
+    private void apply( List<CommentStats> listDeltas )
+    {
+        listDeltas.sort( COMPARATOR_RESOURCES );
+        for ( CommentStats delta : listDeltas )
+        {
+            if ( !getStatsDAO( ).addDelta( delta, CommentPlugin.getPlugin( ) ) )
+            {
+                scheduleRefresh( delta.getIdExtendableResource( ), delta.getExtendableResourceType( ) );
+            }
+        }
+    }
+
+    /**
+     * Schedule the computation of the statistics of a resource, once the current transaction is committed
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    private void scheduleRefresh( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    _executor.execute( ( ) -> refresh( strIdExtendableResource, strExtendableResourceType ) );
+                }
+            } );
+        }
+        else
+        {
+            _executor.execute( ( ) -> refresh( strIdExtendableResource, strExtendableResourceType ) );
+        }
+    }
+
+    /**
+     * Compute again the statistics of a resource from its comments
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @return true if the statistics have been computed, false otherwise
+     */
+    private boolean refresh( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        try
+        {
+            getStatsDAO( ).refresh( strIdExtendableResource, strExtendableResourceType, CommentPlugin.getPlugin( ) );
+            return true;
+        }
+        catch( Exception e )
+        {
+            // Another node may have created the statistics of the resource at the same time
+            AppLogService.error( "Unable to compute the comment statistics of the resource " + strExtendableResourceType + " " + strIdExtendableResource, e );
+            return false;
+        }
+    }
+
+    /**
+     * Add or remove a comment to variations of statistics
+     * 
+     * @param delta
+     *            The variations of statistics
+     * @param comment
+     *            The comment
+     * @param nSign
+     *            1 to add the comment, -1 to remove it
+     */
+    private static void addComment( CommentStats delta, Comment comment, int nSign )
+    {
+        boolean bParent = comment.getIdParentComment( ) == 0;
+        delta.setNbComments( delta.getNbComments( ) + nSign );
+        if ( bParent )
+        {
+            delta.setNbParentComments( delta.getNbParentComments( ) + nSign );
+        }
+        if ( comment.isPublished( ) )
+        {
+            delta.setNbPublishedComments( delta.getNbPublishedComments( ) + nSign );
+            if ( bParent )
+            {
+                delta.setNbPublishedParentComments( delta.getNbPublishedParentComments( ) + nSign );
+            }
+        }
+    }
+
+    /**
+     * Create empty variations of the statistics of the resource of a comment
+     * 
+     * @param comment
+     *            The comment
+     * @return The variations
+     */
+    private static CommentStats newDelta( Comment comment )
+    {
+        CommentStats delta = new CommentStats( );
+        delta.setExtendableResourceType( comment.getExtendableResourceType( ) );
+        delta.setIdExtendableResource( comment.getIdExtendableResource( ) );
+        return delta;
+    }
+
+    /**
+     * Get the key of the resource of a comment
+     * 
+     * @param comment
+     *            The comment
+     * @return The key of the resource
+     */
+    private static List<String> getKey( Comment comment )
+    {
+        return Arrays.asList( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ) );
+    }
+
+    /**
+     * Get the statistics DAO
+     * 
+     * @return The statistics DAO
+     */
+    private static ICommentStatsDAO getStatsDAO( )
+    {
+        return SpringContextService.getBean( BEAN_STATS_DAO );
+    }
+}
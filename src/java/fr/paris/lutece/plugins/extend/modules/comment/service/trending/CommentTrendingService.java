@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.trending;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.ICommentDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * 
+ * Service ranking the resources of each type by a time-decayed number of published comments. Each published comment weighs 1 when it is created, and
+ * its weight is halved every half-life. Scores are kept in memory, updated by the comment service with the created, published, unpublished and removed
+ * comments once the transactions are committed, and rebuilt from the comments of the last half-lives when the plugin starts. The weight of a comment
+ * only depends on its date, so that unpublishing or removing a comment removes exactly the weight it added. Each node of a cluster only receives its own
+ * modifications until it restarts.
+ * 
+ */
+public final class CommentTrendingService
+{
+    private static final String PROPERTY_ENABLED = "module.extend.comment.trending.enabled";
+    private static final String PROPERTY_HALF_LIFE = "module.extend.comment.trending.halfLife";
+    private static final String PROPERTY_REBUILD_CHUNK_SIZE = "module.extend.comment.trending.rebuild.chunkSize";
+    private static final String THREAD_NAME = "extend-comment-trending";
+    // Comments older than this number of half-lives weigh less than 0.1% and are not read when scores are rebuilt
+    private static final int REBUILD_HALF_LIVES = 10;
+
+    private static CommentTrendingService _singleton = new CommentTrendingService( );
+
+    private final boolean _bEnabled;
+    private final long _lHalfLife;
+    private final double _dDecayRate;
+    private final int _nRebuildChunkSize;
+    private final ConcurrentMap<String, TrendingBoard> _mapBoards = new ConcurrentHashMap<>( );
+    private final AtomicBoolean _bStarted = new AtomicBoolean( );
+    // Date before which the comments are counted by the running rebuild, or 0 once the rebuild is over
+    private volatile long _lRebuildDate;
+
+    /**
+     * Private constructor
+     */
+    private CommentTrendingService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _lHalfLife = TimeUnit.HOURS.toMillis( Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_HALF_LIFE, 24 ) ) );
+        _dDecayRate = Math.log( 2 ) / _lHalfLife;
+        _nRebuildChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_REBUILD_CHUNK_SIZE, 500 ) );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentTrendingService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Start the service: rebuild the scores in the background. Until the rebuild is over, modifications of comments created before the start are ignored,
+     * since the rebuild reads their current status. Weights of later comments are simply added to the scores.
+     */
+    public void init( )
+    {
+        if ( !_bEnabled || !_bStarted.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        long lNow = System.currentTimeMillis( );
+        _lRebuildDate = lNow;
+        Thread thread = new Thread( ( ) -> rebuild( lNow ), THREAD_NAME );
+        thread.setDaemon( true );
+        thread.start( );
+    }
+
+    /**
+     * Get the ids of the trending resources of a type
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param nMaxItemsNumber
+     *            The maximum number of ids to return
+     * @return The ids of the resources, by descending score
+     */
+    public List<String> findTrendingResources( String strExtendableResourceType, int nMaxItemsNumber )
+    {
+        TrendingBoard board = _mapBoards.get( strExtendableResourceType );
+        if ( board == null || nMaxItemsNumber <= 0 )
+        {
+            return Collections.emptyList( );
+        }
+
+        return board.getTop( nMaxItemsNumber );
+    }
+
+    /**
+     * Add the weight of a created comment once the current transaction is committed, if the comment is published
+     * 
+     * @param comment
+     *            The created comment
+     */
+    public void commentCreated( Comment comment )
+    {
+        if ( comment.isPublished( ) )
+        {
+            addCommentsAfterCommit( Collections.singletonList( comment ), 1 );
+        }
+    }
+
+    /**
+     * Add or remove the weight of comments whose status changed once the current transaction is committed
+     * 
+     * @param listComments
+     *            The comments whose status changed
+     * @param bPublished
+     *            The new status of the comments
+     */
+    public void publicationChanged( Collection<Comment> listComments, boolean bPublished )
+    {
+        addCommentsAfterCommit( listComments, bPublished ? 1 : -1 );
+    }
+
+    /**
+     * Remove the weight of removed comments once the current transaction is committed. Unpublished comments have no weight.
+     * 
+     * @param listComments
+     *            The removed comments
+     */
+    public void commentsRemoved( Collection<Comment> listComments )
+    {
+        List<Comment> listPublishedComments = new ArrayList<>( );
+        for ( Comment comment : listComments )
+        {
+            if ( comment.isPublished( ) )
+            {
+                listPublishedComments.add( comment );
+            }
+        }
+        addCommentsAfterCommit( listPublishedComments, -1 );
+    }
+
+    /**
+     * Remove the score of a resource whose comments are all removed, once the current transaction is committed
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource, or {@link CommentConstants#CONSTANT_ALL_RESSOURCE_ID} for every resource of the type
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     */
+    public void resourceRemoved( String strIdExtendableResource, String strExtendableResourceType )
+    {
+        if ( !_bStarted.get( ) )
+        {
+            return;
+        }
+
+        Runnable removal = ( ) -> {
+            if ( CommentConstants.CONSTANT_ALL_RESSOURCE_ID.equals( strIdExtendableResource ) )
+            {
+                _mapBoards.remove( strExtendableResourceType );
+            }
+            else
+            {
+                TrendingBoard board = _mapBoards.get( strExtendableResourceType );
+                if ( board != null )
+                {
+                    board.remove( strIdExtendableResource );
+                }
+            }
+        };
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    removal.run( );
+                }
+            } );
+        }
+        else
+        {
+            removal.run( );
+        }
+    }
+
+    /**
+     * Add the weight of comments to the scores of their resources once the current transaction is committed, or immediately if there is no transaction
+     * 
+     * @param listComments
+     *            The comments
+     * @param dWeight
+     *            1 to add the weight of the comments, -1 to remove it
+     */
+    private void addCommentsAfterCommit( Collection<Comment> listComments, double dWeight )
+    {
+        if ( !_bStarted.get( ) || listComments.isEmpty( ) )
+        {
+            return;
+        }
+
+        List<Comment> listCommentsToAdd = new ArrayList<>( listComments );
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    addComments( listCommentsToAdd, dWeight );
+                }
+            } );
+        }
+        else
+        {
+            addComments( listCommentsToAdd, dWeight );
+        }
+    }
+
+    /**
+     * Add the weight of comments to the scores of their resources, at the date of the comments
+     * 
+     * @param listComments
+     *            The comments
+     * @param dWeight
+     *            1 to add the weight of the comments, -1 to remove it
+     */
+    private void addComments( List<Comment> listComments, double dWeight )
+    {
+        long lRebuildDate = _lRebuildDate;
+        for ( Comment comment : listComments )
+        {
+            // Comments created before the start are counted by the running rebuild with their current status
+            if ( comment.getDateComment( ) != null && comment.getDateComment( ).getTime( ) >= lRebuildDate )
+            {
+                addComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), dWeight, comment.getDateComment( ).getTime( ) );
+            }
+        }
+    }
+
+    /**
+     * Add a weight to the score of a resource
+     * 
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param dWeight
+     *            1 to add the weight of the comment, -1 to remove it
+     * @param lDate
+     *            The date of the comment, in milliseconds
+     */
+    private void addComment( String strExtendableResourceType, String strIdExtendableResource, double dWeight, long lDate )
+    {
+        _mapBoards.computeIfAbsent( strExtendableResourceType, strType -> new TrendingBoard( _dDecayRate, lDate ) ).add( strIdExtendableResource, dWeight,
+                lDate );
+    }
+
+    /**
+     * Rebuild the scores from the published comments created during the last half-lives, by chunks. Published comments are weighted by their date of
+     * creation.
+     * 
+     * @param lNow
+     *            The date of the start of the service. Later comments are added by the comment service.
+     */
+    private void rebuild( long lNow )
+    {
+        try
+        {
+            ICommentDAO commentDAO = SpringContextService.getBean( CommentConstants.BEAN_COMMENT_DAO );
+            Timestamp dateFrom = new Timestamp( lNow - REBUILD_HALF_LIVES * _lHalfLife );
+            Timestamp dateTo = new Timestamp( lNow );
+            int nIdLastComment = 0;
+            int nNbComments = 0;
+            List<Comment> listComments;
+            do
+            {
+                listComments = commentDAO.findPublishedByDate( dateFrom, dateTo, nIdLastComment, _nRebuildChunkSize, CommentPlugin.getPlugin( ) );
+                for ( Comment comment : listComments )
+                {
+                    addComment( comment.getExtendableResourceType( ), comment.getIdExtendableResource( ), 1, comment.getDateComment( ).getTime( ) );
+                    nIdLastComment = comment.getIdComment( );
+                }
+                nNbComments += listComments.size( );
+            }
+            while ( listComments.size( ) == _nRebuildChunkSize );
+
+            AppLogService.info( "Trending comment scores rebuilt from " + nNbComments + " comments" );
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( "Unable to rebuild the trending comment scores", e );
+        }
+        finally
+        {
+            _lRebuildDate = 0;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.trending;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 
+ * Time-decayed scores of the resources of a type. Scores use forward decay: the weight of a comment grows exponentially with its date, relative to a
+ * landmark date, instead of every score decreasing with time. The order of resources therefore never changes with time alone, and is kept in a sorted set
+ * that is only modified when a score changes. The landmark moves forward when weights become too large, and resources whose score became negligible are
+ * then dropped.
+ * 
+ */
+final class TrendingBoard
+{
+    // Beyond this exponent, weights are scaled down to keep the precision of scores
+    private static final double MAX_EXPONENT = 20;
+    // Resources whose current score is below this value are dropped when weights are scaled down
+    private static final double MIN_SCORE = 0.01;
+    // Scores below this fraction of the last weight are rounding errors left by the removal of every weight of a resource
+    private static final double ROUNDING_ERROR = 1e-9;
+
+    private final double _dDecayRate;
+    private final Map<String, Double> _mapScores = new HashMap<>( );
+    private volatile ConcurrentSkipListSet<ScoredResource> _setRanking = new ConcurrentSkipListSet<>( );
+    private long _lLandmark;
+
+    /**
+     * Constructor
+     * 
+     * @param dDecayRate
+     *            The decay rate of scores, per millisecond
+     * @param lLandmark
+     *            The initial landmark date, in milliseconds
+     */
+    TrendingBoard( double dDecayRate, long lLandmark )
+    {
+        _dDecayRate = dDecayRate;
+        _lLandmark = lLandmark;
+    }
+
+    /**
+     * Add a weight to the score of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the resource
+     * @param dWeight
+     *            The weight, 1 to add a published comment and -1 to remove it
+     * @param lDate
+     *            The date of the comment, in milliseconds. The weight of a comment must be removed with the date it was added with.
+     */
+    synchronized void add( String strIdExtendableResource, double dWeight, long lDate )
+    {
+        if ( ( lDate - _lLandmark ) * _dDecayRate > MAX_EXPONENT )
+        {
+            moveLandmark( lDate );
+        }
+
+        Double dOldScore = _mapScores.get( strIdExtendableResource );
+        double dDelta = dWeight * Math.exp( ( lDate - _lLandmark ) * _dDecayRate );
+        double dScore = ( dOldScore != null ? dOldScore : 0 ) + dDelta;
+        if ( dOldScore != null )
+        {
+            _setRanking.remove( new ScoredResource( strIdExtendableResource, dOldScore ) );
+        }
+        if ( dScore > Math.abs( dDelta ) * ROUNDING_ERROR )
+        {
+            _mapScores.put( strIdExtendableResource, dScore );
+            _setRanking.add( new ScoredResource( strIdExtendableResource, dScore ) );
+        }
+        else
+        {
+            _mapScores.remove( strIdExtendableResource );
+        }
+    }
+
+    /**
+     * Remove the score of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the resource
+     */
+    synchronized void remove( String strIdExtendableResource )
+    {
+        Double dScore = _mapScores.remove( strIdExtendableResource );
+        if ( dScore != null )
+        {
+            _setRanking.remove( new ScoredResource( strIdExtendableResource, dScore ) );
+        }
+    }
+
+    /**
+     * Get the ids of the resources with the highest scores. Only the returned resources are read.
+     * 
+     * @param nMaxItemsNumber
+     *            The maximum number of ids to return
+     * @return The ids of the resources, by descending score
+     */
+    List<String> getTop( int nMaxItemsNumber )
+    {
+        List<String> listIds = new ArrayList<>( nMaxItemsNumber );
+        Iterator<ScoredResource> iterator = _setRanking.iterator( );
+        while ( listIds.size( ) < nMaxItemsNumber && iterator.hasNext( ) )
+        {
+            listIds.add( iterator.next( )._strIdExtendableResource );
+        }
+
+        return listIds;
+    }
+
+    /**
+     * Move the landmark date, scaling down every score, and drop resources whose score became negligible
+     * 
+     * @param lLandmark
+     *            The new landmark date, in milliseconds
+     */
+    private void moveLandmark( long lLandmark )
+    {
+        double dFactor = Math.exp( ( _lLandmark - lLandmark ) * _dDecayRate );
+        ConcurrentSkipListSet<ScoredResource> setRanking = new ConcurrentSkipListSet<>( );
+        Iterator<Map.Entry<String, Double>> iterator = _mapScores.entrySet( ).iterator( );
+        while ( iterator.hasNext( ) )
+        {
+            Map.Entry<String, Double> entry = iterator.next( );
+            double dScore = entry.getValue( ) * dFactor;
+            if ( dScore < MIN_SCORE )
+            {
+                iterator.remove( );
+            }
+            else
+            {
+                entry.setValue( dScore );
+                setRanking.add( new ScoredResource( entry.getKey( ), dScore ) );
+            }
+        }
+        _lLandmark = lLandmark;
+        // Readers switch to the new ranking at once
+        _setRanking = setRanking;
+    }
+
+    /**
+     * A resource with its score, ordered by descending score
+     */
+    private static final class ScoredResource implements Comparable<ScoredResource>
+    {
+        private final String _strIdExtendableResource;
+        private final double _dScore;
+
+        /**
+         * Constructor
+         * 
+         * @param strIdExtendableResource
+         *            The id of the resource
+         * @param dScore
+         *            The score of the resource
+         */
+        ScoredResource( String strIdExtendableResource, double dScore )
+        {
+            _strIdExtendableResource = strIdExtendableResource;
+            _dScore = dScore;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo( ScoredResource other )
+        {
+            int nCompare = Double.compare( other._dScore, _dScore );
+            return ( nCompare != 0 ) ? nCompare : _strIdExtendableResource.compareTo( other._strIdExtendableResource );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals( Object object )
+        {
+            return ( object instanceof ScoredResource ) && compareTo( (ScoredResource) object ) == 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode( )
+        {
+            return 31 * _strIdExtendableResource.hashCode( ) + Double.hashCode( _dScore );
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.workflow;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.workflow.CommentWorkflowOutboxEntry;
+import fr.paris.lutece.plugins.extend.modules.comment.business.workflow.ICommentWorkflowOutboxDAO;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentShutdownService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.ICommentService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+
+/**
+ * 
+ * Service initializing the workflow of created comments in the background. Comments are first written to an outbox table in the transaction that creates
+ * them, then processed by a bounded pool of threads once the transaction is committed. Entries that could not be processed, because of an error, a full
+ * queue or a stopped server, are retried by the daemon {@link CommentWorkflowOutboxDaemon} with an increasing delay. Entries that reached the maximum number
+ * of attempts are logged and removed by the daemon.
+ * <p>
+ * The service also removes the workflow resources of removed comments. Removals are run by a background thread once the transaction removing the comments
+ * is committed, so that they never extend it. Each workflow resource is removed in its own transaction by the workflow service, and the progress of the
+ * last removals is displayed in the administration of the comments.
+ * </p>
+ * 
+ */
+public final class CommentWorkflowService
+{
+    private static final String PROPERTY_ENABLED = "module.extend.comment.workflow.asynchronous.enabled";
+    private static final String PROPERTY_THREAD_POOL_SIZE = "module.extend.comment.workflow.asynchronous.threadPoolSize";
+    private static final String PROPERTY_QUEUE_CAPACITY = "module.extend.comment.workflow.asynchronous.queueCapacity";
+    private static final String PROPERTY_MAX_ATTEMPTS = "module.extend.comment.workflow.asynchronous.maxAttempts";
+    private static final String PROPERTY_RETRY_DELAY = "module.extend.comment.workflow.asynchronous.retryDelay";
+    private static final String PROPERTY_BATCH_SIZE = "module.extend.comment.workflow.asynchronous.batchSize";
+    private static final String PROPERTY_REMOVAL_CHUNK_SIZE = "module.extend.comment.workflow.removal.chunkSize";
+    private static final String BEAN_OUTBOX_DAO = "extend-comment.commentWorkflowOutboxDAO";
+    private static final String THREAD_NAME = "extend-comment-workflow";
+    private static final String THREAD_NAME_REMOVAL = "extend-comment-workflow-removal";
+    private static final int MAX_REMOVAL_JOBS_KEPT = 20;
+    private static final String LOG_PROCESSED_ENTRIES = "Processed entries : ";
+    private static final String LOG_ABANDONED_ENTRIES = ", abandoned entries : ";
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private static CommentWorkflowService _singleton = new CommentWorkflowService( );
+
+    private final boolean _bEnabled;
+    private final int _nMaxAttempts;
+    private final long _lRetryDelay;
+    private final int _nBatchSize;
+    private final int _nRemovalChunkSize;
+    private final ThreadPoolExecutor _executor;
+    private final ExecutorService _removalExecutor;
+    private final Deque<RemovalJob> _removalJobs = new ConcurrentLinkedDeque<>( );
+
+    /**
+     * Private constructor
+     */
+    private CommentWorkflowService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _nMaxAttempts = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_MAX_ATTEMPTS, 10 ) );
+        _lRetryDelay = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_RETRY_DELAY, 60000 ) );
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, 100 ) );
+        _nRemovalChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_REMOVAL_CHUNK_SIZE, 500 ) );
+
+        int nThreadPoolSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_THREAD_POOL_SIZE, 2 ) );
+        int nQueueCapacity = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_QUEUE_CAPACITY, 1000 ) );
+        _executor = new ThreadPoolExecutor( nThreadPoolSize, nThreadPoolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>( nQueueCapacity ),
+                runnable -> {
+                    Thread thread = new Thread( runnable, THREAD_NAME );
+                    thread.setDaemon( true );
+                    return thread;
+                } );
+        // Removals are run one at a time, so that a large removal does not delay the initialization of workflows
+        _removalExecutor = Executors.newSingleThreadExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME_REMOVAL );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the instance of the service
+     * 
+     * @return The instance of the service
+     */
+    public static CommentWorkflowService getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Stop the background threads. Workflows that are not initialized yet stay in the outbox and are initialized by the daemon.
+     */
+    public void shutdown( )
+    {
+        CommentShutdownService.shutdown( _executor );
+        CommentShutdownService.shutdown( _removalExecutor );
+    }
+
+    /**
+     * Check if workflows of created comments are initialized in the background
+     * 
+     * @return true if workflows are initialized in the background, false if they are initialized by the thread creating the comment
+     */
+    public boolean isAsynchronous( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Schedule the initialization of the workflow of a created comment. The comment is added to the outbox in the current transaction, and processed once the
+     * transaction is committed.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     */
+    public void schedule( int nIdComment )
+    {
+        // The daemon waits for the retry delay before processing the entry, to let the executor process it first
+        getOutboxDAO( ).insert( nIdComment, getDateNextAttempt( 0 ), CommentPlugin.getPlugin( ) );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    submit( nIdComment );
+                }
+            } );
+        }
+        else
+        {
+            submit( nIdComment );
+        }
+    }
+
+    /**
+     * Process entries of the outbox that are due, then remove entries that reached the maximum number of attempts. This method is called by the daemon.
+     * 
+     * @return A log of the processing, with the ids of the comments whose workflow was abandoned
+     */
+    public String processOutbox( )
+    {
+        ICommentWorkflowOutboxDAO outboxDAO = getOutboxDAO( );
+        List<CommentWorkflowOutboxEntry> listEntries = outboxDAO.findEntriesToProcess( new Timestamp( System.currentTimeMillis( ) ), _nMaxAttempts,
+                _nBatchSize, CommentPlugin.getPlugin( ) );
+        int nProcessedEntries = 0;
+        for ( CommentWorkflowOutboxEntry entry : listEntries )
+        {
+            if ( process( entry.getIdComment( ), entry.getNbAttempts( ) ) )
+            {
+                nProcessedEntries++;
+            }
+        }
+
+        // The workflow of these comments must be initialized by an administrator
+        List<Integer> listIdAbandonedComments = new ArrayList<>( );
+        for ( CommentWorkflowOutboxEntry entry : outboxDAO.findExhaustedEntries( new Timestamp( System.currentTimeMillis( ) ), _nMaxAttempts, _nBatchSize,
+                CommentPlugin.getPlugin( ) ) )
+        {
+            AppLogService.error( "The workflow of the comment " + entry.getIdComment( ) + " could not be initialized after " + entry.getNbAttempts( )
+                    + " attempts, it is abandoned" );
+            outboxDAO.delete( entry.getIdComment( ), CommentPlugin.getPlugin( ) );
+            listIdAbandonedComments.add( entry.getIdComment( ) );
+        }
+
+        String strLog = LOG_PROCESSED_ENTRIES + nProcessedEntries + "/" + listEntries.size( );
+        return listIdAbandonedComments.isEmpty( ) ? strLog : ( strLog + LOG_ABANDONED_ENTRIES + listIdAbandonedComments );
+    }
+
+    /**
+     * Remove the workflow resources of removed comments. The removal is run in the background once the current transaction is committed, and this method
+     * returns immediately.
+     * 
+     * @param listIdComments
+     *            The ids of the removed comments
+     * @param strResourceType
+     *            The workflow resource type of the comments
+     */
+    public void removeWorkflowResources( List<Integer> listIdComments, String strResourceType )
+    {
+        if ( listIdComments.isEmpty( ) || !WorkflowService.getInstance( ).isAvailable( ) )
+        {
+            return;
+        }
+
+        RemovalJob job = new RemovalJob( new ArrayList<>( listIdComments ), strResourceType );
+        if ( TransactionSynchronizationManager.isSynchronizationActive( ) )
+        {
+            TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronization( )
+            {
+                @Override
+                public void afterCommit( )
+                {
+                    submitRemoval( job );
+                }
+            } );
+        }
+        else
+        {
+            submitRemoval( job );
+        }
+    }
+
+    /**
+     * Get the last removal jobs, most recent first. Only the last jobs are kept.
+     * 
+     * @return The removal jobs
+     */
+    public List<RemovalJob> getRemovalJobs( )
+    {
+        return Collections.unmodifiableList( new ArrayList<>( _removalJobs ) );
+    }
+
+    /**
+     * Submit a removal job to the background thread
+     * 
+     * @param job
+     *            The job
+     */
+    private void submitRemoval( RemovalJob job )
+    {
+        _removalJobs.addFirst( job );
+        while ( _removalJobs.size( ) > MAX_REMOVAL_JOBS_KEPT )
+        {
+            _removalJobs.pollLast( );
+        }
+        try
+        {
+            _removalExecutor.execute( ( ) -> job.run( _nRemovalChunkSize ) );
+        }
+        catch( RejectedExecutionException e )
+        {
+            job.cancel( );
+            AppLogService.error( "The server is stopping, the workflow resources of " + job.getTotalCount( ) + " removed comments are not removed" );
+        }
+    }
+
+    /**
+     * Submit the first attempt of an entry to the executor. If the queue is full, the entry is left to the daemon.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     */
+    private void submit( int nIdComment )
+    {
+        try
+        {
+            _executor.execute( ( ) -> process( nIdComment, 0 ) );
+        }
+        catch( RejectedExecutionException e )
+        {
+            AppLogService.info( "Workflow queue is full, the workflow of the comment " + nIdComment + " will be initialized by the daemon" );
+        }
+    }
+
+    /**
+     * Make an attempt to initialize the workflow of a comment. The entry is claimed first, so that two threads can not process the same attempt.
+     * 
+     * @param nIdComment
+     *            The id of the comment
+     * @param nNbAttempts
+     *            The number of attempts already made
+     * @return true if the workflow has been initialized, false otherwise
+     */
+    private boolean process( int nIdComment, int nNbAttempts )
+    {
+        ICommentWorkflowOutboxDAO outboxDAO = getOutboxDAO( );
+        if ( !outboxDAO.claim( nIdComment, nNbAttempts, getDateNextAttempt( nNbAttempts + 1 ), CommentPlugin.getPlugin( ) ) )
+        {
+            return false;
+        }
+
+        try
+        {
+            ICommentService commentService = SpringContextService.getBean( CommentService.BEAN_SERVICE );
+            commentService.processWorkflow( nIdComment );
+            outboxDAO.delete( nIdComment, CommentPlugin.getPlugin( ) );
+            return true;
+        }
+        catch( Exception e )
+        {
+            AppLogService.error( "Unable to initialize the workflow of the comment " + nIdComment + " (attempt " + ( nNbAttempts + 1 ) + "/" + _nMaxAttempts
+                    + ")", e );
+            return false;
+        }
+    }
+
+    /**
+     * Get the date of the next attempt. The delay doubles with each attempt.
+     * 
+     * @param nNbAttempts
+     *            The number of attempts made
+     * @return The date of the next attempt
+     */
+    private Timestamp getDateNextAttempt( int nNbAttempts )
+    {
+        return new Timestamp( System.currentTimeMillis( ) + ( _lRetryDelay << Math.min( Math.max( 0, nNbAttempts - 1 ), MAX_BACKOFF_SHIFT ) ) );
+    }
+
+    /**
+     * Get the outbox DAO
+     * 
+     * @return The outbox DAO
+     */
+    private static ICommentWorkflowOutboxDAO getOutboxDAO( )
+    {
+        return SpringContextService.getBean( BEAN_OUTBOX_DAO );
+    }
+
+    /**
+     * Removal of the workflow resources of a list of comments, with its progress
+     */
+    public static final class RemovalJob
+    {
+        private final List<Integer> _listIdComments;
+        private final String _strResourceType;
+        private final long _lDateCreation = System.currentTimeMillis( );
+        private final AtomicInteger _nRemoved = new AtomicInteger( );
+        private final AtomicInteger _nFailed = new AtomicInteger( );
+        private volatile boolean _bDone;
+        private volatile boolean _bCancelled;
+
+        /**
+         * Constructor
+         * 
+         * @param listIdComments
+         *            The ids of the removed comments
+         * @param strResourceType
+         *            The workflow resource type of the comments
+         */
+        private RemovalJob( List<Integer> listIdComments, String strResourceType )
+        {
+            _listIdComments = listIdComments;
+            _strResourceType = strResourceType;
+        }
+
+        /**
+         * @return the workflow resource type of the comments
+         */
+        public String getResourceType( )
+        {
+            return _strResourceType;
+        }
+
+        /**
+         * @return the date of creation of the job, in milliseconds
+         */
+        public long getDateCreation( )
+        {
+            return _lDateCreation;
+        }
+
+        /**
+         * @return the number of workflow resources to remove
+         */
+        public int getTotalCount( )
+        {
+            return _listIdComments.size( );
+        }
+
+        /**
+         * @return the number of workflow resources removed
+         */
+        public int getRemovedCount( )
+        {
+            return _nRemoved.get( );
+        }
+
+        /**
+         * @return the number of workflow resources that could not be removed
+         */
+        public int getFailedCount( )
+        {
+            return _nFailed.get( );
+        }
+
+        /**
+         * @return true if the job is over
+         */
+        public boolean isDone( )
+        {
+            return _bDone;
+        }
+
+        /**
+         * @return true if the job has been stopped before every workflow resource is removed
+         */
+        public boolean isCancelled( )
+        {
+            return _bCancelled;
+        }
+
+        /**
+         * Mark the job as stopped before its end
+         */
+        private void cancel( )
+        {
+            _bCancelled = true;
+            _bDone = true;
+        }
+
+        /**
+         * Remove the workflow resources. Each resource is removed in its own transaction by the workflow service. The progress is logged, and the job
+         * stops if the server is stopping, after each chunk.
+         * 
+         * @param nChunkSize
+         *            The number of resources of a chunk
+         */
+        private void run( int nChunkSize )
+        {
+            try
+            {
+                for ( int nFrom = 0; nFrom < _listIdComments.size( ); nFrom += nChunkSize )
+                {
+                    if ( Thread.currentThread( ).isInterrupted( ) )
+                    {
+                        _bCancelled = true;
+                        AppLogService.error( "The server is stopping, the workflow resources of " + ( getTotalCount( ) - nFrom )
+                                + " removed comments are not removed" );
+                        return;
+                    }
+
+                    for ( int nIdComment : _listIdComments.subList( nFrom, Math.min( nFrom + nChunkSize, _listIdComments.size( ) ) ) )
+                    {
+                        try
+                        {
+                            WorkflowService.getInstance( ).doRemoveWorkFlowResource( nIdComment, _strResourceType );
+                            _nRemoved.incrementAndGet( );
+                        }
+                        catch( Exception e )
+                        {
+                            _nFailed.incrementAndGet( );
+                            AppLogService.error( "Unable to remove the workflow resource of the comment " + nIdComment, e );
+                        }
+                    }
+                    AppLogService.debug( "Workflow resources of comments removed : " + ( _nRemoved.get( ) + _nFailed.get( ) ) + "/" + getTotalCount( ) );
+                }
+            }
+            finally
+            {
+                _bDone = true;
+            }
+        }
+    }
+}
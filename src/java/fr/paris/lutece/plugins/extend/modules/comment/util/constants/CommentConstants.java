@@ -50,6 +50,7 @@ public final class CommentConstants
     public static final String PROPERTY_DEFAULT_LIST_COMMENTS_PER_PAGE = "module.extend.comment.commentInfo.itemsPerPage";
     public static final String PROPERTY_USE_CAPTCHA = "module.extend.comment.useCaptcha";
     public static final String PROPERTY_USE_LUTECE_USER_NAME_AS_AVATAR_KEY = "module.extend.comment.useLuteceUserNameAsAvatarKey";
+    public static final String PROPERTY_INFINITE_SCROLL_ENABLED = "module.extend.comment.infiniteScroll.enabled";
     public static final String PROPERTY_COMMENT_ALL_STATE = "module.extend.comment.comment_info.commentAllState";
     public static final String PROPERTY_COMMENT_STATE_PUBLISHED = "module.extend.comment.comment_info.statePublished";
     public static final String PROPERTY_COMMENT_STATE_UN_PUBLISHED = "module.extend.comment.comment_info.stateNotPublished";
@@ -62,6 +63,7 @@ public final class CommentConstants
 
     // MESSAGES
     public static final String MESSAGE_CONFIRM_REMOVE_COMMENT = "module.extend.comment.message.confirm.removeComment";
+    public static final String MESSAGE_CONFIRM_REMOVE_COMMENTS = "module.extend.comment.message.confirm.removeComments";
     public static final String MESSAGE_ERROR_GENERIC_MESSAGE = "module.extend.comment.message.error.genericMessage";
     public static final String MESSAGE_NOTIFY_SUBJECT = "module.extend.comment.message.notify.subject";
     public static final String MESSAGE_ERROR_CANNOT_DELETE = "module.extend.comment.message.error.cannotDelete";
@@ -72,23 +74,34 @@ public final class CommentConstants
     public static final String PARAMETER_ID_EXTENDABLE_RESOURCE = "idExtendableResource";
     public static final String PARAMETER_EXTENDABLE_RESOURCE_TYPE = "extendableResourceType";
     public static final String PARAMETER_ID_COMMENT = "idComment";
+    public static final String PARAMETER_BULK_ACTION = "bulkAction";
+    public static final String PARAMETER_REMOVAL_TOKEN = "removalToken";
+    public static final String PARAMETER_EXPORT_FORMAT = "exportFormat";
+    public static final String PARAMETER_DATE_FROM = "dateFrom";
+    public static final String PARAMETER_DATE_TO = "dateTo";
+    public static final String PARAMETER_ID_EXPORT = "idExport";
     public static final String PARAMETER_REFERER = "referer";
     public static final String PARAMETER_FROM_URL = "from_url";
     public static final String PARAMETER_AUTHORIZE_SUB_COMMENTS = "authorizeSubComments";
     public static final String PARAMETER_NAME = "name";
     public static final String PARAMETER_VIEW_ALL_RESOURCES = "viewAllResources";
     public static final String PARAMETER_FILTER_STATE = "filterState";
+    public static final String PARAMETER_SEARCH_TEXT = "searchText";
+    public static final String PARAMETER_SEARCH_AUTHOR = "searchAuthor";
     public static final String PARAMETER_FILTER_PINNED = "filterPinned";
     public static final String PARAMETER_FILTER_MARK_AS_IMPORTANT = "filterMarkAsImportant";
     public static final String PARAMETER_CONFIRM_REMOVE_COMMENT = "confirm_remove_comment";
     public static final String PARAMETER_PAGE = "page";
     public static final String PARAMETER_ID_ACTION = "id_action";
+    public static final String PARAMETER_CONTINUATION_TOKEN = "continuation";
 
     // BEANS
     public static final String BEAN_CONFIG_SERVICE = "extend-comment.commentExtenderConfigService";
+    public static final String BEAN_COMMENT_DAO = "extend-comment.commentDAO";
 
     // MARKS
     public static final String MARK_LIST_COMMENTS = "listComments";
+    public static final String MARK_LIST_PINNED_COMMENTS = "listPinnedComments";
     public static final String MARK_ID_EXTENDABLE_RESOURCE = "idExtendableResource";
     public static final String MARK_EXTENDABLE_RESOURCE_TYPE = "extendableResourceType";
     public static final String MARK_COMMENT_CONFIG = "commentConfig";
@@ -125,9 +138,17 @@ public final class CommentConstants
     public static final String MARK_CAPTCHA = "captcha";
     public static final String MARK_IS_ACTIVE_CAPTCHA = "is_active_captcha";
     public static final String MARK_FILTER_STATE = "filterState";
+    public static final String MARK_SEARCH_ENABLED = "searchEnabled";
+    public static final String MARK_SEARCH_TEXT = "searchText";
+    public static final String MARK_SEARCH_AUTHOR = "searchAuthor";
+    public static final String MARK_LIST_REMOVAL_JOBS = "listRemovalJobs";
     public static final String MARK_FILTER_PINNED = "filterPinned";
     public static final String MARK_FILTER_MARK_AS_IMPORTANT = "filterMarkAsImportant";
     public static final String MARK_COMMENT_CLOSED = "commentClosed";
+    public static final String MARK_INFINITE_SCROLL = "infiniteScroll";
+    public static final String MARK_CONTINUATION_TOKEN = "continuationToken";
+    public static final String MARK_NEXT_SLICE_URL = "nextSliceUrl";
+    public static final String MARK_LIVE_URL = "liveUrl";
 
     // ACTIONS
     public static final String ACTION_ADD_COMMENT = "addComment";
@@ -159,6 +180,7 @@ public final class CommentConstants
     public static final String PARAMETER_POST_BACK_URL = "postBackUrl";
     public static final String SESSION_COMMENT_ADMIN_POST_BACK_URL = "adminInfoPostBackUrl";
     public static final String SESSION_COMMENT_ADD_MESSAGE_RESULT = "addCommentMessageResult";
+    public static final String SESSION_COMMENT_ADMIN_COMMENTS_TO_REMOVE = "adminCommentsToRemove";
 
     public static final String MARK_NICKNAME = "nickname";
     public static final String JCAPTCHA_PLUGIN = "jcaptcha";
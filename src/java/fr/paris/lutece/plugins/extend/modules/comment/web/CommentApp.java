@@ -35,7 +35,6 @@ package fr.paris.lutece.plugins.extend.modules.comment.web;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -52,25 +51,24 @@ import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.extend.modules.comment.business.AddCommentPosition;
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentSlice;
 import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentAvatarService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentListenerService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentNotificationService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.ICommentService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.extender.CommentResourceExtender;
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveService;
 import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
 import fr.paris.lutece.plugins.extend.service.ExtendPlugin;
-import fr.paris.lutece.plugins.extend.service.extender.IResourceExtenderService;
-import fr.paris.lutece.plugins.extend.service.extender.ResourceExtenderService;
 import fr.paris.lutece.plugins.extend.service.extender.config.IResourceExtenderConfigService;
 import fr.paris.lutece.plugins.extend.service.extender.history.IResourceExtenderHistoryService;
 import fr.paris.lutece.plugins.extend.service.extender.history.ResourceExtenderHistoryService;
-import fr.paris.lutece.portal.business.mailinglist.Recipient;
 import fr.paris.lutece.portal.service.captcha.CaptchaSecurityService;
-import fr.paris.lutece.portal.service.content.XPageAppService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
-import fr.paris.lutece.portal.service.mail.MailService;
-import fr.paris.lutece.portal.service.mailinglist.AdminMailingListService;
 import fr.paris.lutece.portal.service.message.AdminMessage;
 import fr.paris.lutece.portal.service.message.AdminMessageService;
 import fr.paris.lutece.portal.service.message.SiteMessage;
@@ -124,11 +122,11 @@ public class CommentApp implements XPageApplication
     private static final String TEMPLATE_XPAGE_VIEW_COMMENTS = "skin/plugins/extend/modules/comment/view_comments.html";
     private static final String TEMPLATE_XPAGE_ADD_COMMENT = "skin/plugins/extend/modules/comment/add_comment.html";
     private static final String TEMPLATE_XPAGE_MESSAGE_COMMENT_CREATED = "skin/plugins/extend/modules/comment/message_comment_created.html";
-    private static final String TEMPLATE_COMMENT_NOTIFY_MESSAGE = "skin/plugins/extend/modules/comment/comment_notify_message.html";
 
     // Jsp redirections
     private static final String JSP_PORTAL = "jsp/site/Portal.jsp";
     private static final String JSP_URL_DEFAULT_POST_BACK = "jsp/site/Portal.jsp?page=extend-comment";
+    private static final String SERVLET_URL_LIVE = "servlet/plugins/extend/comment/live";
 
     // CONSTANTS
     private static final String JCAPTCHA_PLUGIN = "jcaptcha";
@@ -139,7 +137,6 @@ public class CommentApp implements XPageApplication
     // VARIABLES
     private static ICommentService _commentService;
     private static IResourceExtenderConfigService _configService;
-    private static IResourceExtenderService _resourceExtenderService;
     private static IResourceExtenderHistoryService _resourceHistoryService;
 
     private static int _nDefaultItemsPerPage;
@@ -305,20 +302,53 @@ public class CommentApp implements XPageApplication
             bEnableAuthMode = config.isEnabledAuthMode( );
             strAdminBadge = config.getAdminBadge( );
         }
-        int nItemsOffset = nItemsPerPage * ( Integer.parseInt( strCurrentPageIndex ) - 1 );
+        Map<String, Object> model = new HashMap<String, Object>( );
+        boolean bInfiniteScroll = AppPropertiesService.getPropertyBoolean( CommentConstants.PROPERTY_INFINITE_SCROLL_ENABLED, false );
+        if ( bInfiniteScroll )
+        {
+            // The following comments are fetched with a continuation token instead of an offset
+            CommentFilter commentFilter = new CommentFilter( );
+            commentFilter.setCommentState( Comment.COMMENT_STATE_PUBLISHED );
+            commentFilter.setAscSort( bIsAscSort );
 
-        List<Comment> listItems = getCommentService( ).findByResource( strIdExtendableResource, strExtendableResourceType, true, null, bIsAscSort, nItemsOffset,
-                nItemsPerPage, bGetSubComments );
+            CommentSlice slice = getCommentService( ).findByResource( strIdExtendableResource, strExtendableResourceType, commentFilter,
+                    request.getParameter( CommentConstants.PARAMETER_CONTINUATION_TOKEN ), nItemsPerPage, bGetSubComments );
 
-        int nItemsCount = getCommentService( ).getCommentNb( strIdExtendableResource, strExtendableResourceType, true, true );
+            if ( slice.hasMore( ) )
+            {
+                UrlItem urlNextSlice = new UrlItem( urlSort.getUrl( ) );
+                urlNextSlice.addParameter( CommentConstants.PARAMETER_CONTINUATION_TOKEN, slice.getContinuationToken( ) );
+                model.put( CommentConstants.MARK_NEXT_SLICE_URL, urlNextSlice.getUrl( ) );
+            }
+            CommentAvatarService.getInstance( ).getAvatars( slice.getListComments( ) );
+            model.put( CommentConstants.MARK_LIST_COMMENTS, slice.getListComments( ) );
+        }
+        else
+        {
+            int nItemsOffset = nItemsPerPage * ( Integer.parseInt( strCurrentPageIndex ) - 1 );
 
-        IPaginator<Comment> paginator = new LocalizedDelegatePaginator<Comment>( listItems, nItemsPerPage, urlSort.getUrl( ), Paginator.PARAMETER_PAGE_INDEX,
-                strCurrentPageIndex, nItemsCount, request.getLocale( ) );
+            List<Comment> listItems = getCommentService( ).findByResource( strIdExtendableResource, strExtendableResourceType, true, null, bIsAscSort,
+                    nItemsOffset, nItemsPerPage, bGetSubComments );
+            CommentAvatarService.getInstance( ).getAvatars( listItems );
 
-        Map<String, Object> model = new HashMap<String, Object>( );
+            int nItemsCount = getCommentService( ).getCommentNb( strIdExtendableResource, strExtendableResourceType, true, true );
+
+            IPaginator<Comment> paginator = new LocalizedDelegatePaginator<Comment>( listItems, nItemsPerPage, urlSort.getUrl( ),
+                    Paginator.PARAMETER_PAGE_INDEX, strCurrentPageIndex, nItemsCount, request.getLocale( ) );
+            model.put( CommentConstants.MARK_PAGINATOR, paginator );
+        }
+
+        model.put( CommentConstants.MARK_INFINITE_SCROLL, bInfiniteScroll );
+        if ( CommentLiveService.getInstance( ).isEnabled( ) )
+        {
+            // Clients are notified of the comments published while the page is displayed
+            UrlItem urlLive = new UrlItem( SERVLET_URL_LIVE );
+            urlLive.addParameter( CommentConstants.PARAMETER_ID_EXTENDABLE_RESOURCE, strIdExtendableResource );
+            urlLive.addParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE, strExtendableResourceType );
+            model.put( CommentConstants.MARK_LIVE_URL, urlLive.getUrl( ) );
+        }
         model.put( CommentConstants.MARK_ID_EXTENDABLE_RESOURCE, strIdExtendableResource );
         model.put( CommentConstants.MARK_EXTENDABLE_RESOURCE_TYPE, strExtendableResourceType );
-        model.put( CommentConstants.MARK_PAGINATOR, paginator );
         model.put( CommentConstants.MARK_ASC_SORT, strSort );
         model.put( CommentConstants.PARAMETER_FROM_URL, strFromUrl );
         model.put( CommentConstants.PARAMETER_ID_COMMENT, request.getParameter( CommentConstants.PARAMETER_ID_COMMENT ) );
@@ -588,8 +618,8 @@ public class CommentApp implements XPageApplication
                 getResourceExtenderHistoryService( ).create( CommentResourceExtender.EXTENDER_TYPE_COMMENT, strIdExtendableResource, strExtendableResourceType,
                         request );
 
-                // Notify the mailing list
-                sendCommentNotification( request, comment, config );
+                // Notify the mailing list in the background
+                CommentNotificationService.getInstance( ).notify( comment, config, request.getLocale( ), AppPathService.getBaseUrl( request ) );
 
                 XPage page = new XPage( );
                 page.setTitle( I18nService.getLocalizedString( CommentConstants.PROPERTY_XPAGE_ADD_COMMENT_PAGE_TITLE, request.getLocale( ) ) );
@@ -684,53 +714,6 @@ public class CommentApp implements XPageApplication
         return sbError.toString( );
     }
 
-    /**
-     * Send comment notification.
-     * 
-     * @param request
-     *            the request
-     * @param comment
-     *            the document comment
-     * @param config
-     *            the config
-     */
-    private void sendCommentNotification( HttpServletRequest request, Comment comment, CommentExtenderConfig config )
-    {
-        int nMailingListId = config.getIdMailingList( );
-        Collection<Recipient> listRecipients = AdminMailingListService.getRecipients( nMailingListId );
-
-        for ( Recipient recipient : listRecipients )
-        {
-            Map<String, Object> model = new HashMap<String, Object>( );
-
-            String strSenderEmail = comment.getEmail( );
-            String strSenderName = comment.getName( );
-            String strResourceName = getResourceExtenderService( ).getExtendableResourceName( comment.getIdExtendableResource( ),
-                    comment.getExtendableResourceType( ) );
-
-            Object [ ] params = {
-                    strResourceName
-            };
-            String strSubject = I18nService.getLocalizedString( CommentConstants.MESSAGE_NOTIFY_SUBJECT, params, request.getLocale( ) );
-
-            UrlItem url = new UrlItem( AppPathService.getBaseUrl( request ) + AppPathService.getPortalUrl( ) );
-            url.addParameter( XPageAppService.PARAM_XPAGE_APP, CommentPlugin.PLUGIN_NAME );
-            url.addParameter( CommentConstants.PARAMETER_ID_EXTENDABLE_RESOURCE, comment.getIdExtendableResource( ) );
-            url.addParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE, comment.getExtendableResourceType( ) );
-
-            model.put( CommentConstants.MARK_ID_EXTENDABLE_RESOURCE, comment.getIdExtendableResource( ) );
-            model.put( CommentConstants.MARK_EXTENDABLE_RESOURCE_TYPE, comment.getExtendableResourceType( ) );
-            model.put( CommentConstants.MARK_RESOURCE_EXTENDER_NAME, strResourceName );
-            model.put( CommentConstants.MARK_RESOURCE_EXTENDER_URL, url.getUrl( ) );
-            model.put( CommentConstants.MARK_COMMENT, comment );
-
-            HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_COMMENT_NOTIFY_MESSAGE, request.getLocale( ), model );
-            String strBody = template.getHtml( );
-
-            MailService.sendMailHtml( recipient.getEmail( ), strSenderName, strSenderEmail, strSubject, strBody );
-        }
-    }
-
     /**
      * Get the default number of items per page
      * 
@@ -773,20 +756,6 @@ public class CommentApp implements XPageApplication
         return _configService;
     }
 
-    /**
-     * Get the resource extender service
-     * 
-     * @return the resource extender service
-     */
-    private static IResourceExtenderService getResourceExtenderService( )
-    {
-        if ( _resourceExtenderService == null )
-        {
-            _resourceExtenderService = SpringContextService.getBean( ResourceExtenderService.BEAN_SERVICE );
-        }
-        return _resourceExtenderService;
-    }
-
     /**
      * Get the resource extender history service
      * 
@@ -33,22 +33,35 @@
  */
 package fr.paris.lutece.plugins.extend.modules.comment.web;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.extend.business.extender.ResourceExtenderDTO;
 import fr.paris.lutece.plugins.extend.business.extender.ResourceExtenderDTOFilter;
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.ICommentService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.export.CommentExportParameters;
+import fr.paris.lutece.plugins.extend.modules.comment.service.export.CommentExportService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.export.CommentExportService.ExportJob;
 import fr.paris.lutece.plugins.extend.modules.comment.service.extender.CommentResourceExtender;
 import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
 import fr.paris.lutece.plugins.extend.service.extender.IResourceExtenderService;
@@ -87,11 +100,16 @@ public class CommentJspBean extends PluginAdminPageJspBean
     // JSP
     private static final String JSP_VIEW_EXTENDER_INFO = "../../ViewExtenderInfo.jsp";
     private static final String JSP_URL_DO_REMOVE_COMMENT = "jsp/admin/plugins/extend/modules/comment/DoRemoveComment.jsp";
+    private static final String JSP_URL_DO_BULK_ACTION_COMMENTS = "jsp/admin/plugins/extend/modules/comment/DoBulkActionComments.jsp";
+    private static final String JSP_URL_DO_DOWNLOAD_EXPORT_COMMENTS = "jsp/admin/plugins/extend/modules/comment/DoDownloadExportComments.jsp";
     private static final String JSP_VIEW_TASKS_FORM = "../comment/GetTasksFormWorkflow.jsp";
     
     // MESSAGES
     private static final String MESSAGE_MANDATORY_FIELD = "portal.util.message.mandatoryField";
     private static final String MESSAGE_TITLE_CREATE_COMMENT = "module.extend.comment.create_comment.pageTitle";
+    private static final String MESSAGE_EXPORT_STARTED = "module.extend.comment.message.info.exportStarted";
+    private static final String MESSAGE_EXPORT_IN_PROGRESS = "module.extend.comment.message.info.exportInProgress";
+    private static final String MESSAGE_EXPORT_NOT_FOUND = "module.extend.comment.message.stop.exportNotFound";
 
     // TEMPLATE
     private static final String TEMPLATE_CREATE_COMMENT = "admin/plugins/extend/modules/comment/create_comment.html";
@@ -100,8 +118,22 @@ public class CommentJspBean extends PluginAdminPageJspBean
     // MARKS
     private static final String MARK_TASK_FORM = "tasks_form";
     
+    // BULK ACTIONS
+    private static final String BULK_ACTION_PUBLISH = "publish";
+    private static final String BULK_ACTION_UNPUBLISH = "unpublish";
+    private static final String BULK_ACTION_FLAG_IMPORTANT = "flagImportant";
+    private static final String BULK_ACTION_CANCEL_FLAG_IMPORTANT = "cancelFlagImportant";
+    private static final String BULK_ACTION_PIN = "pin";
+    private static final String BULK_ACTION_CANCEL_PIN = "cancelPin";
+    private static final String BULK_ACTION_REMOVE = "remove";
+    private static final String BULK_ACTION_CONFIRM_REMOVE = "confirmRemove";
+
     // CONSTANT
     private static final String CONSTANT_SPACE = " ";
+    private static final String CONSTANT_EXPORT_FILE_NAME = "comments-";
+    private static final String PATTERN_EXPORT_DATE = "yyyy-MM-dd";
+    private static final String REGEX_UNSAFE_FILE_NAME_CHARACTERS = "[^A-Za-z0-9_-]";
+    private static final String HEADER_CONTENT_DISPOSITION = "Content-Disposition";
 
     private ICommentService _commentService = SpringContextService.getBean( CommentService.BEAN_SERVICE );
     private IResourceExtenderHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceExtenderHistoryService.BEAN_SERVICE );
@@ -279,6 +311,385 @@ public class CommentJspBean extends PluginAdminPageJspBean
         return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
     }
 
+    /**
+     * Do apply an action to every selected comment. Comments are updated with a single query, and the removal of comments must be confirmed first. The
+     * comments to remove are kept in the session during the confirmation, as a large selection would not fit in the url of the confirmation.
+     * 
+     * @param request
+     *            the request
+     * @return the url to redirect to
+     */
+    public String doBulkAction( HttpServletRequest request )
+    {
+        String strBulkAction = request.getParameter( CommentConstants.PARAMETER_BULK_ACTION );
+        List<Integer> listIdComments = BULK_ACTION_CONFIRM_REMOVE.equals( strBulkAction ) ? getCommentsToRemove( request )
+                : getSelectedComments( request );
+
+        if ( StringUtils.isBlank( strBulkAction ) || listIdComments.isEmpty( ) )
+        {
+            return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+        }
+
+        if ( BULK_ACTION_REMOVE.equals( strBulkAction ) )
+        {
+            return getConfirmRemoveComments( request, listIdComments );
+        }
+
+        // The first comment is loaded before its removal, so that the user can be redirected to its resource
+        Comment comment = _commentService.findByPrimaryKey( listIdComments.get( 0 ) );
+        if ( comment == null )
+        {
+            return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+        }
+
+        try
+        {
+            switch( strBulkAction )
+            {
+                case BULK_ACTION_PUBLISH:
+                    _commentService.updateCommentStatus( listIdComments, true );
+                    break;
+                case BULK_ACTION_UNPUBLISH:
+                    _commentService.updateCommentStatus( listIdComments, false );
+                    break;
+                case BULK_ACTION_FLAG_IMPORTANT:
+                    _commentService.updateFlagImportant( listIdComments, true );
+                    break;
+                case BULK_ACTION_CANCEL_FLAG_IMPORTANT:
+                    _commentService.updateFlagImportant( listIdComments, false );
+                    break;
+                case BULK_ACTION_PIN:
+                    _commentService.updateCommentPinned( listIdComments, true );
+                    break;
+                case BULK_ACTION_CANCEL_PIN:
+                    _commentService.updateCommentPinned( listIdComments, false );
+                    break;
+                case BULK_ACTION_CONFIRM_REMOVE:
+                    _commentService.remove( listIdComments );
+                    break;
+                default:
+                    return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+            }
+        }
+        catch( Exception ex )
+        {
+            // Something wrong happened... a database check might be needed
+            AppLogService.error( ex.getMessage( ) + " when updating comments", ex );
+
+            return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_ERROR_GENERIC_MESSAGE, AdminMessage.TYPE_ERROR );
+        }
+
+        return getPostBackUrl( request, comment );
+    }
+
+    /**
+     * Do reorder the pinned comments of a resource. The ids of the comments are given in the order in which they must be displayed.
+     * 
+     * @param request
+     *            the request
+     * @return the url to redirect to
+     */
+    public String doReorderPinnedComments( HttpServletRequest request )
+    {
+        String strIdExtendableResource = request.getParameter( CommentConstants.PARAMETER_ID_EXTENDABLE_RESOURCE );
+        String strExtendableResourceType = request.getParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE );
+        String [ ] arrayIdComments = request.getParameterValues( CommentConstants.PARAMETER_ID_COMMENT );
+
+        if ( StringUtils.isBlank( strIdExtendableResource ) || StringUtils.isBlank( strExtendableResourceType ) || arrayIdComments == null )
+        {
+            return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+        }
+
+        List<Integer> listIdComments = new ArrayList<>( );
+        for ( String strIdComment : arrayIdComments )
+        {
+            if ( StringUtils.isNotBlank( strIdComment ) && StringUtils.isNumeric( strIdComment ) )
+            {
+                listIdComments.add( Integer.parseInt( strIdComment ) );
+            }
+        }
+
+        try
+        {
+            _commentService.updatePinnedCommentsOrder( strIdExtendableResource, strExtendableResourceType, listIdComments );
+        }
+        catch( Exception ex )
+        {
+            // Something wrong happened... a database check might be needed
+            AppLogService.error( ex.getMessage( ) + " when updating comments", ex );
+
+            return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_ERROR_GENERIC_MESSAGE, AdminMessage.TYPE_ERROR );
+        }
+
+        Comment comment = new Comment( );
+        comment.setIdExtendableResource( strIdExtendableResource );
+        comment.setExtendableResourceType( strExtendableResourceType );
+
+        return getPostBackUrl( request, comment );
+    }
+
+    /**
+     * Do export the comments of a resource type. The export is written to the response, unless it is large enough to be run in the background.
+     * 
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @return the url to redirect to, or null if the export has been written to the response
+     */
+    public String doExportComments( HttpServletRequest request, HttpServletResponse response )
+    {
+        CommentExportParameters parameters = getExportParameters( request );
+        if ( parameters == null )
+        {
+            return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+        }
+
+        CommentExportService exportService = CommentExportService.getInstance( );
+        try
+        {
+            if ( exportService.isAsynchronous( parameters ) )
+            {
+                ExportJob job = exportService.startExport( parameters, getUser( ) );
+                UrlItem url = new UrlItem( JSP_URL_DO_DOWNLOAD_EXPORT_COMMENTS );
+                url.addParameter( CommentConstants.PARAMETER_ID_EXPORT, job.getId( ) );
+
+                return AdminMessageService.getMessageUrl( request, MESSAGE_EXPORT_STARTED, url.getUrl( ), AdminMessage.TYPE_INFO );
+            }
+
+            setExportHeaders( response, parameters );
+            exportService.export( parameters, response.getOutputStream( ) );
+        }
+        catch( IOException ex )
+        {
+            AppLogService.error( ex.getMessage( ) + " when exporting comments", ex );
+            if ( !response.isCommitted( ) )
+            {
+                return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_ERROR_GENERIC_MESSAGE, AdminMessage.TYPE_ERROR );
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Do download an export run in the background.
+     * 
+     * @param request
+     *            the request
+     * @param response
+     *            the response
+     * @return the url to redirect to, or null if the export has been written to the response
+     */
+    public String doDownloadExportComments( HttpServletRequest request, HttpServletResponse response )
+    {
+        String strIdExport = request.getParameter( CommentConstants.PARAMETER_ID_EXPORT );
+        ExportJob job = CommentExportService.getInstance( ).getExportJob( strIdExport, getUser( ) );
+        if ( job == null )
+        {
+            return AdminMessageService.getMessageUrl( request, MESSAGE_EXPORT_NOT_FOUND, AdminMessage.TYPE_STOP );
+        }
+        if ( job.isFailed( ) )
+        {
+            return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_ERROR_GENERIC_MESSAGE, AdminMessage.TYPE_ERROR );
+        }
+        if ( !job.isDone( ) )
+        {
+            UrlItem url = new UrlItem( JSP_URL_DO_DOWNLOAD_EXPORT_COMMENTS );
+            url.addParameter( CommentConstants.PARAMETER_ID_EXPORT, job.getId( ) );
+            Object [ ] messageArgs = {
+                    job.getExportedCount( )
+            };
+
+            return AdminMessageService.getMessageUrl( request, MESSAGE_EXPORT_IN_PROGRESS, messageArgs, url.getUrl( ), AdminMessage.TYPE_INFO );
+        }
+
+        try
+        {
+            setExportHeaders( response, job.getParameters( ) );
+            response.setContentLengthLong( job.getFile( ).length( ) );
+            Files.copy( job.getFile( ).toPath( ), response.getOutputStream( ) );
+        }
+        catch( IOException ex )
+        {
+            AppLogService.error( ex.getMessage( ) + " when downloading an export of comments", ex );
+            if ( !response.isCommitted( ) )
+            {
+                return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_ERROR_GENERIC_MESSAGE, AdminMessage.TYPE_ERROR );
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the parameters of an export from the request.
+     * 
+     * @param request
+     *            the request
+     * @return the parameters, or null if the resource type or the format are missing or invalid
+     */
+    private CommentExportParameters getExportParameters( HttpServletRequest request )
+    {
+        String strExtendableResourceType = request.getParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE );
+        String strFormat = StringUtils.defaultIfBlank( request.getParameter( CommentConstants.PARAMETER_EXPORT_FORMAT ), CommentExportService.FORMAT_CSV );
+        if ( StringUtils.isBlank( strExtendableResourceType ) || !CommentExportService.isFormatSupported( strFormat ) )
+        {
+            return null;
+        }
+
+        CommentFilter commentFilter = new CommentFilter( );
+        String strFilterState = request.getParameter( CommentConstants.PARAMETER_FILTER_STATE );
+        if ( StringUtils.isNotBlank( strFilterState ) && StringUtils.isNumeric( strFilterState ) )
+        {
+            commentFilter.setCommentState( Integer.parseInt( strFilterState ) );
+        }
+        String strFilterPinned = request.getParameter( CommentConstants.PARAMETER_FILTER_PINNED );
+        if ( StringUtils.isNotBlank( strFilterPinned ) )
+        {
+            commentFilter.setPinned( Boolean.valueOf( strFilterPinned ) );
+        }
+        String strFilterMarkAsImportant = request.getParameter( CommentConstants.PARAMETER_FILTER_MARK_AS_IMPORTANT );
+        if ( StringUtils.isNotBlank( strFilterMarkAsImportant ) )
+        {
+            commentFilter.setImportant( Boolean.valueOf( strFilterMarkAsImportant ) );
+        }
+
+        CommentExportParameters parameters = new CommentExportParameters( );
+        parameters.setExtendableResourceType( strExtendableResourceType );
+        parameters.setFormat( strFormat );
+        parameters.setCommentFilter( commentFilter );
+        try
+        {
+            LocalDate dateFrom = parseExportDate( request.getParameter( CommentConstants.PARAMETER_DATE_FROM ) );
+            LocalDate dateTo = parseExportDate( request.getParameter( CommentConstants.PARAMETER_DATE_TO ) );
+            if ( dateFrom != null )
+            {
+                parameters.setDateFrom( Timestamp.valueOf( dateFrom.atStartOfDay( ) ) );
+            }
+            if ( dateTo != null )
+            {
+                // The end date is included in the export
+                parameters.setDateTo( Timestamp.valueOf( dateTo.plusDays( 1 ).atStartOfDay( ) ) );
+            }
+        }
+        catch( DateTimeParseException e )
+        {
+            return null;
+        }
+
+        return parameters;
+    }
+
+    /**
+     * Parse a date of the export form
+     * 
+     * @param strDate
+     *            the date
+     * @return the date, or null if no date is given
+     */
+    private static LocalDate parseExportDate( String strDate )
+    {
+        return StringUtils.isBlank( strDate ) ? null : LocalDate.parse( strDate, DateTimeFormatter.ofPattern( PATTERN_EXPORT_DATE ) );
+    }
+
+    /**
+     * Set the headers of the response of an export
+     * 
+     * @param response
+     *            the response
+     * @param parameters
+     *            the parameters of the export
+     */
+    private static void setExportHeaders( HttpServletResponse response, CommentExportParameters parameters )
+    {
+        String strFileName = CONSTANT_EXPORT_FILE_NAME + parameters.getExtendableResourceType( ).replaceAll( REGEX_UNSAFE_FILE_NAME_CHARACTERS, "_" ) + "."
+                + parameters.getFormat( );
+        response.setContentType( CommentExportService.getContentType( parameters.getFormat( ) ) );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name( ) );
+        response.setHeader( HEADER_CONTENT_DISPOSITION, "attachment; filename=\"" + strFileName + "\"" );
+    }
+
+    /**
+     * Get the ids of the comments selected in the request
+     * 
+     * @param request
+     *            the request
+     * @return the ids of the comments
+     */
+    private static List<Integer> getSelectedComments( HttpServletRequest request )
+    {
+        String [ ] arrayIdComments = request.getParameterValues( CommentConstants.PARAMETER_ID_COMMENT );
+        List<Integer> listIdComments = new ArrayList<>( );
+
+        if ( arrayIdComments != null )
+        {
+            for ( String strIdComment : arrayIdComments )
+            {
+                if ( StringUtils.isNotBlank( strIdComment ) && StringUtils.isNumeric( strIdComment ) )
+                {
+                    listIdComments.add( Integer.parseInt( strIdComment ) );
+                }
+            }
+        }
+
+        return listIdComments;
+    }
+
+    /**
+     * Get the ids of the comments whose removal is confirmed, and remove them from the session
+     * 
+     * @param request
+     *            the request
+     * @return the ids of the comments, or an empty list if the confirmation is unknown or was already used
+     */
+    @SuppressWarnings( "unchecked" )
+    private static List<Integer> getCommentsToRemove( HttpServletRequest request )
+    {
+        String strRemovalToken = request.getParameter( CommentConstants.PARAMETER_REMOVAL_TOKEN );
+        if ( StringUtils.isBlank( strRemovalToken ) )
+        {
+            return new ArrayList<>( );
+        }
+
+        String strAttributeName = CommentPlugin.PLUGIN_NAME + CommentConstants.SESSION_COMMENT_ADMIN_COMMENTS_TO_REMOVE + strRemovalToken;
+        List<Integer> listIdComments = (List<Integer>) request.getSession( ).getAttribute( strAttributeName );
+        request.getSession( ).removeAttribute( strAttributeName );
+
+        return ( listIdComments != null ) ? listIdComments : new ArrayList<>( );
+    }
+
+    /**
+     * Gets the confirmation of the removal of a list of comments. The ids of the comments are kept in the session, under a token given in the url of the
+     * confirmation, so that confirmations opened in several tabs do not mix their selections.
+     * 
+     * @param request
+     *            the request
+     * @param listIdComments
+     *            the ids of the comments to remove
+     * @return the url of the confirmation message
+     */
+    private String getConfirmRemoveComments( HttpServletRequest request, List<Integer> listIdComments )
+    {
+        String strRemovalToken = UUID.randomUUID( ).toString( );
+        request.getSession( ).setAttribute( CommentPlugin.PLUGIN_NAME + CommentConstants.SESSION_COMMENT_ADMIN_COMMENTS_TO_REMOVE + strRemovalToken,
+                new ArrayList<>( listIdComments ) );
+
+        UrlItem url = new UrlItem( JSP_URL_DO_BULK_ACTION_COMMENTS );
+        url.addParameter( CommentConstants.PARAMETER_BULK_ACTION, BULK_ACTION_CONFIRM_REMOVE );
+        url.addParameter( CommentConstants.PARAMETER_REMOVAL_TOKEN, strRemovalToken );
+        url.addParameter( CommentConstants.PARAMETER_FROM_URL, StringUtils.replace( request.getParameter( CommentConstants.PARAMETER_FROM_URL ),
+                CommentConstants.CONSTANT_AND, CommentConstants.CONSTANT_AND_HTML ) );
+        addViewResourceInUrl( request, url );
+
+        Object [ ] messageArgs = {
+                listIdComments.size( )
+        };
+
+        return AdminMessageService.getMessageUrl( request, CommentConstants.MESSAGE_CONFIRM_REMOVE_COMMENTS, messageArgs, url.getUrl( ),
+                AdminMessage.TYPE_CONFIRMATION );
+    }
+
     /**
      * Get the comment creation page
      * 
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveEvent;
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.live.CommentLiveSubscriber;
+import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
+
+/**
+ * 
+ * Servlet streaming the events of the comments of a resource with Server-Sent Events. The request is held asynchronously until the client disconnects
+ * or the connection times out. If the container does not support asynchronous requests, the recent events are sent and the client reconnects after the
+ * reconnection delay, with the id of the last event it received.
+ * 
+ */
+public class CommentLiveServlet extends HttpServlet
+{
+    private static final long serialVersionUID = -3409816153741582410L;
+    private static final String CONTENT_TYPE = "text/event-stream";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_ACCEL_BUFFERING = "X-Accel-Buffering";
+    private static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+    private static final String VALUE_NO_CACHE = "no-cache";
+    private static final String VALUE_NO = "no";
+    private static final int MAX_PARAMETER_LENGTH = 255;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        CommentLiveService liveService = CommentLiveService.getInstance( );
+        if ( !liveService.isEnabled( ) )
+        {
+            response.sendError( HttpServletResponse.SC_NOT_FOUND );
+            return;
+        }
+
+        String strIdExtendableResource = request.getParameter( CommentConstants.PARAMETER_ID_EXTENDABLE_RESOURCE );
+        String strExtendableResourceType = request.getParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE );
+        if ( StringUtils.isBlank( strIdExtendableResource ) || StringUtils.isBlank( strExtendableResourceType )
+                || strIdExtendableResource.length( ) > MAX_PARAMETER_LENGTH || strExtendableResourceType.length( ) > MAX_PARAMETER_LENGTH )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST );
+            return;
+        }
+
+        long lLastIdEvent = getLastIdEvent( request );
+        if ( lLastIdEvent < 0 )
+        {
+            // The client starts receiving events from now on
+            lLastIdEvent = liveService.getLastIdEvent( );
+        }
+        response.setContentType( CONTENT_TYPE );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name( ) );
+        response.setHeader( HEADER_CACHE_CONTROL, VALUE_NO_CACHE );
+        // Proxies must not buffer events
+        response.setHeader( HEADER_ACCEL_BUFFERING, VALUE_NO );
+
+        if ( !request.isAsyncSupported( ) )
+        {
+            OutputStream out = response.getOutputStream( );
+            out.write( liveService.getReconnectionMessage( lLastIdEvent ).getBytes( StandardCharsets.UTF_8 ) );
+            for ( CommentLiveEvent event : liveService.poll( strIdExtendableResource, strExtendableResourceType, lLastIdEvent ) )
+            {
+                out.write( event.toMessage( ).getBytes( StandardCharsets.UTF_8 ) );
+            }
+            out.flush( );
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync( );
+        asyncContext.setTimeout( liveService.getConnectionTimeout( ) );
+        CommentLiveSubscriber subscriber = liveService.subscribe( strIdExtendableResource, strExtendableResourceType, asyncContext, lLastIdEvent );
+        if ( subscriber == null )
+        {
+            response.setStatus( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+            asyncContext.complete( );
+            return;
+        }
+
+        asyncContext.addListener( new AsyncListener( )
+        {
+            @Override
+            public void onComplete( AsyncEvent event )
+            {
+                liveService.unsubscribe( strIdExtendableResource, strExtendableResourceType, subscriber );
+            }
+
+            @Override
+            public void onTimeout( AsyncEvent event )
+            {
+                // The client reconnects with the id of the last event it received
+                liveService.unsubscribe( strIdExtendableResource, strExtendableResourceType, subscriber );
+            }
+
+            @Override
+            public void onError( AsyncEvent event )
+            {
+                liveService.unsubscribe( strIdExtendableResource, strExtendableResourceType, subscriber );
+            }
+
+            @Override
+            public void onStartAsync( AsyncEvent event )
+            {
+                // Nothing to do
+            }
+        } );
+    }
+
+    /**
+     * Get the id of the last event received by the client when it reconnects
+     * 
+     * @param request
+     *            The request
+     * @return The id of the last event, or -1 if the client did not receive any event
+     */
+    private static long getLastIdEvent( HttpServletRequest request )
+    {
+        String strLastIdEvent = request.getHeader( HEADER_LAST_EVENT_ID );
+        if ( StringUtils.isNumeric( strLastIdEvent ) && strLastIdEvent.length( ) < 19 )
+        {
+            return Long.parseLong( strLastIdEvent );
+        }
+
+        return -1;
+    }
+}
@@ -51,11 +51,18 @@ import fr.paris.lutece.plugins.extend.business.extender.config.IExtenderConfig;
 import fr.paris.lutece.plugins.extend.modules.comment.business.AddCommentPosition;
 import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
 import fr.paris.lutece.plugins.extend.modules.comment.business.CommentFilter;
+import fr.paris.lutece.plugins.extend.modules.comment.business.CommentSlice;
 import fr.paris.lutece.plugins.extend.modules.comment.business.config.CommentExtenderConfig;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentAvatarService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.CommentFragmentCacheService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentListenerService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.CommentPlugin;
 import fr.paris.lutece.plugins.extend.modules.comment.service.ICommentService;
 import fr.paris.lutece.plugins.extend.modules.comment.service.extender.CommentResourceExtender;
+import fr.paris.lutece.plugins.extend.modules.comment.service.search.CommentSearchQuery;
+import fr.paris.lutece.plugins.extend.modules.comment.service.search.CommentSearchResult;
+import fr.paris.lutece.plugins.extend.modules.comment.service.search.CommentSearchService;
+import fr.paris.lutece.plugins.extend.modules.comment.service.workflow.CommentWorkflowService;
 import fr.paris.lutece.plugins.extend.modules.comment.util.constants.CommentConstants;
 import fr.paris.lutece.plugins.extend.service.ExtendPlugin;
 import fr.paris.lutece.plugins.extend.service.content.ExtendableContentPostProcessor;
@@ -102,6 +109,9 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
 
     private static final String JSP_URL_MANAGE_COMMENTS = "jsp/admin/plugins/extend/ViewExtenderInfo.jsp";
 
+    // CONSTANTS
+    private static final String CONSTANT_CAPTCHA_PLACEHOLDER = "[[extend-comment-captcha]]";
+
     @Inject
     private ICommentService _commentService;
     @Inject
@@ -131,7 +141,96 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
     public String getPageAddOn( String strIdExtendableResource, String strExtendableResourceType, String strParameters, HttpServletRequest request )
     {
         CommentExtenderConfig config = _configService.find( getResourceExtender( ).getKey( ), strIdExtendableResource, strExtendableResourceType );
+        LuteceUser user = SecurityService.getInstance( ).getRegisteredUser( request );
+
+        int nAddCommentPosition = ( config != null ) ? config.getAddCommentPosition( ) : 0;
+        boolean bIsCaptchaEnabled = false;
+        boolean bCanComment = true;
+        String strAddCommentMessage = null;
+
+        if ( nAddCommentPosition != AddCommentPosition.NEW_PAGE )
+        {
+            bIsCaptchaEnabled = PluginService.isPluginEnable( CommentConstants.JCAPTCHA_PLUGIN )
+                    && Boolean.parseBoolean( AppPropertiesService.getProperty( CommentConstants.PROPERTY_USE_CAPTCHA, Boolean.TRUE.toString( ) ) );
+
+            if ( config != null && config.isEnabledAuthMode( ) )
+            {
+                bCanComment = CommentListenerService.canComment( user, strIdExtendableResource, strExtendableResourceType );
+            }
+
+            // display message when form was submitted
+            HttpSession session = request.getSession( );
+            strAddCommentMessage = (String) session.getAttribute( CommentConstants.SESSION_COMMENT_ADD_MESSAGE_RESULT + strIdExtendableResource );
+            if ( strAddCommentMessage != null )
+            {
+                session.removeAttribute( CommentConstants.SESSION_COMMENT_ADD_MESSAGE_RESULT + strIdExtendableResource );
+            }
+            // get redirect URL
+            session.setAttribute( ExtendPlugin.PLUGIN_NAME + CommentConstants.PARAMETER_FROM_URL, request.getRequestURI( ) + "?" + request.getQueryString( ) );
+        }
+
+        // The block displayed to anonymous users only depends on the resource, its comments and its configuration, so it is rendered once. The captcha is
+        // specific to each view and is inserted afterwards.
+        CommentFragmentCacheService fragmentCacheService = CommentFragmentCacheService.getInstance( );
+        String strFragmentKey = null;
+        String strContent = null;
+        if ( user == null && strAddCommentMessage == null && fragmentCacheService.isCacheEnable( ) )
+        {
+            strFragmentKey = fragmentCacheService.getFragmentKey( strIdExtendableResource, strExtendableResourceType, request.getLocale( ),
+                    bCanComment + CommentConstants.CONSTANT_AND + bIsCaptchaEnabled );
+            strContent = fragmentCacheService.getFragment( strFragmentKey );
+        }
+
+        if ( strContent == null )
+        {
+            strContent = getPageAddOnContent( strIdExtendableResource, strExtendableResourceType, config, user, bIsCaptchaEnabled, bCanComment,
+                    strAddCommentMessage, strFragmentKey != null, request );
+            if ( strFragmentKey != null )
+            {
+                fragmentCacheService.putFragment( strFragmentKey, strContent );
+            }
+        }
+
+        if ( strFragmentKey != null && bIsCaptchaEnabled )
+        {
+            strContent = strContent.replace( CONSTANT_CAPTCHA_PLACEHOLDER, new CaptchaSecurityService( ).getHtmlCode( ) );
+        }
+
+        ContentPostProcessor postProcessor = getExtendPostProcessor( );
+        if ( postProcessor != null )
+        {
+            strContent = postProcessor.process( request, strContent );
+        }
+
+        return strContent;
+    }
 
+    /**
+     * Render the comment block of a resource
+     * 
+     * @param strIdExtendableResource
+     *            The id of the extendable resource
+     * @param strExtendableResourceType
+     *            The extendable resource type
+     * @param config
+     *            The configuration of the extender
+     * @param user
+     *            The registered user, or null if the user is anonymous
+     * @param bIsCaptchaEnabled
+     *            True if the captcha is enabled
+     * @param bCanComment
+     *            True if the user can comment the resource
+     * @param strAddCommentMessage
+     *            The message to display after a comment was submitted, or null
+     * @param bCaptchaPlaceholder
+     *            True to render a placeholder instead of the captcha
+     * @param request
+     *            The request
+     * @return The HTML of the comment block, before post processing
+     */
+    private String getPageAddOnContent( String strIdExtendableResource, String strExtendableResourceType, CommentExtenderConfig config, LuteceUser user,
+            boolean bIsCaptchaEnabled, boolean bCanComment, String strAddCommentMessage, boolean bCaptchaPlaceholder, HttpServletRequest request )
+    {
         int nNbComments = 1;
         boolean bAuthorizedsubComments = true;
         boolean bUseBBCodeEditor = false;
@@ -153,6 +252,7 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
 
         List<Comment> listComments = _commentService.findLastComments( strIdExtendableResource, strExtendableResourceType, nNbComments, true, true,
                 bAuthorizedsubComments, bDisplaySubComments, config.isTriCommentsByCreation( ) );
+        CommentAvatarService.getInstance( ).getAvatars( listComments );
 
         int nNbPublishedComments = _commentService.getCommentNb( strIdExtendableResource, strExtendableResourceType, !bDisplaySubComments, true );
         Map<String, Object> model = new HashMap<String, Object>( );
@@ -172,25 +272,21 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
         if ( nAddCommentPosition != AddCommentPosition.NEW_PAGE )
         {
             // Add Captcha
-            boolean bIsCaptchaEnabled = PluginService.isPluginEnable( CommentConstants.JCAPTCHA_PLUGIN )
-                    && Boolean.parseBoolean( AppPropertiesService.getProperty( CommentConstants.PROPERTY_USE_CAPTCHA, Boolean.TRUE.toString( ) ) );
             model.put( CommentConstants.MARK_IS_ACTIVE_CAPTCHA, bIsCaptchaEnabled );
 
             if ( bIsCaptchaEnabled )
             {
-                CaptchaSecurityService captchaService = new CaptchaSecurityService( );
-                model.put( CommentConstants.MARK_CAPTCHA, captchaService.getHtmlCode( ) );
+                model.put( CommentConstants.MARK_CAPTCHA, bCaptchaPlaceholder ? CONSTANT_CAPTCHA_PLACEHOLDER : new CaptchaSecurityService( ).getHtmlCode( ) );
             }
             // Add NickName if auth mod enable
             if ( config != null && config.isEnabledAuthMode( ) )
             {
-                LuteceUser user = SecurityService.getInstance( ).getRegisteredUser( request );
                 if ( user != null )
                 {
                     model.put( CommentConstants.MARK_NICKNAME, UserPreferencesService.instance( ).getNickname( user ) );
                 }
 
-                if ( CommentListenerService.canComment( user, strIdExtendableResource, strExtendableResourceType ) )
+                if ( bCanComment )
                 {
                     model.put( CommentConstants.MARK_CAN_DELETE_COMMENTS, config.getDeleteComments( ) );
                 }
@@ -200,46 +296,26 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
                 }
             }
 
-            if ( SecurityService.isAuthenticationEnable( ) )
+            if ( SecurityService.isAuthenticationEnable( ) && user != null )
             {
-                LuteceUser user = SecurityService.getInstance( ).getRegisteredUser( request );
-
-                if ( user != null )
-                {
-                    model.put( CommentConstants.MARK_MYLUTECE_USER, user );
-                }
+                model.put( CommentConstants.MARK_MYLUTECE_USER, user );
             }
 
-            // display message when form was submitted
-            if ( request.getSession( ).getAttribute( CommentConstants.SESSION_COMMENT_ADD_MESSAGE_RESULT + strIdExtendableResource ) != null )
+            if ( strAddCommentMessage != null )
             {
-                model.put( CommentConstants.MARK_ADD_COMMENT_MESSAGE_RESULT,
-                        (String) request.getSession( ).getAttribute( CommentConstants.SESSION_COMMENT_ADD_MESSAGE_RESULT + strIdExtendableResource ) );
-                request.getSession( ).removeAttribute( CommentConstants.SESSION_COMMENT_ADD_MESSAGE_RESULT + strIdExtendableResource );
+                model.put( CommentConstants.MARK_ADD_COMMENT_MESSAGE_RESULT, strAddCommentMessage );
             }
-            // get redirect URL
-            request.getSession( ).setAttribute( ExtendPlugin.PLUGIN_NAME + CommentConstants.PARAMETER_FROM_URL,
-                    request.getRequestURI( ) + "?" + request.getQueryString( ) );
             model.put( CommentConstants.PARAMETER_FROM_URL, CommentConstants.FROM_SESSION );
         }
 
-        LuteceUser user = SecurityService.getInstance( ).getRegisteredUser( request );
-
         if ( user != null )
         {
             model.put( CommentConstants.MARK_REGISTERED_USER_EMAIL, user.getEmail( ) );
         }
 
         HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_COMMENT, request.getLocale( ), model );
-        String strContent = template.getHtml( );
-
-        ContentPostProcessor postProcessor = getExtendPostProcessor( );
-        if ( postProcessor != null )
-        {
-            strContent = postProcessor.process( request, strContent );
-        }
 
-        return strContent;
+        return template.getHtml( );
     }
 
     /**
@@ -343,8 +419,6 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
                 strFilterMarkAsImportant = (String) object;
             }
 
-            int nItemsCount = _commentService.getCommentNb( resourceExtender.getIdExtendableResource( ), resourceExtender.getExtendableResourceType( ),
-                    config.getAuthorizeSubComments( ), false );
             String strFromUrl = StringUtils.replace( request.getParameter( CommentConstants.PARAMETER_FROM_URL ), CommentConstants.CONSTANT_AND,
                     CommentConstants.CONSTANT_AND_HTML );
             strCurrentPageIndex = Paginator.getPageIndex( request, Paginator.PARAMETER_PAGE_INDEX, strCurrentPageIndex );
@@ -382,8 +456,6 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
                 strFilterMarkAsImportant = request.getParameter( CommentConstants.PARAMETER_FILTER_MARK_AS_IMPORTANT );
             }
 
-            int nItemsOffset = nItemsPerPage * ( Integer.parseInt( strCurrentPageIndex ) - 1 );
-
             CommentFilter commentFilter = new CommentFilter( );
             if ( StringUtils.isNotBlank( strFilterState ) && StringUtils.isNumeric( strFilterState ) )
             {
@@ -400,9 +472,6 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
             commentFilter.setSortedAttributeName( strSortedAttributeName );
             commentFilter.setAscSort( bIsAscSort );
 
-            List<Comment> listComments = _commentService.findByResource( resourceExtender.getIdExtendableResource( ),
-                    resourceExtender.getExtendableResourceType( ), commentFilter, nItemsOffset, nItemsPerPage, config.getAuthorizeSubComments( ) );
-
             // We generate the base URL for the paginator
             UrlItem url = new UrlItem( strPostBackUrl );
             url.addParameter( CommentConstants.PARAMETER_EXTENDER_TYPE, CommentResourceExtender.EXTENDER_TYPE_COMMENT );
@@ -410,12 +479,61 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
             url.addParameter( CommentConstants.PARAMETER_EXTENDABLE_RESOURCE_TYPE, resourceExtender.getExtendableResourceType( ) );
             url.addParameter( CommentConstants.PARAMETER_FROM_URL, strFromUrl );
 
-            // We get the paginator
-            IPaginator<Comment> paginator = new LocalizedDelegatePaginator<Comment>( listComments, nItemsPerPage, url.getUrl( ), Paginator.PARAMETER_PAGE_INDEX,
-                    strCurrentPageIndex, nItemsCount, AdminUserService.getLocale( request ) );
-
             Map<String, Object> model = new HashMap<String, Object>( );
-            List<Comment> listCommentDisplay = paginator.getPageItems( );
+            List<Comment> listCommentDisplay;
+            String strSearchText = request.getParameter( CommentConstants.PARAMETER_SEARCH_TEXT );
+            String strSearchAuthor = request.getParameter( CommentConstants.PARAMETER_SEARCH_AUTHOR );
+            boolean bSearch = StringUtils.isNotBlank( strSearchText ) || StringUtils.isNotBlank( strSearchAuthor );
+            boolean bInfiniteScroll = !bSearch && AppPropertiesService.getPropertyBoolean( CommentConstants.PROPERTY_INFINITE_SCROLL_ENABLED, false );
+            if ( bSearch )
+            {
+                // Searched comments are read from the full-text index, sorted by relevance
+                url.addParameter( CommentConstants.PARAMETER_SEARCH_TEXT, StringUtils.defaultString( strSearchText ) );
+                url.addParameter( CommentConstants.PARAMETER_SEARCH_AUTHOR, StringUtils.defaultString( strSearchAuthor ) );
+                CommentSearchQuery query = new CommentSearchQuery( );
+                query.setText( strSearchText );
+                query.setAuthor( strSearchAuthor );
+                query.setExtendableResourceType( resourceExtender.getExtendableResourceType( ) );
+                query.setIdExtendableResource( resourceExtender.getIdExtendableResource( ) );
+                int nItemsOffset = nItemsPerPage * ( Integer.parseInt( strCurrentPageIndex ) - 1 );
+                CommentSearchResult searchResult = CommentSearchService.getInstance( ).search( query, nItemsOffset, nItemsPerPage );
+
+                IPaginator<Comment> paginator = new LocalizedDelegatePaginator<Comment>( searchResult.getListComments( ), nItemsPerPage, url.getUrl( ),
+                        Paginator.PARAMETER_PAGE_INDEX, strCurrentPageIndex, searchResult.getTotalCount( ), AdminUserService.getLocale( request ) );
+                model.put( CommentConstants.MARK_PAGINATOR, paginator );
+                listCommentDisplay = paginator.getPageItems( );
+            }
+            else
+                if ( bInfiniteScroll )
+                {
+                    // The following comments are fetched with a continuation token instead of an offset
+                    CommentSlice slice = _commentService.findByResource( resourceExtender.getIdExtendableResource( ),
+                            resourceExtender.getExtendableResourceType( ), commentFilter, request.getParameter( CommentConstants.PARAMETER_CONTINUATION_TOKEN ),
+                            nItemsPerPage, config.getAuthorizeSubComments( ) );
+                    if ( slice.hasMore( ) )
+                    {
+                        UrlItem urlNextSlice = new UrlItem( url.getUrl( ) );
+                        urlNextSlice.addParameter( CommentConstants.PARAMETER_CONTINUATION_TOKEN, slice.getContinuationToken( ) );
+                        model.put( CommentConstants.MARK_NEXT_SLICE_URL, urlNextSlice.getUrl( ) );
+                    }
+                    listCommentDisplay = slice.getListComments( );
+                }
+                else
+                {
+                    int nItemsCount = _commentService.getCommentNb( resourceExtender.getIdExtendableResource( ), resourceExtender.getExtendableResourceType( ),
+                            config.getAuthorizeSubComments( ), false );
+                    int nItemsOffset = nItemsPerPage * ( Integer.parseInt( strCurrentPageIndex ) - 1 );
+
+                    List<Comment> listComments = _commentService.findByResource( resourceExtender.getIdExtendableResource( ),
+                            resourceExtender.getExtendableResourceType( ), commentFilter, nItemsOffset, nItemsPerPage, config.getAuthorizeSubComments( ) );
+
+                    // We get the paginator
+                    IPaginator<Comment> paginator = new LocalizedDelegatePaginator<Comment>( listComments, nItemsPerPage, url.getUrl( ),
+                            Paginator.PARAMETER_PAGE_INDEX, strCurrentPageIndex, nItemsCount, AdminUserService.getLocale( request ) );
+                    model.put( CommentConstants.MARK_PAGINATOR, paginator );
+                    listCommentDisplay = paginator.getPageItems( );
+                }
+            model.put( CommentConstants.MARK_INFINITE_SCROLL, bInfiniteScroll );
             AdminUser adminUser = AdminUserService.getAdminUser( request );
             if ( adminUser != null && WorkflowService.getInstance( ).isAvailable( ) )
             {
@@ -433,6 +551,8 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
                 IExtendableResource resourceExtenderInfo = _resourceExtenderService.getExtendableResource( resourceExtender );
                 model.put( CommentConstants.MARK_RESOURCE_EXTENDER, resourceExtenderInfo );
                 model.put( CommentConstants.MARK_ALL_RESOURCES, false );
+                model.put( CommentConstants.MARK_LIST_PINNED_COMMENTS, _commentService.findCommentsPinned( resourceExtender.getIdExtendableResource( ),
+                        resourceExtender.getExtendableResourceType( ), 0, null, true, false, null ) );
             }
             else
             {
@@ -456,8 +576,7 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
 
             model.put( CommentConstants.MARK_LIST_COMMENTS, listCommentDisplay );
             model.put( CommentConstants.PARAMETER_FROM_URL, strFromUrl );
-            model.put( CommentConstants.MARK_PAGINATOR, paginator );
-            model.put( CommentConstants.MARK_NB_ITEMS_PER_PAGE, Integer.toString( paginator.getItemsPerPage( ) ) );
+            model.put( CommentConstants.MARK_NB_ITEMS_PER_PAGE, Integer.toString( nItemsPerPage ) );
             model.put( CommentConstants.MARK_ASC_SORT, bIsAscSort );
             model.put( Parameters.SORTED_ATTRIBUTE_NAME, strSortedAttributeName );
             model.put( CommentConstants.PARAMETER_ID_COMMENT, request.getParameter( CommentConstants.PARAMETER_ID_COMMENT ) );
@@ -465,6 +584,10 @@ public class CommentResourceExtenderComponent extends AbstractResourceExtenderCo
             model.put( CommentConstants.MARK_ADMIN_BADGE, config.getAdminBadge( ) );
             model.put( CommentConstants.MARK_ALLOW_SUB_COMMENTS, config.getAuthorizeSubComments( ) );
             model.put( CommentConstants.MARK_FILTER_STATE, strFilterState );
+            model.put( CommentConstants.MARK_SEARCH_ENABLED, CommentSearchService.getInstance( ).isEnabled( ) );
+            model.put( CommentConstants.MARK_SEARCH_TEXT, strSearchText );
+            model.put( CommentConstants.MARK_SEARCH_AUTHOR, strSearchAuthor );
+            model.put( CommentConstants.MARK_LIST_REMOVAL_JOBS, CommentWorkflowService.getInstance( ).getRemovalJobs( ) );
             model.put( CommentConstants.MARK_FILTER_MARK_AS_IMPORTANT, strFilterMarkAsImportant );
             model.put( CommentConstants.MARK_FILTER_PINNED, strFilterPinned );
             model.put( CommentConstants.MARK_LIST_COMMENT_STATES, _commentService.getRefListCommentStates( locale ) );
@@ -0,0 +1,57 @@
+--
+-- EXTENDCOMMENT- : Add indexes matching the queries of CommentDAO
+--
+CREATE INDEX idx_extend_comment_resource ON extend_comment (resource_type, id_resource, is_published, id_parent_comment, date_last_modif);
+CREATE INDEX idx_extend_comment_parent ON extend_comment (id_parent_comment, is_published);
+CREATE INDEX idx_extend_comment_user ON extend_comment (lutece_user_name);
+CREATE INDEX idx_extend_comment_pinned ON extend_comment (resource_type, id_resource, is_pinned, comment_order);
+
+--
+-- EXTENDCOMMENT- : Add a table notifying cache modifications to the other nodes of a cluster
+--
+CREATE TABLE extend_comment_cache_event (
+	id_event INT NOT NULL AUTO_INCREMENT,
+	event_type SMALLINT DEFAULT 0 NOT NULL,
+	id_resource VARCHAR(100) DEFAULT '' NOT NULL,
+	resource_type VARCHAR(255) DEFAULT '' NOT NULL,
+	node_id VARCHAR(50) NOT NULL,
+	date_event TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	PRIMARY KEY (id_event)
+);
+CREATE INDEX idx_extend_comment_cache_event_date ON extend_comment_cache_event (date_event);
+
+--
+-- EXTENDCOMMENT- : Add an outbox of comments whose workflow is initialized in the background
+--
+CREATE TABLE extend_comment_workflow_outbox (
+	id_comment INT NOT NULL,
+	nb_attempts INT DEFAULT 0 NOT NULL,
+	date_next_attempt TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	PRIMARY KEY (id_comment)
+);
+CREATE INDEX idx_extend_comment_workflow_outbox_date ON extend_comment_workflow_outbox (date_next_attempt);
+
+--
+-- EXTENDCOMMENT- : Add a table of the statistics of the comments of each resource
+--
+CREATE TABLE extend_comment_stats (
+	resource_type VARCHAR(255) DEFAULT '' NOT NULL,
+	id_resource VARCHAR(100) DEFAULT '' NOT NULL,
+	nb_comments INT DEFAULT 0 NOT NULL,
+	nb_published INT DEFAULT 0 NOT NULL,
+	nb_parents INT DEFAULT 0 NOT NULL,
+	nb_published_parents INT DEFAULT 0 NOT NULL,
+	date_last_comment TIMESTAMP NULL,
+	PRIMARY KEY (resource_type, id_resource)
+);
+CREATE INDEX idx_extend_comment_stats_comments ON extend_comment_stats (resource_type, nb_comments);
+CREATE INDEX idx_extend_comment_stats_published ON extend_comment_stats (resource_type, nb_published);
+INSERT INTO extend_comment_stats ( resource_type, id_resource, nb_comments, nb_published, nb_parents, nb_published_parents, date_last_comment )
+	SELECT resource_type, id_resource, COUNT( id_comment ), SUM( CASE WHEN is_published = 1 THEN 1 ELSE 0 END ), SUM( CASE WHEN id_parent_comment = 0 THEN 1 ELSE 0 END ),
+		SUM( CASE WHEN is_published = 1 AND id_parent_comment = 0 THEN 1 ELSE 0 END ), MAX( date_comment )
+	FROM extend_comment GROUP BY resource_type, id_resource;
+
+--
+-- EXTENDCOMMENT- : Add an index for the rankings of most commented resources over a period
+--
+CREATE INDEX idx_extend_comment_date ON extend_comment (resource_type, date_comment, id_resource, is_published);
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.Comment;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * 
+ * Tests of the creation of comments by concurrent threads, against the test database
+ * 
+ */
+public class CommentServiceTest extends LuteceTestCase
+{
+    private static final String RESOURCE_TYPE = "commentServiceTest";
+    private static final String ID_RESOURCE = "1";
+    private static final int NB_COMMENTS = 200;
+    private static final int NB_THREADS = 8;
+
+    private ICommentService _commentService;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _commentService = SpringContextService.getBean( CommentService.BEAN_SERVICE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _commentService.removeByResource( ID_RESOURCE, RESOURCE_TYPE );
+        super.tearDown( );
+    }
+
+    /**
+     * Test that every answer created by concurrent threads gets its own id, and that the date of last modification of the parent ends at the date of the
+     * last answer
+     * 
+     * @throws Exception
+     *             if a thread fails
+     */
+    public void testConcurrentCreation( ) throws Exception
+    {
+        Comment parent = newComment( 0 );
+        _commentService.create( parent );
+
+        ExecutorService executor = Executors.newFixedThreadPool( NB_THREADS );
+        List<Future<Integer>> listFutures = new ArrayList<>( );
+        try
+        {
+            for ( int i = 0; i < NB_COMMENTS; i++ )
+            {
+                listFutures.add( executor.submit( ( ) -> {
+                    Comment answer = newComment( parent.getIdComment( ) );
+                    _commentService.create( answer );
+                    return answer.getIdComment( );
+                } ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown( );
+            executor.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+
+        Set<Integer> setIdAnswers = new HashSet<>( );
+        Timestamp dateLastAnswer = null;
+        for ( Future<Integer> future : listFutures )
+        {
+            int nIdAnswer = future.get( );
+            setIdAnswers.add( nIdAnswer );
+            // Dates are read back from the database, whose precision may be lower than the precision of the created comments
+            Timestamp dateAnswer = _commentService.findByPrimaryKey( nIdAnswer ).getDateComment( );
+            if ( dateLastAnswer == null || dateAnswer.after( dateLastAnswer ) )
+            {
+                dateLastAnswer = dateAnswer;
+            }
+        }
+
+        assertEquals( NB_COMMENTS, setIdAnswers.size( ) );
+        assertFalse( setIdAnswers.contains( parent.getIdComment( ) ) );
+        assertEquals( dateLastAnswer, _commentService.findByPrimaryKey( parent.getIdComment( ) ).getDateLastModif( ) );
+    }
+
+    /**
+     * Create a comment of the test resource
+     * 
+     * @param nIdParentComment
+     *            The id of the parent comment, or 0
+     * @return The comment
+     */
+    private static Comment newComment( int nIdParentComment )
+    {
+        Comment comment = new Comment( );
+        comment.setIdExtendableResource( ID_RESOURCE );
+        comment.setExtendableResourceType( RESOURCE_TYPE );
+        comment.setIdParentComment( nIdParentComment );
+        comment.setComment( "Comment" );
+        comment.setPublished( true );
+        return comment;
+    }
+}
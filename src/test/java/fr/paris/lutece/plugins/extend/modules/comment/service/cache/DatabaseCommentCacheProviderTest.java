@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2002-2021, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.extend.modules.comment.service.cache;
+
+import java.lang.reflect.Field;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import fr.paris.lutece.plugins.extend.modules.comment.business.cache.CommentCacheEvent;
+import fr.paris.lutece.plugins.extend.modules.comment.business.cache.ICommentCacheEventDAO;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * 
+ * Tests of the notifications between two nodes using {@link DatabaseCommentCacheProvider}. Each node is a provider recording the caches it evicts.
+ * 
+ */
+public class DatabaseCommentCacheProviderTest extends LuteceTestCase
+{
+    private static final String BEAN_CACHE_EVENT_DAO = "extend-comment.commentCacheEventDAO";
+    private static final String RESOURCE_TYPE = "cacheProviderTest";
+
+    /**
+     * Test that the modifications made on a node evict the caches of the other node, through the table of events of the test database
+     * 
+     * @throws Exception
+     *             if the providers can not be created
+     */
+    public void testCrossNodeInvalidation( ) throws Exception
+    {
+        ICommentCacheEventDAO cacheEventDAO = SpringContextService.getBean( BEAN_CACHE_EVENT_DAO );
+        RecordingCacheProvider nodeA = newNode( cacheEventDAO );
+        RecordingCacheProvider nodeB = newNode( cacheEventDAO );
+        nodeA.processNotifications( );
+        nodeB.processNotifications( );
+
+        nodeA.notifyResourceModified( "1", RESOURCE_TYPE );
+        nodeB.processNotifications( );
+        nodeA.processNotifications( );
+
+        assertEquals( Arrays.asList( "1" ), nodeB._listEvictedResources );
+        assertTrue( "A node must not process its own events", nodeA._listEvictedResources.isEmpty( ) );
+
+        // Events already processed are not processed again
+        nodeB.processNotifications( );
+        assertEquals( 1, nodeB._listEvictedResources.size( ) );
+
+        nodeB.notifyConfigsModified( );
+        nodeA.processNotifications( );
+        assertEquals( 1, nodeA._nEvictedConfigs );
+        assertEquals( 0, nodeB._nEvictedConfigs );
+    }
+
+    /**
+     * Test that an event committed after an event with a greater id is still processed
+     * 
+     * @throws Exception
+     *             if the providers can not be created
+     */
+    public void testEventCommittedOutOfOrder( ) throws Exception
+    {
+        InMemoryCacheEventDAO cacheEventDAO = new InMemoryCacheEventDAO( );
+        RecordingCacheProvider nodeA = newNode( cacheEventDAO );
+        RecordingCacheProvider nodeB = newNode( cacheEventDAO );
+        nodeB.processNotifications( );
+
+        // The transaction inserting the first event is committed after the transaction inserting the second one
+        nodeA.notifyResourceModified( "1", RESOURCE_TYPE );
+        nodeA.notifyResourceModified( "2", RESOURCE_TYPE );
+        cacheEventDAO.commit( 2 );
+        nodeB.processNotifications( );
+        assertEquals( Arrays.asList( "2" ), nodeB._listEvictedResources );
+
+        cacheEventDAO.commit( 1 );
+        nodeB.processNotifications( );
+        assertEquals( Arrays.asList( "2", "1" ), nodeB._listEvictedResources );
+
+        nodeB.processNotifications( );
+        assertEquals( 2, nodeB._listEvictedResources.size( ) );
+    }
+
+    /**
+     * Create a node
+     * 
+     * @param cacheEventDAO
+     *            The DAO of the events shared by the nodes
+     * @return The provider of the node
+     * @throws ReflectiveOperationException
+     *             if the DAO can not be set
+     */
+    private static RecordingCacheProvider newNode( ICommentCacheEventDAO cacheEventDAO ) throws ReflectiveOperationException
+    {
+        RecordingCacheProvider provider = new RecordingCacheProvider( );
+        Field field = DatabaseCommentCacheProvider.class.getDeclaredField( "_cacheEventDAO" );
+        field.setAccessible( true );
+        field.set( provider, cacheEventDAO );
+        return provider;
+    }
+
+    /**
+     * Provider recording the caches it evicts instead of evicting the caches of the JVM, which are shared by both nodes of the test
+     */
+    private static final class RecordingCacheProvider extends DatabaseCommentCacheProvider
+    {
+        private final List<String> _listEvictedResources = new ArrayList<>( );
+        private int _nEvictedConfigs;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void evictResource( String strIdExtendableResource, String strExtendableResourceType )
+        {
+            if ( RESOURCE_TYPE.equals( strExtendableResourceType ) )
+            {
+                _listEvictedResources.add( strIdExtendableResource );
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void evictConfigs( )
+        {
+            _nEvictedConfigs++;
+        }
+    }
+
+    /**
+     * DAO of events whose insertions are only visible once they are committed by the test
+     */
+    private static final class InMemoryCacheEventDAO implements ICommentCacheEventDAO
+    {
+        private final List<CommentCacheEvent> _listEvents = new ArrayList<>( );
+        private final Set<Integer> _setCommittedIds = new HashSet<>( );
+
+        /**
+         * Commit the insertion of an event
+         * 
+         * @param nIdEvent
+         *            The id of the event
+         */
+        private void commit( int nIdEvent )
+        {
+            _setCommittedIds.add( nIdEvent );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void insert( CommentCacheEvent event, Plugin plugin )
+        {
+            event.setIdEvent( _listEvents.size( ) + 1 );
+            event.setDateEvent( new Timestamp( System.currentTimeMillis( ) ) );
+            _listEvents.add( event );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<CommentCacheEvent> findEventsAfter( int nIdEventAfter, Plugin plugin )
+        {
+            return _listEvents.stream( ).filter( event -> event.getIdEvent( ) > nIdEventAfter && _setCommittedIds.contains( event.getIdEvent( ) ) )
+                    .collect( Collectors.toList( ) );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int findLastEventId( Plugin plugin )
+        {
+            return _setCommittedIds.stream( ).mapToInt( Integer::intValue ).max( ).orElse( 0 );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void deleteEventsBefore( Timestamp dateBefore, Plugin plugin )
+        {
+            // Events are kept for the whole test
+        }
+    }
+}
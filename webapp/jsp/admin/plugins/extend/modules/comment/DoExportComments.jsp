@@ -0,0 +1,16 @@
+<%@page import="fr.paris.lutece.plugins.extend.web.ResourceExtenderJspBean"%>
+<%@ page errorPage="../../../../ErrorPage.jsp" %>
+<jsp:useBean id="extendComment" scope="session" class="fr.paris.lutece.plugins.extend.modules.comment.web.CommentJspBean" />
+<% 
+	extendComment.init( request, ResourceExtenderJspBean.RIGHT_MANAGE_RESOURCE_EXTENDER );
+	String strRedirectUrl = extendComment.doExportComments( request, response );
+	if ( strRedirectUrl != null )
+	{
+		response.sendRedirect( strRedirectUrl );
+	}
+	else
+	{
+		out.clear( );
+		out = pageContext.pushBody( );
+	}
+%>